@@ -0,0 +1,57 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Project;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.validation.ItsAssociationPolicy;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/** {@link ItsConfig} with a fixed configuration, so benchmarks do not need a Gerrit server. */
+class BenchmarkItsConfig extends ItsConfig {
+  static final IssuePattern ISSUE_PATTERN =
+      new IssuePattern(Pattern.compile("[Bb]ug:? *#?([1-9][0-9]*)"), 1);
+
+  private static final ItsProjectConfig PROJECT_CONFIG =
+      new ItsProjectConfig(
+          Project.nameKey("project"),
+          true,
+          ImmutableList.of(),
+          ImmutableList.of(),
+          "its-base",
+          ISSUE_PATTERN,
+          Optional.empty(),
+          ItsAssociationPolicy.OPTIONAL,
+          Optional.of("ITS"),
+          0);
+
+  BenchmarkItsConfig() {
+    super("its-base", null, null, null, null);
+  }
+
+  @Override
+  public ItsProjectConfig getProjectConfig(Project.NameKey projectName) {
+    return PROJECT_CONFIG;
+  }
+
+  @Override
+  public Optional<String> getItsProjectName(Project.NameKey projectNK) {
+    return Optional.of("ITS");
+  }
+}
@@ -0,0 +1,143 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.googlesource.gerrit.plugins.its.base.workflow.ItsMetrics;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IssueExtractorBenchmark {
+  /** Commit messages of typical shapes. */
+  public enum CommitMessage {
+    /** Subject and Change-Id footer only. */
+    SHORT("Fix NPE when submitting (bug 4711)\n\n" + "Change-Id: " + changeId(1) + "\n"),
+
+    /** Subject, a long body mentioning issues, and a few footers. */
+    LONG(
+        "Rework the handling of submit rules\n\n"
+            + body(60)
+            + "\n"
+            + "Bug: 4711\n"
+            + "Signed-off-by: Jane Doe <jane@example.com>\n"
+            + "Change-Id: "
+            + changeId(2)
+            + "\n"),
+
+    /** Subject, a short body, and lots of footers, as written by bots and cherry-picks. */
+    FOOTERS(
+        "Merge branch 'stable-3.1' into stable-3.2\n\n"
+            + body(3)
+            + "\n"
+            + footers(25)
+            + "Change-Id: "
+            + changeId(3)
+            + "\n");
+
+    private final String message;
+
+    CommitMessage(String message) {
+      this.message = message;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    private static String changeId(int seed) {
+      StringBuilder changeId = new StringBuilder("I");
+      for (int i = 0; i < 40; i++) {
+        changeId.append(Character.forDigit((seed * 7 + i * 13) % 16, 16));
+      }
+      return changeId.toString();
+    }
+
+    private static String body(int lines) {
+      StringBuilder body = new StringBuilder();
+      for (int i = 0; i < lines; i++) {
+        if (i % 20 == 19) {
+          body.append("As described in bug ").append(1000 + i).append(", this needs care.\n");
+        } else {
+          body.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusm\n");
+        }
+      }
+      return body.toString();
+    }
+
+    private static String footers(int count) {
+      StringBuilder footers = new StringBuilder();
+      for (int i = 0; i < count; i++) {
+        switch (i % 5) {
+          case 0:
+            footers.append("Bug: ").append(2000 + i).append('\n');
+            break;
+          case 1:
+            footers.append("Reviewed-on: https://gerrit.example.com/c/project/+/").append(i);
+            footers.append('\n');
+            break;
+          case 2:
+            footers.append("Signed-off-by: Developer ").append(i).append(" <dev@example.com>\n");
+            break;
+          case 3:
+            footers.append("Tested-by: CI Bot <ci@example.com>\n");
+            break;
+          default:
+            footers.append("Reviewed-by: Reviewer ").append(i).append(" <rev@example.com>\n");
+        }
+      }
+      return footers.toString();
+    }
+  }
+
+  @Param public CommitMessage commitMessage;
+
+  private IssueExtractor issueExtractor;
+  private String message;
+
+  @Setup
+  public void setUp() {
+    issueExtractor =
+        new IssueExtractor(
+            new BenchmarkItsConfig(),
+            null,
+            null,
+            null,
+            new ItsMetrics(new DisabledMetricMaker()));
+    message = commitMessage.getMessage();
+  }
+
+  @Benchmark
+  public Map<String, Set<String>> getIssueIdsFromCommitMessage() {
+    return issueExtractor.getIssueIdsFromCommitMessage("project", message);
+  }
+}
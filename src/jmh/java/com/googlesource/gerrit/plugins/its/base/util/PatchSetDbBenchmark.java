@@ -0,0 +1,215 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.changes.ChangeApi;
+import com.google.gerrit.extensions.api.changes.Changes;
+import com.google.gerrit.extensions.client.ListChangesOption;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor.PatchSetDb;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor.PatchSetDbImpl;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up the revision of a patch set of a change with 50 patch sets, in a repository with 1000
+ * changes.
+ *
+ * <p>{@code getRevisionRest} is the baseline: the lookup through the change's {@code
+ * ALL_REVISIONS} that was used before patch sets got resolved through their refs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatchSetDbBenchmark {
+  private static final String PROJECT = "project";
+  private static final int CHANGES = 1000;
+  private static final int PATCH_SETS = 50;
+
+  private GitRepositoryManager repoManager;
+  private PatchSetDbImpl cachingDb;
+  private PatchSetDb restDb;
+  private PatchSet.Id patchSetId;
+
+  @Setup
+  public void setUp() throws IOException {
+    InMemoryRepository repo = new InMemoryRepository(new DfsRepositoryDescription(PROJECT));
+    try (ObjectInserter inserter = repo.newObjectInserter()) {
+      for (int change = 1; change <= CHANGES; change++) {
+        int patchSets = change == CHANGES ? PATCH_SETS : 1 + change % 5;
+        for (int patchSet = 1; patchSet <= patchSets; patchSet++) {
+          ObjectId revision =
+              inserter.insert(
+                  Constants.OBJ_BLOB,
+                  (change + "," + patchSet).getBytes(StandardCharsets.UTF_8));
+          RefUpdate update =
+              repo.updateRef(PatchSet.id(Change.id(change), patchSet).toRefName());
+          update.setNewObjectId(revision);
+          update.forceUpdate();
+        }
+      }
+      inserter.flush();
+    }
+
+    repoManager =
+        new GitRepositoryManager() {
+          @Override
+          public Repository openRepository(Project.NameKey name) {
+            repo.incrementOpen();
+            return repo;
+          }
+
+          @Override
+          public Repository createRepository(Project.NameKey name) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public SortedSet<Project.NameKey> list() {
+            return new TreeSet<>();
+          }
+        };
+    cachingDb = new PatchSetDbImpl(repoManager);
+    restDb = new RestPatchSetDb(new RefBackedGerritApi(repo));
+    patchSetId = PatchSet.id(Change.id(CHANGES), PATCH_SETS - 1);
+  }
+
+  /** Lookup of a patch set that has not been looked up before. */
+  @Benchmark
+  public String getRevisionUncached() {
+    return new PatchSetDbImpl(repoManager).getRevision(PROJECT, patchSetId);
+  }
+
+  /** Lookup of a patch set that has been looked up before. */
+  @Benchmark
+  public String getRevisionCached() {
+    return cachingDb.getRevision(PROJECT, patchSetId);
+  }
+
+  /** Lookup of a patch set by loading the change with all its revisions, as done before. */
+  @Benchmark
+  public String getRevisionRest() {
+    return restDb.getRevision(PROJECT, patchSetId);
+  }
+
+  /** The lookup before patch sets got resolved through their refs. */
+  private static class RestPatchSetDb implements PatchSetDb {
+    private final GerritApi gApi;
+
+    RestPatchSetDb(GerritApi gApi) {
+      this.gApi = gApi;
+    }
+
+    @Override
+    public String getRevision(String projectName, PatchSet.Id patchSetId) {
+      try {
+        ChangeInfo info =
+            gApi.changes()
+                .id(patchSetId.changeId().get())
+                .get(EnumSet.of(ListChangesOption.ALL_REVISIONS));
+        for (Map.Entry<String, RevisionInfo> e : info.revisions.entrySet()) {
+          if (e.getValue()._number == patchSetId.get()) {
+            return e.getKey();
+          }
+        }
+        return null;
+      } catch (RestApiException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * API that answers change requests from the patch set refs of the change.
+   *
+   * <p>A server additionally loads the change notes and the commits of all revisions, so the REST
+   * lookup measured with this API is a lower bound of its actual cost.
+   */
+  private static class RefBackedGerritApi extends GerritApi.NotImplemented {
+    private final Repository repo;
+
+    RefBackedGerritApi(Repository repo) {
+      this.repo = repo;
+    }
+
+    @Override
+    public Changes changes() {
+      return new Changes.NotImplemented() {
+        @Override
+        public ChangeApi id(int id) {
+          return new ChangeApi.NotImplemented() {
+            @Override
+            public ChangeInfo get(EnumSet<ListChangesOption> options) throws RestApiException {
+              return getChange(Change.id(id));
+            }
+          };
+        }
+      };
+    }
+
+    private ChangeInfo getChange(Change.Id changeId) throws RestApiException {
+      ChangeInfo info = new ChangeInfo();
+      info.revisions = new HashMap<>();
+      try {
+        for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefNames.changeRefPrefix(changeId))) {
+          PatchSet.Id patchSetId = PatchSet.Id.fromRef(ref.getName());
+          if (patchSetId != null) {
+            RevisionInfo revision = new RevisionInfo();
+            revision._number = patchSetId.get();
+            info.revisions.put(ref.getObjectId().name(), revision);
+          }
+        }
+      } catch (IOException e) {
+        throw new RestApiException("Cannot read change " + changeId, e);
+      }
+      return info;
+    }
+  }
+}
@@ -0,0 +1,269 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.data.AccountAttribute;
+import com.google.gerrit.server.data.ApprovalAttribute;
+import com.google.gerrit.server.data.ChangeAttribute;
+import com.google.gerrit.server.data.PatchSetAttribute;
+import com.google.gerrit.server.data.RefUpdateAttribute;
+import com.google.gerrit.server.events.ChangeAbandonedEvent;
+import com.google.gerrit.server.events.ChangeMergedEvent;
+import com.google.gerrit.server.events.ChangeRestoredEvent;
+import com.google.gerrit.server.events.CommentAddedEvent;
+import com.google.gerrit.server.events.PatchSetCreatedEvent;
+import com.google.gerrit.server.events.PatchSetEvent;
+import com.google.gerrit.server.events.PrivateStateChangedEvent;
+import com.google.gerrit.server.events.RefEvent;
+import com.google.gerrit.server.events.RefUpdatedEvent;
+import com.google.gerrit.server.events.WorkInProgressStateChangedEvent;
+import com.googlesource.gerrit.plugins.its.base.its.NoopItsFacade;
+import com.googlesource.gerrit.plugins.its.base.workflow.ItsMetrics;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Extracts the properties of events of each supported type.
+ *
+ * <p>Issue occurrences are not cached, so each extraction matches the commit message like it
+ * happens for the first event of a commit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropertyExtractorBenchmark {
+  /** Keys that typical rules have conditions on. */
+  private static final List<String> RULE_KEYS =
+      ImmutableList.of("event-type", "association", "status", "approvalCodeReview", "branch");
+
+  private static final String PROJECT = "project";
+  private static final String REVISION = "1234567891123456789212345678931234567894";
+  private static final String PREVIOUS_REVISION = "0234567891123456789212345678931234567894";
+
+  @Param({
+    "change-abandoned",
+    "change-merged",
+    "change-restored",
+    "comment-added",
+    "patchset-created",
+    "private-state-changed",
+    "ref-updated",
+    "wip-state-changed"
+  })
+  public String eventType;
+
+  private PropertyExtractor propertyExtractor;
+  private RefEvent event;
+
+  @Setup
+  public void setUp() {
+    BenchmarkItsConfig itsConfig = new BenchmarkItsConfig();
+    String message = IssueExtractorBenchmark.CommitMessage.LONG.getMessage();
+    CommitMessageFetcher commitMessageFetcher =
+        new CommitMessageFetcher(null) {
+          @Override
+          public String fetchGuarded(String projectName, String commitId) {
+            return message;
+          }
+        };
+    IssueOccurrenceCache occurrenceCache =
+        new IssueOccurrenceCache(CacheBuilder.newBuilder().maximumSize(0).build());
+    ItsMetrics metrics = new ItsMetrics(new DisabledMetricMaker());
+    IssueExtractor issueExtractor =
+        new IssueExtractor(
+            itsConfig,
+            commitMessageFetcher,
+            (projectName, patchSetId) -> PREVIOUS_REVISION,
+            occurrenceCache,
+            metrics);
+    propertyExtractor =
+        new PropertyExtractor(
+            issueExtractor,
+            new ItsProjectExtractor(itsConfig),
+            new PropertyAttributeExtractor(new NoopItsFacade()),
+            "its-base",
+            metrics);
+    event = createEvent(eventType, message);
+  }
+
+  /** Extracts the properties, and reads the properties that rules typically look at. */
+  @Benchmark
+  public void extractAndMatch(Blackhole blackhole) {
+    for (Map<String, String> properties :
+        propertyExtractor.extractFrom(event).getIssuesProperties()) {
+      for (String key : RULE_KEYS) {
+        blackhole.consume(properties.get(key));
+      }
+    }
+  }
+
+  /**
+   * Extracts the properties, computes all of them, as was done before costly properties got
+   * computed only when accessed, and reads the properties that rules typically look at.
+   *
+   * <p>This is the baseline for {@link #extractAndMatch}. It still goes through the lazy property
+   * maps, whose values are shared between the issues of an event, so it slightly overestimates
+   * the cost of the eager extraction.
+   */
+  @Benchmark
+  public void extractEagerlyAndMatch(Blackhole blackhole) {
+    for (Map<String, String> properties :
+        propertyExtractor.extractFrom(event).getIssuesProperties()) {
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        blackhole.consume(property.getValue());
+      }
+      for (String key : RULE_KEYS) {
+        blackhole.consume(properties.get(key));
+      }
+    }
+  }
+
+  /** Extracts the properties, and reads all of them, as soy templates or log-event do. */
+  @Benchmark
+  public void extractAndRender(Blackhole blackhole) {
+    for (Map<String, String> properties :
+        propertyExtractor.extractFrom(event).getIssuesProperties()) {
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        blackhole.consume(property.getValue());
+      }
+    }
+  }
+
+  private static RefEvent createEvent(String type, String message) {
+    Change change =
+        new Change(
+            Change.key("I1234567891123456789212345678931234567894"),
+            Change.id(4711),
+            Account.id(1000000),
+            BranchNameKey.create(Project.nameKey(PROJECT), "master"),
+            new Timestamp(1234567890000L));
+    switch (type) {
+      case "change-abandoned":
+        ChangeAbandonedEvent abandoned = new ChangeAbandonedEvent(change);
+        abandoned.abandoner = Suppliers.ofInstance(account("abandoner"));
+        abandoned.reason = "Superseded by another change";
+        return withPatchSet(abandoned, message);
+      case "change-merged":
+        ChangeMergedEvent merged = new ChangeMergedEvent(change);
+        merged.submitter = Suppliers.ofInstance(account("submitter"));
+        return withPatchSet(merged, message);
+      case "change-restored":
+        ChangeRestoredEvent restored = new ChangeRestoredEvent(change);
+        restored.restorer = Suppliers.ofInstance(account("restorer"));
+        restored.reason = "Still needed";
+        return withPatchSet(restored, message);
+      case "comment-added":
+        CommentAddedEvent commentAdded = new CommentAddedEvent(change);
+        commentAdded.author = Suppliers.ofInstance(account("author"));
+        commentAdded.comment = "Patch Set 2: Code-Review+2\n\nLooks good to me.";
+        commentAdded.approvals =
+            Suppliers.ofInstance(
+                new ApprovalAttribute[] {approval("Code-Review", "2"), approval("Verified", "1")});
+        return withPatchSet(commentAdded, message);
+      case "patchset-created":
+        PatchSetCreatedEvent patchSetCreated = new PatchSetCreatedEvent(change);
+        patchSetCreated.uploader = Suppliers.ofInstance(account("uploader"));
+        return withPatchSet(patchSetCreated, message);
+      case "private-state-changed":
+        PrivateStateChangedEvent privateStateChanged = new PrivateStateChangedEvent(change) {};
+        privateStateChanged.changer = Suppliers.ofInstance(account("changer"));
+        return withPatchSet(privateStateChanged, message);
+      case "ref-updated":
+        RefUpdateAttribute refUpdate = new RefUpdateAttribute();
+        refUpdate.project = PROJECT;
+        refUpdate.refName = "refs/heads/master";
+        refUpdate.oldRev = PREVIOUS_REVISION;
+        refUpdate.newRev = REVISION;
+        RefUpdatedEvent refUpdated = new RefUpdatedEvent();
+        refUpdated.refUpdate = Suppliers.ofInstance(refUpdate);
+        refUpdated.submitter = Suppliers.ofInstance(account("submitter"));
+        return refUpdated;
+      case "wip-state-changed":
+        WorkInProgressStateChangedEvent wipStateChanged =
+            new WorkInProgressStateChangedEvent(change) {};
+        wipStateChanged.changer = Suppliers.ofInstance(account("changer"));
+        return withPatchSet(wipStateChanged, message);
+      default:
+        throw new IllegalArgumentException("Unknown event type " + type);
+    }
+  }
+
+  private static PatchSetEvent withPatchSet(PatchSetEvent event, String message) {
+    ChangeAttribute changeAttribute = new ChangeAttribute();
+    changeAttribute.project = PROJECT;
+    changeAttribute.branch = "master";
+    changeAttribute.id = "I1234567891123456789212345678931234567894";
+    changeAttribute.number = 4711;
+    changeAttribute.subject = message.substring(0, message.indexOf('\n'));
+    changeAttribute.owner = account("owner");
+    changeAttribute.url = "https://gerrit.example.com/c/project/+/4711";
+    changeAttribute.commitMessage = message;
+    changeAttribute.status = Change.Status.NEW;
+    event.change = Suppliers.ofInstance(changeAttribute);
+
+    PatchSetAttribute patchSetAttribute = new PatchSetAttribute();
+    patchSetAttribute.number = 2;
+    patchSetAttribute.revision = REVISION;
+    patchSetAttribute.parents = ImmutableList.of(PREVIOUS_REVISION);
+    patchSetAttribute.ref = "refs/changes/11/4711/2";
+    patchSetAttribute.uploader = account("uploader");
+    patchSetAttribute.author = account("author");
+    patchSetAttribute.createdOn = 1234567890L;
+    patchSetAttribute.sizeInsertions = 42;
+    patchSetAttribute.sizeDeletions = 7;
+    event.patchSet = Suppliers.ofInstance(patchSetAttribute);
+    return event;
+  }
+
+  private static AccountAttribute account(String name) {
+    AccountAttribute account = new AccountAttribute();
+    account.name = "Jane " + name;
+    account.email = name + "@example.com";
+    account.username = name;
+    return account;
+  }
+
+  private static ApprovalAttribute approval(String type, String value) {
+    ApprovalAttribute approval = new ApprovalAttribute();
+    approval.type = type;
+    approval.value = value;
+    return approval;
+  }
+}
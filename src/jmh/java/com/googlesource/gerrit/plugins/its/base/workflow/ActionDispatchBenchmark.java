@@ -0,0 +1,116 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.NoopItsFacade;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatches actions for many issues to an ITS that takes a while to answer, on platform and on
+ * virtual threads.
+ *
+ * <p>The throughput is the number of actions per second. With a blocking ITS, it is bound by the
+ * number of lanes divided by the latency, so it shows how many lanes a thread type can afford.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActionDispatchBenchmark {
+  private static final int ACTIONS = 1000;
+
+  @Param({"PLATFORM", "VIRTUAL"})
+  public ActionLanes.ThreadType threadType;
+
+  @Param({"8", "1024"})
+  public int laneCount;
+
+  @Param({"1", "10"})
+  public int latencyMillis;
+
+  private ItsFacade its;
+  private ActionLanes lanes;
+
+  @Setup
+  public void setUp() {
+    its =
+        new NoopItsFacade() {
+          @Override
+          public void addComment(String issueId, String comment) throws IOException {
+            try {
+              Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException();
+            }
+          }
+        };
+
+    // Opening a request context does not matter for dispatching, so a nice mock provides it.
+    OneOffRequestContext requestContext = EasyMock.createNiceMock(OneOffRequestContext.class);
+    EasyMock.replay(requestContext);
+    lanes =
+        new ActionLanes(
+            "its-base", threadType, laneCount, requestContext, new DisabledMetricMaker());
+  }
+
+  @TearDown
+  public void tearDown() {
+    lanes.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ACTIONS)
+  public void dispatch() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(ACTIONS);
+    for (int i = 0; i < ACTIONS; i++) {
+      String issue = Integer.toString(i);
+      lanes.execute(
+          issue,
+          () -> {
+            try {
+              its.addComment(issue, "comment");
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            } finally {
+              done.countDown();
+            }
+          });
+    }
+    done.await();
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.googlesource.gerrit.plugins.its.base.its.NoopItsFacade;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a comment from a soy template, with the compiled template cached, and compiling the
+ * template for each comment as before the template cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddSoyCommentBenchmark {
+  private static final String TEMPLATE =
+      "{namespace etc.its.templates}\n"
+          + "\n"
+          + "{template .Comment kind=\"text\"}\n"
+          + "  {@param changeNumber: string}\n"
+          + "  {@param formatChangeUrl: string}\n"
+          + "  {@param subject: string}\n"
+          + "  {@param ownerName: string}\n"
+          + "  {@param branch: string}\n"
+          + "  Change {$changeNumber} ({$subject}) by {$ownerName} on {$branch} mentions this"
+          + " issue. See {$formatChangeUrl}\n"
+          + "{/template}\n";
+
+  private Path itsPath;
+  private AddSoyComment addSoyComment;
+  private RecordingItsFacade its;
+  private ActionRequest actionRequest;
+  private Map<String, String> properties;
+
+  private static class RecordingItsFacade extends NoopItsFacade {
+    String comment;
+
+    @Override
+    public void addComment(String issueId, String comment) {
+      this.comment = comment;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    itsPath = Files.createTempDirectory("its-base-benchmark");
+    Path templateDir = Files.createDirectory(itsPath.resolve("templates"));
+    Files.write(templateDir.resolve("Comment.soy"), TEMPLATE.getBytes(StandardCharsets.UTF_8));
+
+    addSoyComment = new AddSoyComment(new SoyTemplateCache(itsPath));
+    its = new RecordingItsFacade();
+    actionRequest = new ActionRequest("add-soy-comment Comment");
+    properties =
+        ImmutableMap.<String, String>builder()
+            .put("event-type", "patchset-created")
+            .put("issue", "4711")
+            .put("association", "subject footer")
+            .put("project", "project")
+            .put("branch", "master")
+            .put("changeNumber", "4711")
+            .put("subject", "Fix NPE when submitting (bug 4711)")
+            .put("ownerName", "Jane Doe")
+            .put("formatChangeUrl", "[https://gerrit.example.com/c/project/+/4711]")
+            .put("changeUrl", "https://gerrit.example.com/c/project/+/4711")
+            .put("status", "NEW")
+            .build();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    MoreFiles.deleteRecursively(itsPath, RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Benchmark
+  public String render() throws IOException {
+    addSoyComment.execute(its, "4711", actionRequest, properties);
+    return its.comment;
+  }
+
+  @Benchmark
+  public String renderUncached() throws IOException {
+    new AddSoyComment(new SoyTemplateCache(itsPath))
+        .execute(its, "4711", actionRequest, properties);
+    return its.comment;
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates conditions against properties.
+ *
+ * <p>Run with {@code -prof gc} to see the allocation rate. {@code gc.alloc.rate.norm} should be 0
+ * for all of these, except for the {@code split} baselines, which evaluate conditions by splitting
+ * the property values as before they got scanned in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionBenchmark {
+  private Condition eventTypeCondition;
+  private Condition negatedStatusCondition;
+  private Condition associationCondition;
+  private Map<String, String> properties;
+  private Map<String, String> issueProperties;
+  private Set<String> eventTypeValues;
+  private Set<String> associationValues;
+
+  @Setup
+  public void setUp() {
+    eventTypeCondition =
+        new Condition("event-type", "change-merged,patchset-created,comment-added");
+    negatedStatusCondition = new Condition("status", "!,ABANDONED,DEFERRED");
+    associationCondition = new Condition("association", "footer-Bug,subject");
+    eventTypeValues = ImmutableSet.of("change-merged", "patchset-created", "comment-added");
+    associationValues = ImmutableSet.of("footer-Bug", "subject");
+    Map<String, String> common =
+        ImmutableMap.of("event-type", "comment-added", "status", "NEW", "branch", "master");
+    properties =
+        ImmutableMap.<String, String>builder()
+            .putAll(common)
+            .put("association", "somewhere body footer footer-Bug")
+            .build();
+    issueProperties =
+        new IssueProperties(
+            common, "4711", ImmutableSet.of("somewhere", "body", "footer", "footer-Bug"));
+  }
+
+  @Benchmark
+  public boolean eventType() {
+    return eventTypeCondition.isMetBy(properties);
+  }
+
+  @Benchmark
+  public boolean negated() {
+    return negatedStatusCondition.isMetBy(properties);
+  }
+
+  /** Multi-valued property, joined by spaces. */
+  @Benchmark
+  public boolean association() {
+    return associationCondition.isMetBy(properties);
+  }
+
+  /**
+   * Multi-valued property, as provided by {@link IssueProperties}.
+   *
+   * <p>This is somewhat slower than {@link #association}, although neither allocates. The joined
+   * property is a plain map lookup, and all values are scanned in one pass. Here, the values are
+   * taken from the issue's set through its iterator, and each value is scanned by a call of its
+   * own. As the matching value is the last one, all four values are visited in both cases, so the
+   * per-value overhead shows. What {@link IssueProperties} saves is joining the associations and
+   * copying the properties for each issue, which is not part of this benchmark.
+   */
+  @Benchmark
+  public boolean associationOfIssue() {
+    return associationCondition.isMetBy(issueProperties);
+  }
+
+  /** {@link #eventType}, evaluated by splitting the property value. */
+  @Benchmark
+  public boolean eventTypeSplit() {
+    return isMetBySplitting(eventTypeValues, properties.get("event-type"));
+  }
+
+  /** {@link #association}, evaluated by splitting the property value. */
+  @Benchmark
+  public boolean associationSplit() {
+    return isMetBySplitting(associationValues, properties.get("association"));
+  }
+
+  /** The evaluation of a condition before property values got scanned in place. */
+  private static boolean isMetBySplitting(Set<String> values, String property) {
+    String[] propertyValues = property != null ? property.split(" ") : new String[] {};
+    for (String p : propertyValues) {
+      if (values.contains(p.trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
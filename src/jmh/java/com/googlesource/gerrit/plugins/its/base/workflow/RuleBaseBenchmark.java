@@ -0,0 +1,142 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Looks up the actions for the issues of an event in project specific rule sets of different
+ * sizes.
+ *
+ * <p>{@link #linearEvaluation} evaluates every rule, and serves as reference for the rule index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBaseBenchmark {
+  private static final String[] EVENT_TYPES = {
+    "change-abandoned",
+    "change-merged",
+    "change-restored",
+    "comment-added",
+    "patchset-created",
+    "private-state-changed",
+    "ref-updated",
+    "wip-state-changed"
+  };
+  private static final String[] ASSOCIATIONS = {"subject", "body", "footer", "somewhere"};
+
+  @Param({"10", "100", "1000"})
+  public int ruleCount;
+
+  private List<Rule> rules;
+  private RuleBase ruleBase;
+  private List<Map<String, String>> issuesProperties;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(4711);
+    rules = new ArrayList<>();
+    for (int i = 0; i < ruleCount; i++) {
+      Rule rule = new Rule("rule" + i);
+      rule.addCondition(new Condition("event-type", EVENT_TYPES[i % EVENT_TYPES.length]));
+      if (random.nextBoolean()) {
+        rule.addCondition(
+            new Condition("association", ASSOCIATIONS[random.nextInt(ASSOCIATIONS.length)]));
+      }
+      if (random.nextInt(3) == 0) {
+        rule.addCondition(new Condition("status", "!,ABANDONED"));
+      }
+      if (random.nextInt(4) == 0) {
+        rule.addCondition(new Condition("approvalCodeReview", "2"));
+      }
+      rule.addActionRequest(new ActionRequest("add-comment Rule " + i + " fired"));
+      rules.add(rule);
+    }
+
+    Path itsPath = Paths.get(System.getProperty("java.io.tmpdir"), "its-base-benchmark");
+    ItsRulesProjectCache rulesProjectCache =
+        new ItsRulesProjectCache() {
+          @Override
+          public List<Rule> get(String projectName) {
+            return rules;
+          }
+
+          @Override
+          public void evict(String projectName) {}
+        };
+    ruleBase =
+        new RuleBase(
+            itsPath,
+            "actions.config",
+            "actions-its.config",
+            rulesProjectCache,
+            null,
+            new ItsMetrics(new DisabledMetricMaker()));
+
+    Map<String, String> common =
+        ImmutableMap.of(
+            "project", "project",
+            "event-type", "comment-added",
+            "status", "NEW",
+            "approvalCodeReview", "2");
+    issuesProperties = new ArrayList<>();
+    issuesProperties.add(new IssueProperties(common, "4711", ImmutableSet.of("subject")));
+    issuesProperties.add(
+        new IssueProperties(common, "42", ImmutableSet.of("somewhere", "body", "footer")));
+  }
+
+  @Benchmark
+  public void actionRequestsFor(Blackhole blackhole) {
+    for (Map<String, String> properties : issuesProperties) {
+      blackhole.consume(ruleBase.actionRequestsFor(properties));
+    }
+  }
+
+  @Benchmark
+  public void linearEvaluation(Blackhole blackhole) {
+    for (Map<String, String> properties : issuesProperties) {
+      List<ActionRequest> actionRequests = new ArrayList<>();
+      for (Rule rule : rules) {
+        actionRequests.addAll(rule.actionRequestsFor(properties));
+      }
+      blackhole.consume(actionRequests);
+    }
+  }
+}
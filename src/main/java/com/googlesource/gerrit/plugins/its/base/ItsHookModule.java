@@ -19,6 +19,10 @@ import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.extensions.restapi.RestApiModule;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.gerrit.server.config.GerritConfigListener;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.config.ProjectConfigEntry;
 import com.google.gerrit.server.config.SitePaths;
@@ -26,11 +30,17 @@ import com.google.gerrit.server.events.EventListener;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.inject.Inject;
 import com.google.inject.Provides;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacades;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
 import com.googlesource.gerrit.plugins.its.base.its.ItsHookEnabledConfigEntry;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfigCache;
+import com.googlesource.gerrit.plugins.its.base.util.IssueOccurrenceCache;
+import com.googlesource.gerrit.plugins.its.base.validation.IssueExistenceCache;
 import com.googlesource.gerrit.plugins.its.base.validation.ItsValidateComment;
 import com.googlesource.gerrit.plugins.its.base.workflow.ActionController;
+import com.googlesource.gerrit.plugins.its.base.workflow.ActionLanes;
 import com.googlesource.gerrit.plugins.its.base.workflow.ActionRequest;
+import com.googlesource.gerrit.plugins.its.base.workflow.ActionRetries;
 import com.googlesource.gerrit.plugins.its.base.workflow.AddComment;
 import com.googlesource.gerrit.plugins.its.base.workflow.AddPropertyToField;
 import com.googlesource.gerrit.plugins.its.base.workflow.AddSoyComment;
@@ -39,7 +49,10 @@ import com.googlesource.gerrit.plugins.its.base.workflow.Condition;
 import com.googlesource.gerrit.plugins.its.base.workflow.CreateVersionFromProperty;
 import com.googlesource.gerrit.plugins.its.base.workflow.CustomAction;
 import com.googlesource.gerrit.plugins.its.base.workflow.ItsRulesProjectCacheImpl;
+import com.googlesource.gerrit.plugins.its.base.workflow.ListDeadLetters;
 import com.googlesource.gerrit.plugins.its.base.workflow.LogEvent;
+import com.googlesource.gerrit.plugins.its.base.workflow.RefEventQueue;
+import com.googlesource.gerrit.plugins.its.base.workflow.ReplayDeadLetters;
 import com.googlesource.gerrit.plugins.its.base.workflow.Rule;
 import java.nio.file.Path;
 
@@ -67,6 +80,7 @@ public class ItsHookModule extends FactoryModule {
     bind(ItsConfig.class);
     DynamicSet.bind(binder(), CommitValidationListener.class).to(ItsValidateComment.class);
     DynamicSet.bind(binder(), EventListener.class).to(ActionController.class);
+    DynamicSet.bind(binder(), GerritConfigListener.class).to(ItsProjectConfigCache.class);
     factory(ActionRequest.Factory.class);
     factory(Condition.Factory.class);
     factory(Rule.Factory.class);
@@ -78,6 +92,26 @@ public class ItsHookModule extends FactoryModule {
     factory(AddPropertyToField.Factory.class);
     DynamicMap.mapOf(binder(), CustomAction.class);
     install(ItsRulesProjectCacheImpl.module());
+    install(IssueOccurrenceCache.module());
+    install(IssueExistenceCache.module());
+    install(
+        new LifecycleModule() {
+          @Override
+          protected void configure() {
+            listener().to(RefEventQueue.class);
+            listener().to(ActionLanes.class);
+            listener().to(ActionRetries.class);
+            listener().to(AsyncItsFacades.class);
+          }
+        });
+    install(
+        new RestApiModule() {
+          @Override
+          protected void configure() {
+            get(ConfigResource.CONFIG_KIND, "dead-letters").to(ListDeadLetters.class);
+            post(ConfigResource.CONFIG_KIND, "replay-dead-letters").to(ReplayDeadLetters.class);
+          }
+        });
   }
 
   @Provides
@@ -0,0 +1,70 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous facade to an issue tracking system (its).
+ *
+ * <p>The futures complete exceptionally with an {@link java.io.IOException} if the call to the ITS
+ * failed.
+ */
+public interface AsyncItsFacade {
+
+  /**
+   * Implemented by {@link ItsFacade}s that can also get called asynchronously without blocking a
+   * thread per call. Other facades get called through a {@link BlockingAsyncItsFacade}.
+   */
+  interface Source {
+    AsyncItsFacade getAsyncFacade();
+  }
+
+  CompletableFuture<Void> addComment(String issueId, String comment);
+
+  CompletableFuture<Void> addValueToField(String issueId, String value, String fieldId);
+
+  CompletableFuture<Void> performAction(String issueId, String actionName);
+
+  CompletableFuture<Void> createVersion(String itsProject, String version);
+
+  CompletableFuture<Boolean> exists(String issueId);
+
+  /**
+   * Checks which of many issues exist.
+   *
+   * <p>The default implementation checks the issues one by one, concurrently.
+   *
+   * @param issueIds The ids of the issues to check.
+   * @return The future of whether each issue exists, by issue id.
+   */
+  default CompletableFuture<Map<String, Boolean>> exist(Collection<String> issueIds) {
+    Map<String, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+    for (String issueId : issueIds) {
+      checks.put(issueId, exists(issueId));
+    }
+    return CompletableFuture.allOf(checks.values().toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            done -> {
+              Map<String, Boolean> ret = new LinkedHashMap<>();
+              for (Map.Entry<String, CompletableFuture<Boolean>> check : checks.entrySet()) {
+                ret.put(check.getKey(), check.getValue().join());
+              }
+              return ret;
+            });
+  }
+}
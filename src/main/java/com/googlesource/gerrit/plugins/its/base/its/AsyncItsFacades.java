@@ -0,0 +1,77 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides the {@link AsyncItsFacade} for an {@link ItsFacade}.
+ *
+ * <p>Facades that are a {@link AsyncItsFacade.Source} provide their own asynchronous facade. Other
+ * facades get called on a bounded pool of threads.
+ */
+@Singleton
+public class AsyncItsFacades implements LifecycleListener {
+  static final String THREADS_KEY = "itsCallThreads";
+  static final int DEFAULT_THREADS = 8;
+
+  private final ExecutorService pool;
+
+  @Inject
+  AsyncItsFacades(@PluginName String pluginName, PluginConfigFactory pluginCfgFactory) {
+    int threads =
+        pluginCfgFactory.getFromGerritConfig(pluginName).getInt(THREADS_KEY, DEFAULT_THREADS);
+    this.pool =
+        Executors.newFixedThreadPool(
+            Math.max(1, threads),
+            new ThreadFactoryBuilder()
+                .setNameFormat(pluginName + "-its-calls-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * Gets the asynchronous facade for a facade.
+   *
+   * @param its The facade to get the asynchronous facade for.
+   * @return The facade's own asynchronous facade, if it has one. Otherwise, an adapter calling the
+   *     facade on the pool.
+   */
+  public AsyncItsFacade get(ItsFacade its) {
+    if (its instanceof AsyncItsFacade.Source) {
+      return ((AsyncItsFacade.Source) its).getAsyncFacade();
+    }
+    return new BlockingAsyncItsFacade(its, pool);
+  }
+
+  /** Checks whether a facade can get called asynchronously without blocking a thread per call. */
+  public boolean isNative(ItsFacade its) {
+    return its instanceof AsyncItsFacade.Source;
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    pool.shutdownNow();
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.collect.ListMultimap;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A facade to an ITS that can update or check many issues in one request.
+ *
+ * <p>If the facade of an ITS implements this interface, the comments and field values that the
+ * actions for an event add to its issues are handed to the facade in one batch, and the issues of
+ * all commits of a push are checked in one batch. The default implementations fall back to one
+ * call per comment, field value or issue, so ITS plugins can override them one by one with bulk
+ * requests of their ITS.
+ */
+public interface BatchingItsFacade extends ItsFacade {
+
+  /** A value to add to a field of an issue. */
+  class FieldValue {
+    private final String fieldId;
+    private final String value;
+
+    public FieldValue(String fieldId, String value) {
+      this.fieldId = fieldId;
+      this.value = value;
+    }
+
+    /** @return The id of the ITS field to add the value to */
+    public String getFieldId() {
+      return fieldId;
+    }
+
+    /** @return The value to add */
+    public String getValue() {
+      return value;
+    }
+  }
+
+  /**
+   * Adds comments to issues.
+   *
+   * @param comments The comments to add, by issue id, in the order they should be added.
+   * @throws IOException if adding the comments failed.
+   */
+  default void addComments(ListMultimap<String, String> comments) throws IOException {
+    for (Map.Entry<String, String> comment : comments.entries()) {
+      addComment(comment.getKey(), comment.getValue());
+    }
+  }
+
+  /**
+   * Adds values to fields of issues.
+   *
+   * @param fieldValues The values to add, by issue id, in the order they should be added.
+   * @throws IOException if adding the values failed.
+   */
+  default void addValuesToFields(ListMultimap<String, FieldValue> fieldValues) throws IOException {
+    for (Map.Entry<String, FieldValue> fieldValue : fieldValues.entries()) {
+      FieldValue value = fieldValue.getValue();
+      addValueToField(fieldValue.getKey(), value.getValue(), value.getFieldId());
+    }
+  }
+
+  /**
+   * Checks which of many issues exist.
+   *
+   * @param issueIds The ids of the issues to check.
+   * @return Whether each issue exists, by issue id.
+   * @throws IOException if checking the issues failed.
+   */
+  default Map<String, Boolean> exist(Collection<String> issueIds) throws IOException {
+    Map<String, Boolean> ret = new LinkedHashMap<>();
+    for (String issueId : issueIds) {
+      ret.put(issueId, exists(issueId));
+    }
+    return ret;
+  }
+}
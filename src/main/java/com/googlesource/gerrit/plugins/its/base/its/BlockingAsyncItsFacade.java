@@ -0,0 +1,98 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.googlesource.gerrit.plugins.its.base.its.ItsCircuitBreaker.ItsCall;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/** Calls a blocking {@link ItsFacade} asynchronously, by calling it on an executor. */
+public class BlockingAsyncItsFacade implements AsyncItsFacade {
+  private final ItsFacade its;
+  private final Executor executor;
+
+  public BlockingAsyncItsFacade(ItsFacade its, Executor executor) {
+    this.its = its;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<Void> addComment(String issueId, String comment) {
+    return supply(
+        () -> {
+          its.addComment(issueId, comment);
+          return null;
+        });
+  }
+
+  @Override
+  public CompletableFuture<Void> addValueToField(String issueId, String value, String fieldId) {
+    return supply(
+        () -> {
+          its.addValueToField(issueId, value, fieldId);
+          return null;
+        });
+  }
+
+  @Override
+  public CompletableFuture<Void> performAction(String issueId, String actionName) {
+    return supply(
+        () -> {
+          its.performAction(issueId, actionName);
+          return null;
+        });
+  }
+
+  @Override
+  public CompletableFuture<Void> createVersion(String itsProject, String version) {
+    return supply(
+        () -> {
+          its.createVersion(itsProject, version);
+          return null;
+        });
+  }
+
+  @Override
+  public CompletableFuture<Boolean> exists(String issueId) {
+    return supply(() -> its.exists(issueId));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Boolean>> exist(Collection<String> issueIds) {
+    if (its instanceof BatchingItsFacade) {
+      return supply(() -> ((BatchingItsFacade) its).exist(issueIds));
+    }
+    return AsyncItsFacade.super.exist(issueIds);
+  }
+
+  private <T> CompletableFuture<T> supply(ItsCall<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              future.complete(call.call());
+            } catch (Exception e) {
+              future.completeExceptionally(e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+}
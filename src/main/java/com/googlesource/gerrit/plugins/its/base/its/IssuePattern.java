@@ -0,0 +1,65 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/** A compiled regular expression to identify issue ids, along with the group holding the id. */
+public class IssuePattern {
+  private final Pattern pattern;
+  private final int groupIndex;
+  private final String version;
+
+  public IssuePattern(Pattern pattern, int groupIndex) {
+    this.pattern = pattern;
+    this.groupIndex = groupIndex;
+    this.version =
+        Hashing.murmur3_128()
+            .newHasher()
+            .putString(pattern.pattern(), StandardCharsets.UTF_8)
+            .putInt(pattern.flags())
+            .putInt(groupIndex)
+            .hash()
+            .toString();
+  }
+
+  /** @return the regular expression used to identify issue ids. */
+  public Pattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @return the index of the group in {@link #getPattern()} that holds the issue id. The group
+   *     index is guaranteed to be a valid group index.
+   */
+  public int getGroupIndex() {
+    return groupIndex;
+  }
+
+  /**
+   * @return a fingerprint of the pattern and its group index. Issue patterns with equal versions
+   *     extract the same issues.
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return pattern.pattern() + " (group " + groupIndex + ")";
+  }
+}
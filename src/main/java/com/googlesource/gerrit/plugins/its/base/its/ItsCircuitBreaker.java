@@ -0,0 +1,307 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops calling an ITS that keeps failing.
+ *
+ * <p>Each ITS server, as identified by {@link ItsFacadeFactory#getServerId}, has its own circuit,
+ * so facades that get built per lookup share it. After a number of consecutive calls failed with
+ * an I/O error, the circuit opens and calls fail right away with a {@link CircuitOpenException},
+ * instead of waiting for the ITS to time out. Once the circuit has been open for a while, the next
+ * call probes the ITS through {@link ItsFacade#healthCheck}. If the probe succeeds, the circuit
+ * closes again. Otherwise, it stays open for another while.
+ *
+ * <p>Calls are guarded by the callers rather than by wrapping the facade, as actions of its plugins
+ * may rely on getting the facade of their plugin.
+ */
+@Singleton
+public class ItsCircuitBreaker {
+  private static final Logger log = LoggerFactory.getLogger(ItsCircuitBreaker.class);
+
+  static final String FAILURE_THRESHOLD_KEY = "circuitBreakerFailureThreshold";
+  static final String OPEN_DURATION_KEY = "circuitBreakerOpenDuration";
+
+  static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  static final long DEFAULT_OPEN_DURATION = TimeUnit.SECONDS.toMillis(30);
+
+  /** A call to an ITS. */
+  @FunctionalInterface
+  public interface ItsCall<T> {
+    T call() throws IOException;
+  }
+
+  /** A call to an ITS without result. */
+  @FunctionalInterface
+  public interface VoidItsCall {
+    void call() throws IOException;
+  }
+
+  enum State {
+    CLOSED,
+    HALF_OPEN,
+    OPEN
+  }
+
+  private final ItsFacadeFactory itsFactory;
+  private final int failureThreshold;
+  private final long openDuration;
+  private final Counter0 shortCircuited;
+  private final LoadingCache<String, Circuit> circuits =
+      CacheBuilder.newBuilder().build(CacheLoader.from(() -> new Circuit()));
+
+  @Inject
+  ItsCircuitBreaker(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      ItsFacadeFactory itsFactory,
+      MetricMaker metricMaker) {
+    this.itsFactory = itsFactory;
+    PluginConfig cfg = pluginCfgFactory.getFromGerritConfig(pluginName);
+    this.failureThreshold = cfg.getInt(FAILURE_THRESHOLD_KEY, DEFAULT_FAILURE_THRESHOLD);
+    String value = cfg.getString(OPEN_DURATION_KEY);
+    this.openDuration =
+        Math.max(
+            0,
+            value == null
+                ? DEFAULT_OPEN_DURATION
+                : ConfigUtil.getTimeUnit(value, DEFAULT_OPEN_DURATION, TimeUnit.MILLISECONDS));
+
+    metricMaker.newCallbackMetric(
+        "its/circuit_state",
+        Integer.class,
+        new Description(
+                "State of the least healthy ITS circuit (0: closed, 1: half-open, 2: open)")
+            .setGauge(),
+        () -> getState().ordinal());
+    shortCircuited =
+        metricMaker.newCounter(
+            "its/short_circuited",
+            new Description("Calls to an ITS that were not made as its circuit was open")
+                .setRate()
+                .setUnit("calls"));
+  }
+
+  /**
+   * Calls an ITS, unless its circuit is open.
+   *
+   * @param its The facade of the ITS to call.
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @return The result of the call.
+   * @throws CircuitOpenException if the circuit of the ITS is open.
+   * @throws IOException if the call failed.
+   */
+  public <T> T call(ItsFacade its, Project.NameKey project, ItsCall<T> call) throws IOException {
+    if (failureThreshold <= 0) {
+      return call.call();
+    }
+    Circuit circuit = getCircuit(project);
+    if (circuit.beforeCall()) {
+      circuit.probe(its);
+    }
+    T result;
+    try {
+      result = call.call();
+    } catch (IOException e) {
+      circuit.failed();
+      throw e;
+    }
+    circuit.succeeded();
+    return result;
+  }
+
+  /**
+   * Calls an ITS, unless its circuit is open.
+   *
+   * @param its The facade of the ITS to call.
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @throws CircuitOpenException if the circuit of the ITS is open.
+   * @throws IOException if the call failed.
+   */
+  public void run(ItsFacade its, Project.NameKey project, VoidItsCall call) throws IOException {
+    call(
+        its,
+        project,
+        () -> {
+          call.call();
+          return null;
+        });
+  }
+
+  /**
+   * Calls an ITS asynchronously, unless its circuit is open.
+   *
+   * <p>If the circuit of the ITS is due for a probe, the probe is made synchronously.
+   *
+   * @param its The facade of the ITS to call.
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @return The future result of the call. It completes exceptionally with a {@link
+   *     CircuitOpenException} if the circuit of the ITS is open.
+   */
+  public <T> CompletableFuture<T> callAsync(
+      ItsFacade its, Project.NameKey project, ItsCall<CompletableFuture<T>> call) {
+    if (failureThreshold <= 0) {
+      return invoke(call);
+    }
+    Circuit circuit = getCircuit(project);
+    try {
+      if (circuit.beforeCall()) {
+        circuit.probe(its);
+      }
+    } catch (CircuitOpenException e) {
+      return failed(e);
+    }
+    return invoke(call)
+        .whenComplete(
+            (result, error) -> {
+              if (error == null) {
+                circuit.succeeded();
+              } else if (unwrap(error) instanceof IOException) {
+                circuit.failed();
+              }
+            });
+  }
+
+  private Circuit getCircuit(Project.NameKey project) {
+    return circuits.getUnchecked(itsFactory.getServerId(project));
+  }
+
+  /** Gets the cause of a failed future. */
+  public static Throwable unwrap(Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      return error.getCause();
+    }
+    return error;
+  }
+
+  private static <T> CompletableFuture<T> invoke(ItsCall<CompletableFuture<T>> call) {
+    try {
+      return call.call();
+    } catch (IOException e) {
+      return failed(e);
+    }
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable error) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(error);
+    return future;
+  }
+
+  /** Gets the state of the least healthy circuit. */
+  State getState() {
+    State state = State.CLOSED;
+    for (Circuit circuit : circuits.asMap().values()) {
+      State circuitState = circuit.getState();
+      if (circuitState.compareTo(state) > 0) {
+        state = circuitState;
+      }
+    }
+    return state;
+  }
+
+  private class Circuit {
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * Checks whether a call may be made.
+     *
+     * @return true, if the caller has to probe the ITS before making the call.
+     * @throws CircuitOpenException if no call may be made.
+     */
+    synchronized boolean beforeCall() throws CircuitOpenException {
+      switch (state) {
+        case CLOSED:
+          return false;
+        case OPEN:
+          if (System.currentTimeMillis() - openedAt >= openDuration) {
+            state = State.HALF_OPEN;
+            return true;
+          }
+          break;
+        case HALF_OPEN:
+        default:
+          break;
+      }
+      shortCircuited.increment();
+      throw new CircuitOpenException("Circuit is open after " + failures + " failed calls");
+    }
+
+    void probe(ItsFacade its) throws CircuitOpenException {
+      try {
+        its.healthCheck(ItsFacade.Check.SYSINFO);
+      } catch (IOException | RuntimeException e) {
+        synchronized (this) {
+          open();
+        }
+        shortCircuited.increment();
+        throw new CircuitOpenException("Circuit is open as the health check failed", e);
+      }
+      synchronized (this) {
+        log.info("Closing circuit as the health check succeeded");
+        state = State.CLOSED;
+        failures = 0;
+      }
+    }
+
+    synchronized void succeeded() {
+      if (state == State.CLOSED) {
+        failures = 0;
+      }
+    }
+
+    synchronized void failed() {
+      failures++;
+      if (state == State.CLOSED && failures >= failureThreshold) {
+        log.warn("Opening circuit after {} failed calls", failures);
+        open();
+      }
+    }
+
+    synchronized State getState() {
+      return state;
+    }
+
+    private void open() {
+      state = State.OPEN;
+      openedAt = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.its.base.its.ItsCircuitBreaker.ItsCall;
+import com.googlesource.gerrit.plugins.its.base.its.ItsCircuitBreaker.VoidItsCall;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent calls to ITSs.
+ *
+ * <p>Calls to an ITS wait for one of the permits of its server, as identified by {@link
+ * ItsFacadeFactory#getServerId}, so cheap threads (e.g.: virtual threads) do not overwhelm the ITS
+ * with requests, even if facades get built per lookup.
+ */
+@Singleton
+public class ItsConcurrencyLimiter {
+  static final String MAX_CONCURRENT_CALLS_KEY = "maxConcurrentCalls";
+
+  private final ItsFacadeFactory itsFactory;
+  private final int maxConcurrentCalls;
+  private final LoadingCache<String, Semaphore> permits;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Timer0 waitTime;
+
+  @Inject
+  ItsConcurrencyLimiter(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      ItsFacadeFactory itsFactory,
+      MetricMaker metricMaker) {
+    this.itsFactory = itsFactory;
+    this.maxConcurrentCalls =
+        pluginCfgFactory.getFromGerritConfig(pluginName).getInt(MAX_CONCURRENT_CALLS_KEY, 0);
+    this.permits =
+        CacheBuilder.newBuilder()
+            .build(CacheLoader.from(() -> new Semaphore(maxConcurrentCalls, true)));
+
+    metricMaker.newCallbackMetric(
+        "its/calls_in_flight",
+        Integer.class,
+        new Description("Calls to an ITS currently in flight").setGauge().setUnit("calls"),
+        inFlight::get);
+    waitTime =
+        metricMaker.newTimer(
+            "its/concurrency_wait",
+            new Description("Time calls to an ITS waited for a free permit")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  /**
+   * Calls an ITS, once a permit of its server is free.
+   *
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @return The result of the call.
+   * @throws InterruptedIOException if the thread got interrupted while waiting for a permit.
+   * @throws IOException if the call failed.
+   */
+  public <T> T call(Project.NameKey project, ItsCall<T> call) throws IOException {
+    Semaphore semaphore = acquire(project);
+    try {
+      return call.call();
+    } finally {
+      release(semaphore);
+    }
+  }
+
+  /**
+   * Calls an ITS, once a permit of its server is free.
+   *
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @throws InterruptedIOException if the thread got interrupted while waiting for a permit.
+   * @throws IOException if the call failed.
+   */
+  public void run(Project.NameKey project, VoidItsCall call) throws IOException {
+    call(
+        project,
+        () -> {
+          call.call();
+          return null;
+        });
+  }
+
+  /**
+   * Calls an ITS asynchronously, once a permit of its server is free.
+   *
+   * <p>The permit is held until the returned future completes.
+   *
+   * @param project The project the call is made for.
+   * @param call The call to make.
+   * @return The future result of the call.
+   */
+  public <T> CompletableFuture<T> callAsync(
+      Project.NameKey project, ItsCall<CompletableFuture<T>> call) {
+    Semaphore semaphore;
+    try {
+      semaphore = acquire(project);
+    } catch (InterruptedIOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<T> future;
+    try {
+      future = call.call();
+    } catch (IOException | RuntimeException e) {
+      release(semaphore);
+      return CompletableFuture.failedFuture(e);
+    }
+    return future.whenComplete((result, error) -> release(semaphore));
+  }
+
+  /**
+   * Waits for a permit of the server of a project.
+   *
+   * @return The semaphore the permit got acquired from, or {@code null}, if calls are not capped.
+   */
+  private Semaphore acquire(Project.NameKey project) throws InterruptedIOException {
+    Semaphore semaphore = null;
+    if (maxConcurrentCalls > 0) {
+      semaphore = permits.getUnchecked(itsFactory.getServerId(project));
+      if (!semaphore.tryAcquire()) {
+        long start = System.nanoTime();
+        try {
+          semaphore.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting to call the ITS");
+        }
+        waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+    inFlight.incrementAndGet();
+    return semaphore;
+  }
+
+  private void release(Semaphore semaphore) {
+    inFlight.decrementAndGet();
+    if (semaphore != null) {
+      semaphore.release();
+    }
+  }
+}
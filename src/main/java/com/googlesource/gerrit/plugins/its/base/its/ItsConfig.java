@@ -14,11 +14,7 @@
 
 package com.googlesource.gerrit.plugins.its.base.its;
 
-import static java.util.stream.Collectors.toList;
-
-import com.google.gerrit.common.data.AccessSection;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.api.projects.CommentLinkInfo;
 import com.google.gerrit.server.config.GerritServerConfig;
@@ -33,12 +29,14 @@ import com.google.gerrit.server.events.PrivateStateChangedEvent;
 import com.google.gerrit.server.events.RefEvent;
 import com.google.gerrit.server.events.RefUpdatedEvent;
 import com.google.gerrit.server.events.WorkInProgressStateChangedEvent;
-import com.google.gerrit.server.project.NoSuchProjectException;
 import com.google.gerrit.server.project.ProjectCache;
 import com.google.gerrit.server.project.ProjectState;
-import com.google.gerrit.server.project.RefPatternMatcher;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.googlesource.gerrit.plugins.its.base.util.ProjectConfigRevisions;
 import com.googlesource.gerrit.plugins.its.base.validation.ItsAssociationPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -55,11 +53,20 @@ public class ItsConfig {
   private final String pluginName;
   private final ProjectCache projectCache;
   private final PluginConfigFactory pluginCfgFactory;
-  private final Config gerritConfig;
+  private final Provider<Config> gerritConfig;
+  private final ItsProjectConfigCache projectConfigCache;
 
   private static final ThreadLocal<Project.NameKey> currentProjectName =
       ThreadLocal.withInitial(() -> null);
 
+  /**
+   * Sets the project the deprecated project-less getters of this thread refer to.
+   *
+   * @param projectName the project, or {@code null} to refer to the server-wide configuration.
+   * @deprecated its-base no longer sets the current project, as it passes the configuration of the
+   *     project along. Use {@link #getProjectConfig} instead.
+   */
+  @Deprecated
   public static void setCurrentProjectName(Project.NameKey projectName) {
     currentProjectName.set(projectName);
   }
@@ -69,11 +76,13 @@ public class ItsConfig {
       @PluginName String pluginName,
       ProjectCache projectCache,
       PluginConfigFactory pluginCfgFactory,
-      @GerritServerConfig Config gerritConfig) {
+      @GerritServerConfig Provider<Config> gerritConfig,
+      ItsProjectConfigCache projectConfigCache) {
     this.pluginName = pluginName;
     this.projectCache = projectCache;
     this.pluginCfgFactory = pluginCfgFactory;
     this.gerritConfig = gerritConfig;
+    this.projectConfigCache = projectConfigCache;
   }
 
   // Plugin enablement --------------------------------------------------------
@@ -102,75 +111,170 @@ public class ItsConfig {
           projectNK.get());
       return false;
     }
-    return isEnforcedByAnyParentProject(refName, projectState)
-        || (isEnabledForProject(projectState) && isEnabledForBranch(projectState, refName));
+    return getProjectConfig(projectState).isEnabled(refName);
   }
 
-  private boolean isEnforcedByAnyParentProject(String refName, ProjectState projectState) {
-    for (ProjectState parentState : projectState.treeInOrder()) {
-      PluginConfig parentCfg = pluginCfgFactory.getFromProjectConfig(parentState, pluginName);
-      if ("enforced".equals(parentCfg.getString("enabled", "false"))
-          && isEnabledForBranch(parentState, refName)) {
-        return true;
-      }
+  // Project association
+  public Optional<String> getItsProjectName(Project.NameKey projectNK) {
+    return getProjectConfig(projectNK).getItsProjectName();
+  }
+
+  // Project configuration ----------------------------------------------------
+
+  /**
+   * Gets the configuration of the plugin for a project.
+   *
+   * <p>The snapshot is built once per revision of the configurations of the project and its parents
+   * and is cached.
+   *
+   * @param projectName the project to get the configuration for. If {@code null} or if the project
+   *     does not exist, the server-wide configuration is returned.
+   * @return the configuration of the plugin for the project.
+   */
+  public ItsProjectConfig getProjectConfig(Project.NameKey projectName) {
+    ProjectState projectState = projectName != null ? projectCache.get(projectName) : null;
+    if (projectState == null) {
+      return projectConfigCache.get(null, Collections.emptyList(), () -> buildProjectConfig(null));
     }
-    return false;
+    return getProjectConfig(projectState);
   }
 
-  private boolean isEnabledForProject(ProjectState projectState) {
-    return !"false"
-        .equals(
-            pluginCfgFactory
-                .getFromProjectConfigWithInheritance(projectState, pluginName)
-                .getString("enabled", "false"));
+  private ItsProjectConfig getProjectConfig(ProjectState projectState) {
+    return projectConfigCache.get(
+        projectState.getNameKey(),
+        ProjectConfigRevisions.of(projectState),
+        () -> buildProjectConfig(projectState));
   }
 
-  private boolean isEnabledForBranch(ProjectState project, String refName) {
-    String[] refPatterns =
-        pluginCfgFactory
-            .getFromProjectConfigWithInheritance(project, pluginName)
-            .getStringList("branch");
-    if (refPatterns.length == 0) {
-      return true;
-    }
-    for (String refPattern : refPatterns) {
-      if (AccessSection.isValidRefSectionName(refPattern) && match(refName, refPattern)) {
-        return true;
+  private ItsProjectConfig buildProjectConfig(ProjectState projectState) {
+    PluginConfig pluginConfig;
+    List<CommentLinkInfo> commentLinks;
+    boolean enabled = false;
+    List<String> branches = Collections.emptyList();
+    List<List<String>> enforcedBranches = new ArrayList<>();
+    Optional<String> itsProjectName = Optional.empty();
+    double rateLimit = 0;
+    if (projectState != null) {
+      pluginConfig = pluginCfgFactory.getFromProjectConfigWithInheritance(projectState, pluginName);
+      commentLinks = projectState.getCommentLinks();
+      enabled = !"false".equals(pluginConfig.getString("enabled", "false"));
+      branches = Arrays.asList(pluginConfig.getStringList("branch"));
+      for (ProjectState state : projectState.treeInOrder()) {
+        PluginConfig stateConfig = pluginCfgFactory.getFromProjectConfig(state, pluginName);
+        if ("enforced".equals(stateConfig.getString("enabled", "false"))) {
+          enforcedBranches.add(
+              Arrays.asList(
+                  pluginCfgFactory
+                      .getFromProjectConfigWithInheritance(state, pluginName)
+                      .getStringList("branch")));
+        }
       }
+      itsProjectName =
+          Optional.ofNullable(
+              pluginCfgFactory
+                  .getFromProjectConfig(projectState, pluginName)
+                  .getString("its-project"));
+      rateLimit = ItsRateLimiter.parseRate(pluginConfig.getString(ItsRateLimiter.RATE_LIMIT_KEY));
+    } else {
+      pluginConfig = new PluginConfig(pluginName, new Config());
+      commentLinks = Collections.emptyList();
     }
-    return false;
-  }
 
-  private boolean match(String refName, String refPattern) {
-    return RefPatternMatcher.getMatcher(refPattern).match(refName, null);
+    String commentLinkName = getPluginConfigString(pluginConfig, "commentlink");
+    if (commentLinkName == null) {
+      commentLinkName = pluginName;
+    }
+    return new ItsProjectConfig(
+        projectState != null ? projectState.getNameKey() : null,
+        enabled,
+        branches,
+        enforcedBranches,
+        commentLinkName,
+        compileIssuePattern(pluginConfig, commentLinks, commentLinkName).orElse(null),
+        Optional.ofNullable(getPluginConfigString(pluginConfig, "dummyIssuePattern"))
+            .map(Pattern::compile),
+        getItsAssociationPolicy(pluginConfig, commentLinkName),
+        itsProjectName,
+        rateLimit);
   }
 
-  // Project association
-  public Optional<String> getItsProjectName(Project.NameKey projectNK) {
-    ProjectState projectState = projectCache.get(projectNK);
-    if (projectState == null) {
+  private Optional<IssuePattern> compileIssuePattern(
+      PluginConfig pluginConfig, List<CommentLinkInfo> commentLinks, String commentLinkName) {
+    Optional<String> match =
+        commentLinks.stream()
+            .filter(input -> input.name.equals(commentLinkName))
+            .filter(input -> input.match != null && !input.match.trim().isEmpty())
+            .map(input -> input.match)
+            .reduce((a, b) -> b);
+
+    String defPattern = gerritConfig.get().getString("commentlink", commentLinkName, "match");
+
+    if (!match.isPresent() && defPattern == null) {
       return Optional.empty();
     }
-    return Optional.ofNullable(
-        pluginCfgFactory.getFromProjectConfig(projectState, pluginName).getString("its-project"));
+
+    Pattern pattern = Pattern.compile(match.orElse(defPattern));
+    int groupCount = pattern.matcher("").groupCount();
+    int index = getPluginConfigInt(pluginConfig, "commentlinkGroupIndex", 1);
+    if (index < 0 || index > groupCount) {
+      index = (groupCount == 0 ? 0 : 1);
+    }
+    return Optional.of(new IssuePattern(pattern, index));
+  }
+
+  private ItsAssociationPolicy getItsAssociationPolicy(
+      PluginConfig pluginConfig, String commentLinkName) {
+    ItsAssociationPolicy legacyItsAssociationPolicy =
+        gerritConfig.get().getEnum(
+            "commentlink", commentLinkName, "association", ItsAssociationPolicy.OPTIONAL);
+
+    return getPluginConfigEnum(pluginConfig, "association", legacyItsAssociationPolicy);
+  }
+
+  private String getPluginConfigString(PluginConfig pluginConfig, String key) {
+    return pluginConfig.getString(key, gerritConfig.get().getString(PLUGIN, pluginName, key));
+  }
+
+  private int getPluginConfigInt(PluginConfig pluginConfig, String key, int defaultValue) {
+    return pluginConfig.getInt(
+        key, gerritConfig.get().getInt(PLUGIN, pluginName, key, defaultValue));
+  }
+
+  private <T extends Enum<?>> T getPluginConfigEnum(
+      PluginConfig pluginConfig, String key, T defaultValue) {
+    return pluginConfig.getEnum(
+        key, gerritConfig.get().getEnum(PLUGIN, pluginName, key, defaultValue));
   }
 
   // Issue association --------------------------------------------------------
+  //
+  // The following getters return the configuration of the project that got set through
+  // setCurrentProjectName on the calling thread. As its-base no longer sets it, they return the
+  // server-wide configuration unless the caller set the project itself.
 
   /**
    * Gets the name of the comment link that should be used
    *
    * @return name of the comment link that should be used
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
    */
+  @Deprecated
   public String getCommentLinkName() {
-    String ret;
-
-    ret = getPluginConfigString("commentlink");
-    if (ret == null) {
-      ret = pluginName;
-    }
+    return getProjectConfig(currentProjectName.get()).getCommentLinkName();
+  }
 
-    return ret;
+  /**
+   * Gets the regular expression used to identify issue ids along with the index of the group that
+   * holds the issue id.
+   *
+   * @return the issue pattern, or {@code null}, if there is no pattern to match issue ids.
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
+   */
+  @Deprecated
+  public IssuePattern getCompiledIssuePattern() {
+    return getProjectConfig(currentProjectName.get()).getIssuePattern();
   }
 
   /**
@@ -179,21 +283,13 @@ public class ItsConfig {
    * <p>The index of the group that holds the issue id is {@link #getIssuePatternGroupIndex()}.
    *
    * @return the regular expression, or {@code null}, if there is no pattern to match issue ids.
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
    */
+  @Deprecated
   public Pattern getIssuePattern() {
-    Optional<String> match =
-        getCommentLinkInfo(getCommentLinkName()).stream()
-            .filter(input -> input.match != null && !input.match.trim().isEmpty())
-            .map(input -> input.match)
-            .reduce((a, b) -> b);
-
-    String defPattern = gerritConfig.getString("commentlink", getCommentLinkName(), "match");
-
-    if (!match.isPresent() && defPattern == null) {
-      return null;
-    }
-
-    return Pattern.compile(match.orElse(defPattern));
+    IssuePattern issuePattern = getCompiledIssuePattern();
+    return issuePattern != null ? issuePattern.getPattern() : null;
   }
 
   /**
@@ -203,15 +299,12 @@ public class ItsConfig {
    *
    * @return the group index for {@link #getIssuePattern()} that holds the issue id. The group index
    *     is guaranteed to be a valid group index.
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
    */
+  @Deprecated
   public int getIssuePatternGroupIndex() {
-    Pattern pattern = getIssuePattern();
-    int groupCount = pattern.matcher("").groupCount();
-    int index = getPluginConfigInt("commentlinkGroupIndex", 1);
-    if (index < 0 || index > groupCount) {
-      index = (groupCount == 0 ? 0 : 1);
-    }
-    return index;
+    return getCompiledIssuePattern().getGroupIndex();
   }
 
   /**
@@ -219,58 +312,24 @@ public class ItsConfig {
    * mandatory issue pattern check for some commits.
    *
    * <p>When no pattern is specified, it will return a pattern which never matches.
+   *
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
    */
+  @Deprecated
   public Optional<Pattern> getDummyIssuePattern() {
-    return Optional.ofNullable(getPluginConfigString("dummyIssuePattern")).map(Pattern::compile);
+    return getProjectConfig(currentProjectName.get()).getDummyIssuePattern();
   }
 
   /**
    * Gets how necessary it is to associate commits with issues
    *
    * @return policy on how necessary association with issues is
+   * @deprecated this returns the server-wide value, unless the calling thread set the project
+   *     through {@link #setCurrentProjectName}. Use {@link #getProjectConfig} instead.
    */
+  @Deprecated
   public ItsAssociationPolicy getItsAssociationPolicy() {
-    ItsAssociationPolicy legacyItsAssociationPolicy =
-        gerritConfig.getEnum(
-            "commentlink", getCommentLinkName(), "association", ItsAssociationPolicy.OPTIONAL);
-
-    return getPluginConfigEnum("association", legacyItsAssociationPolicy);
-  }
-
-  private String getPluginConfigString(String key) {
-    return getCurrentPluginConfig().getString(key, gerritConfig.getString(PLUGIN, pluginName, key));
-  }
-
-  private int getPluginConfigInt(String key, int defaultValue) {
-    return getCurrentPluginConfig()
-        .getInt(key, gerritConfig.getInt(PLUGIN, pluginName, key, defaultValue));
-  }
-
-  private <T extends Enum<?>> T getPluginConfigEnum(String key, T defaultValue) {
-    return getCurrentPluginConfig()
-        .getEnum(key, gerritConfig.getEnum(PLUGIN, pluginName, key, defaultValue));
-  }
-
-  private PluginConfig getCurrentPluginConfig() {
-    NameKey projectName = currentProjectName.get();
-    if (projectName != null) {
-      try {
-        return pluginCfgFactory.getFromProjectConfigWithInheritance(projectName, pluginName);
-      } catch (NoSuchProjectException e) {
-        log.error("Cannot access " + projectName + " configuration for plugin " + pluginName, e);
-      }
-    }
-    return new PluginConfig(pluginName, new Config());
-  }
-
-  private List<CommentLinkInfo> getCommentLinkInfo(final String commentlinkName) {
-    NameKey projectName = currentProjectName.get();
-    if (projectName != null) {
-      List<CommentLinkInfo> commentlinks = projectCache.get(projectName).getCommentLinks();
-      return commentlinks.stream()
-          .filter(input -> input.name.equals(commentlinkName))
-          .collect(toList());
-    }
-    return Collections.emptyList();
+    return getProjectConfig(currentProjectName.get()).getItsAssociationPolicy();
   }
 }
@@ -22,4 +22,19 @@ public interface ItsFacadeFactory {
   /* Returns the object of type ItsFacade containing server info extracted from project.config if configured
    * or the default server configured in gerrit.config if project name is empty or null*/
   ItsFacade getFacade(Project.NameKey project);
+
+  /**
+   * Gets a stable identity of the ITS server the facade of a project talks to.
+   *
+   * <p>Circuit breakers, rate and concurrency limits, and cached issue existences are kept per
+   * server id, as {@link #getFacade} may build a new facade on each call. Factories whose projects
+   * share servers should return an id of the server, e.g.: its URL. The default keeps them per
+   * project, so issues of different servers never get mixed up.
+   *
+   * @param project The project, or {@code null} for the default server.
+   * @return The id of the server.
+   */
+  default String getServerId(Project.NameKey project) {
+    return project != null ? project.get() : "";
+  }
 }
@@ -0,0 +1,187 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.data.AccessSection;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.project.RefPatternMatcher;
+import com.googlesource.gerrit.plugins.its.base.validation.ItsAssociationPolicy;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The configuration of an ITS plugin for a project.
+ *
+ * <p>Snapshots are immutable and hold the configuration as inherited from the project's parents and
+ * {@code gerrit.config}, so they can be passed between threads and used without looking up the
+ * configuration again. Snapshots are obtained through {@link ItsConfig#getProjectConfig}.
+ */
+public class ItsProjectConfig {
+  private static final Logger log = LoggerFactory.getLogger(ItsProjectConfig.class);
+
+  /** The compiled ref patterns of the branches the plugin is enabled for. */
+  private static class BranchMatcher {
+    private final boolean allBranches;
+    private final ImmutableList<RefPatternMatcher> matchers;
+
+    BranchMatcher(List<String> refPatterns) {
+      allBranches = refPatterns.isEmpty();
+      ImmutableList.Builder<RefPatternMatcher> builder = ImmutableList.builder();
+      for (String refPattern : refPatterns) {
+        if (AccessSection.isValidRefSectionName(refPattern)) {
+          try {
+            builder.add(RefPatternMatcher.getMatcher(refPattern));
+          } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid branch '{}'", refPattern, e);
+          }
+        }
+      }
+      matchers = builder.build();
+    }
+
+    boolean match(String refName) {
+      if (allBranches) {
+        return true;
+      }
+      for (RefPatternMatcher matcher : matchers) {
+        if (matcher.match(refName, null)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Project.NameKey projectName;
+  private final boolean enabled;
+  private final ImmutableList<String> branches;
+  private final BranchMatcher branchMatcher;
+  private final ImmutableList<BranchMatcher> enforcedBranchMatchers;
+  private final String commentLinkName;
+  private final IssuePattern issuePattern;
+  private final Optional<Pattern> dummyIssuePattern;
+  private final ItsAssociationPolicy associationPolicy;
+  private final Optional<String> itsProjectName;
+  private final double rateLimit;
+
+  /**
+   * @param projectName The project, or {@code null} for the server-wide configuration.
+   * @param enabled Whether the plugin is enabled for the project.
+   * @param branches The ref patterns of the branches the plugin is enabled for. If empty, the
+   *     plugin is enabled for all branches.
+   * @param enforcedBranches The ref patterns of the project and each of its parents that enforce
+   *     the plugin.
+   * @param commentLinkName The name of the comment link to identify issues with.
+   * @param issuePattern The pattern to identify issue ids, or {@code null}, if there is none.
+   * @param dummyIssuePattern The pattern to skip the mandatory check for an issue.
+   * @param associationPolicy How necessary it is to associate commits with issues.
+   * @param itsProjectName The name of the ITS project the project is associated with.
+   * @param rateLimit The maximum number of calls per second to the ITS for the project, or {@code
+   *     0} for no limit.
+   */
+  public ItsProjectConfig(
+      Project.NameKey projectName,
+      boolean enabled,
+      List<String> branches,
+      List<? extends List<String>> enforcedBranches,
+      String commentLinkName,
+      IssuePattern issuePattern,
+      Optional<Pattern> dummyIssuePattern,
+      ItsAssociationPolicy associationPolicy,
+      Optional<String> itsProjectName,
+      double rateLimit) {
+    this.projectName = projectName;
+    this.enabled = enabled;
+    this.branches = ImmutableList.copyOf(branches);
+    this.branchMatcher = new BranchMatcher(branches);
+    ImmutableList.Builder<BranchMatcher> enforced = ImmutableList.builder();
+    for (List<String> refPatterns : enforcedBranches) {
+      enforced.add(new BranchMatcher(refPatterns));
+    }
+    this.enforcedBranchMatchers = enforced.build();
+    this.commentLinkName = commentLinkName;
+    this.issuePattern = issuePattern;
+    this.dummyIssuePattern = dummyIssuePattern;
+    this.associationPolicy = associationPolicy;
+    this.itsProjectName = itsProjectName;
+    this.rateLimit = rateLimit;
+  }
+
+  /** @return the project, or {@code null} for the server-wide configuration. */
+  public Project.NameKey getProjectName() {
+    return projectName;
+  }
+
+  /**
+   * Checks whether the plugin is enabled for a ref of the project.
+   *
+   * <p>The ref patterns are compiled when the snapshot is built, so this only has to run the
+   * matchers.
+   *
+   * @param refName The name of the ref.
+   * @return true, if the plugin is enforced for the ref by the project or any of its parents, or if
+   *     the plugin is enabled for the project and the ref.
+   */
+  public boolean isEnabled(String refName) {
+    for (BranchMatcher enforcedBranchMatcher : enforcedBranchMatchers) {
+      if (enforcedBranchMatcher.match(refName)) {
+        return true;
+      }
+    }
+    return enabled && branchMatcher.match(refName);
+  }
+
+  /** @return the ref patterns of the branches the plugin is enabled for. */
+  public ImmutableList<String> getBranches() {
+    return branches;
+  }
+
+  /** @return the name of the comment link that should be used. */
+  public String getCommentLinkName() {
+    return commentLinkName;
+  }
+
+  /** @return the issue pattern, or {@code null}, if there is no pattern to match issue ids. */
+  public IssuePattern getIssuePattern() {
+    return issuePattern;
+  }
+
+  /**
+   * Pattern to skip the mandatory check for an issue. Can be used to explicitly bypass the
+   * mandatory issue pattern check for some commits.
+   */
+  public Optional<Pattern> getDummyIssuePattern() {
+    return dummyIssuePattern;
+  }
+
+  /** @return policy on how necessary association with issues is. */
+  public ItsAssociationPolicy getItsAssociationPolicy() {
+    return associationPolicy;
+  }
+
+  /** @return the name of the ITS project the project is associated with. */
+  public Optional<String> getItsProjectName() {
+    return itsProjectName;
+  }
+
+  /** @return the maximum number of calls per second to the ITS for the project, or 0. */
+  public double getRateLimit() {
+    return rateLimit;
+  }
+}
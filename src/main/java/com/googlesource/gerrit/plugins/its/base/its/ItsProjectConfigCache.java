@@ -0,0 +1,92 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.config.ConfigUpdatedEvent;
+import com.google.gerrit.server.config.GerritConfigListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.List;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Per project cache of the {@link ItsProjectConfig} snapshots.
+ *
+ * <p>Each snapshot is tagged with the revisions of the configurations of the project and its
+ * parents it got built from. A snapshot is only served as long as these revisions are current, so
+ * an update of the configuration of a project or any of its parents takes effect on the next
+ * lookup, without having to walk the project hierarchy.
+ *
+ * <p>Snapshots also hold the server-wide settings from {@code gerrit.config}, which these revisions
+ * do not cover. So all snapshots, including the server-wide one, get dropped when {@code
+ * gerrit.config} gets reloaded with changes to the plugin or comment link settings.
+ */
+@Singleton
+public class ItsProjectConfigCache implements GerritConfigListener {
+  private static final int MAX_SIZE = 10000;
+
+  /** Key for the server-wide snapshot. */
+  private static final String NO_PROJECT = "";
+
+  private static class Entry {
+    final ImmutableList<ObjectId> revisions;
+    final ItsProjectConfig config;
+
+    Entry(ImmutableList<ObjectId> revisions, ItsProjectConfig config) {
+      this.revisions = revisions;
+      this.config = config;
+    }
+  }
+
+  private final Cache<String, Entry> cache =
+      CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build();
+
+  @Inject
+  ItsProjectConfigCache() {}
+
+  /**
+   * Gets the snapshot for a project.
+   *
+   * @param projectName the project to get the snapshot for. May be null.
+   * @param revisions the current revisions of the configurations of the project and its parents.
+   * @param loader builds the snapshot if no snapshot for these revisions is cached.
+   * @return the snapshot.
+   */
+  ItsProjectConfig get(
+      Project.NameKey projectName, List<ObjectId> revisions, Supplier<ItsProjectConfig> loader) {
+    String key = projectName != null ? projectName.get() : NO_PROJECT;
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null || !entry.revisions.equals(revisions)) {
+      entry = new Entry(ImmutableList.copyOf(revisions), loader.get());
+      cache.put(key, entry);
+    }
+    return entry.config;
+  }
+
+  @Override
+  public Multimap<ConfigUpdatedEvent.UpdateResult, ConfigUpdatedEvent.ConfigUpdateEntry>
+      configUpdated(ConfigUpdatedEvent event) {
+    if (event.isSectionUpdated("plugin") || event.isSectionUpdated("commentlink")) {
+      cache.invalidateAll();
+    }
+    return ConfigUpdatedEvent.NO_UPDATES;
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the rate of calls to ITSs.
+ *
+ * <p>Calls wait for a permit from the token bucket of their ITS, which is configured in the
+ * plugin's section of {@code gerrit.config}, and from the token bucket of the project they are
+ * made for, which is configured in the plugin's section of the project's {@code project.config}
+ * and read from the project's {@link ItsProjectConfig}. The token buckets of ITSs are kept per
+ * server, as identified by {@link ItsFacadeFactory#getServerId}, so facades that get built per
+ * lookup share them.
+ */
+@Singleton
+public class ItsRateLimiter {
+  private static final Logger log = LoggerFactory.getLogger(ItsRateLimiter.class);
+
+  static final String RATE_LIMIT_KEY = "rateLimit";
+
+  private final ItsConfig itsConfig;
+  private final ItsFacadeFactory itsFactory;
+  private final double rate;
+  private final LoadingCache<String, RateLimiter> itsLimiters;
+  private final ConcurrentMap<Project.NameKey, RateLimiter> projectLimiters =
+      new ConcurrentHashMap<>();
+  private final Timer0 waitTime;
+
+  @Inject
+  ItsRateLimiter(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      ItsConfig itsConfig,
+      ItsFacadeFactory itsFactory,
+      MetricMaker metricMaker) {
+    this.itsConfig = itsConfig;
+    this.itsFactory = itsFactory;
+    this.rate =
+        parseRate(pluginCfgFactory.getFromGerritConfig(pluginName).getString(RATE_LIMIT_KEY));
+    this.itsLimiters =
+        CacheBuilder.newBuilder().build(CacheLoader.from(() -> RateLimiter.create(rate)));
+
+    waitTime =
+        metricMaker.newTimer(
+            "its/rate_limit_wait",
+            new Description("Time calls to an ITS waited for the rate limit")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  /**
+   * Waits until a call to an ITS may be made.
+   *
+   * @param project The project the call is made for.
+   */
+  public void acquire(Project.NameKey project) {
+    double waited = 0;
+    double projectRate = getProjectRate(project);
+    if (projectRate > 0) {
+      RateLimiter limiter =
+          projectLimiters.computeIfAbsent(project, p -> RateLimiter.create(projectRate));
+      if (limiter.getRate() != projectRate) {
+        limiter.setRate(projectRate);
+      }
+      waited += limiter.acquire();
+    }
+    if (rate > 0) {
+      waited += itsLimiters.getUnchecked(itsFactory.getServerId(project)).acquire();
+    }
+    if (waited > 0) {
+      waitTime.record((long) (waited * TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private double getProjectRate(Project.NameKey project) {
+    if (project == null) {
+      return 0;
+    }
+    return itsConfig.getProjectConfig(project).getRateLimit();
+  }
+
+  static double parseRate(String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Double.parseDouble(value));
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring invalid {} '{}'", RATE_LIMIT_KEY, value);
+      return 0;
+    }
+  }
+}
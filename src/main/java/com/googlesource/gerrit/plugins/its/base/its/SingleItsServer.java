@@ -32,4 +32,9 @@ public class SingleItsServer implements ItsFacadeFactory {
   public ItsFacade getFacade(Project.NameKey project) {
     return its;
   }
+
+  @Override
+  public String getServerId(Project.NameKey project) {
+    return "";
+  }
 }
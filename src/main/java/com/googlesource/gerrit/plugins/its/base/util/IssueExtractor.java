@@ -1,24 +1,30 @@
 package com.googlesource.gerrit.plugins.its.base.util;
 
-import static java.util.Arrays.copyOfRange;
-
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.gerrit.entities.PatchSet;
-import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.client.ListChangesOption;
-import com.google.gerrit.extensions.common.ChangeInfo;
-import com.google.gerrit.extensions.common.RevisionInfo;
-import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.inject.ImplementedBy;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
-import java.util.EnumSet;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.workflow.ItsMetrics;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,64 +34,89 @@ public class IssueExtractor {
   private final CommitMessageFetcher commitMessageFetcher;
   private final PatchSetDb db;
   private final ItsConfig itsConfig;
+  private final IssueOccurrenceCache occurrenceCache;
+  private final ItsMetrics metrics;
 
   @ImplementedBy(PatchSetDbImpl.class)
   public interface PatchSetDb {
-    public String getRevision(PatchSet.Id patchSetId);
+    public String getRevision(String projectName, PatchSet.Id patchSetId);
   }
 
+  /**
+   * Resolves patch sets through their {@code refs/changes/} refs.
+   *
+   * <p>As the revision of a patch set never changes, resolved revisions are kept in memory.
+   */
+  @Singleton
   public static class PatchSetDbImpl implements PatchSetDb {
-    private final GerritApi gApi;
+    private static final int MAX_CACHED_REVISIONS = 10000;
+
+    private final GitRepositoryManager repoManager;
+    private final Cache<PatchSet.Id, String> revisions =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_REVISIONS).build();
 
     @Inject
-    public PatchSetDbImpl(GerritApi gApi) {
-      this.gApi = gApi;
+    public PatchSetDbImpl(GitRepositoryManager repoManager) {
+      this.repoManager = repoManager;
     }
 
     @Override
-    public String getRevision(PatchSet.Id patchSetId) {
-      try {
-        ChangeInfo info =
-            gApi.changes()
-                .id(patchSetId.changeId().get())
-                .get(EnumSet.of(ListChangesOption.ALL_REVISIONS));
-        for (Map.Entry<String, RevisionInfo> e : info.revisions.entrySet()) {
-          if (e.getValue()._number == patchSetId.get()) {
-            return e.getKey();
-          }
+    public String getRevision(String projectName, PatchSet.Id patchSetId) {
+      String revision = revisions.getIfPresent(patchSetId);
+      if (revision == null) {
+        revision = readRevision(projectName, patchSetId);
+        if (revision != null) {
+          revisions.put(patchSetId, revision);
         }
-        return null;
-      } catch (RestApiException e) {
-        // previous is still empty to indicate that there was no previous
-        // accessible patch set. We treat every occurrence as added.
+      }
+      return revision;
+    }
+
+    private String readRevision(String projectName, PatchSet.Id patchSetId) {
+      try (Repository repo = repoManager.openRepository(Project.nameKey(projectName))) {
+        Ref ref = repo.exactRef(patchSetId.toRefName());
+        return ref != null ? ref.getObjectId().name() : null;
+      } catch (IOException e) {
+        // Without an accessible previous patch set, every occurrence is
+        // treated as added.
       }
       return null;
     }
   }
 
   @Inject
-  IssueExtractor(ItsConfig itsConfig, CommitMessageFetcher commitMessageFetcher, PatchSetDb db) {
+  IssueExtractor(
+      ItsConfig itsConfig,
+      CommitMessageFetcher commitMessageFetcher,
+      PatchSetDb db,
+      IssueOccurrenceCache occurrenceCache,
+      ItsMetrics metrics) {
     this.commitMessageFetcher = commitMessageFetcher;
     this.db = db;
     this.itsConfig = itsConfig;
+    this.occurrenceCache = occurrenceCache;
+    this.metrics = metrics;
   }
 
   /**
    * Gets issue ids from a string.
    *
+   * @param projectConfig The configuration of the project the string belongs to.
    * @param haystack String to extract issue ids from
    * @return array of {@link String}. Each String being a found issue id.
    */
-  public String[] getIssueIds(String haystack) {
-    Pattern pattern = itsConfig.getIssuePattern();
-    if (pattern == null) return new String[] {};
+  public String[] getIssueIds(ItsProjectConfig projectConfig, String haystack) {
+    IssuePattern issuePattern = projectConfig.getIssuePattern();
+    if (issuePattern == null) return new String[] {};
+
+    Pattern pattern = issuePattern.getPattern();
 
     log.debug("Matching '{}' against {}", haystack, pattern.pattern());
 
     Set<String> issues = Sets.newHashSet();
     Matcher matcher = pattern.matcher(haystack);
 
-    int groupIdx = itsConfig.getIssuePatternGroupIndex();
+    int groupIdx = issuePattern.getGroupIndex();
     while (matcher.find()) {
       String issueId = matcher.group(groupIdx);
       if (!Strings.isNullOrEmpty(issueId)) {
@@ -97,25 +128,57 @@ public class IssueExtractor {
   }
 
   /**
-   * Helper function for {@link #getIssueIds(String, String)}.
+   * Helper for {@link #getIssueIds(String, String)}.
    *
-   * <p>Adds a text's issues for a given occurrence to the map returned by {@link
+   * <p>Adds the issues of regions of a text for given occurrences to the map returned by {@link
    * #getIssueIds(String, String)}.
    *
-   * @param text The text to extract issues from.
-   * @param occurrence The occurrence the issues get added at in {@code map}.
-   * @param map The map that the issues should get added to.
+   * <p>Regions are matched with opaque and anchoring bounds, so matching a region yields the same
+   * issues as matching a copy of the region's text, without having to copy it.
    */
-  private void addIssuesOccurrence(String text, String occurrence, Map<String, Set<String>> map) {
-    for (String issue : getIssueIds(text)) {
-      Set<String> occurrences = map.computeIfAbsent(issue, k -> Sets.newLinkedHashSet());
-      occurrences.add(occurrence);
+  private static class OccurrenceCollector {
+    private final String text;
+    private final Matcher matcher;
+    private final int groupIdx;
+    private final Map<String, Set<String>> map;
+
+    OccurrenceCollector(IssuePattern issuePattern, String text, Map<String, Set<String>> map) {
+      this.text = text;
+      this.matcher = issuePattern.getPattern().matcher(text);
+      this.groupIdx = issuePattern.getGroupIndex();
+      this.map = map;
+    }
+
+    /**
+     * Adds the issues of a region for a given occurrence.
+     *
+     * @param start The start index of the region, inclusive.
+     * @param end The end index of the region, exclusive.
+     * @param occurrence The occurrence the issues get added at.
+     */
+    void add(int start, int end, String occurrence) {
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "Matching '{}' against {}",
+            CharBuffer.wrap(text, start, end),
+            matcher.pattern().pattern());
+      }
+      matcher.region(start, end);
+      while (matcher.find()) {
+        String issueId = matcher.group(groupIdx);
+        if (!Strings.isNullOrEmpty(issueId)) {
+          map.computeIfAbsent(issueId, k -> Sets.newLinkedHashSet()).add(occurrence);
+        }
+      }
     }
   }
 
   /**
    * Gets issues for a commit.
    *
+   * <p>As commits are immutable, the issues are served from the {@link IssueOccurrenceCache} for
+   * commits that have been looked at with the same issue pattern before.
+   *
    * @param projectName The project to fetch {@code commitId} from.
    * @param commitId The commit id to fetch issues for.
    * @return A mapping, whose keys are issue ids and whose values is a set of places where the issue
@@ -124,42 +187,99 @@ public class IssueExtractor {
    *     occurring between "subject" and "footer" get tagged with "body".
    */
   public Map<String, Set<String>> getIssueIds(String projectName, String commitId) {
-    Map<String, Set<String>> ret = Maps.newHashMap();
-    String commitMessage = commitMessageFetcher.fetchGuarded(projectName, commitId);
-    addIssueIdsFromCommitMessage(ret, commitMessage);
+    IssuePattern issuePattern = getIssuePattern(projectName);
+    if (issuePattern == null) {
+      return Maps.newHashMap();
+    }
+    IssueOccurrenceCache.Key key =
+        new IssueOccurrenceCache.Key(projectName, commitId, issuePattern);
+    Map<String, Set<String>> ret = occurrenceCache.get(key);
+    if (ret == null) {
+      ret = Maps.newHashMap();
+      String commitMessage;
+      try (Timer0.Context ctx = metrics.startCommitMessageFetch()) {
+        commitMessage = commitMessageFetcher.fetchGuarded(projectName, commitId);
+      }
+      try (Timer0.Context ctx = metrics.startIssueMatching()) {
+        addIssueIdsFromCommitMessage(ret, commitMessage, issuePattern);
+      }
+      if (!commitMessage.isEmpty()) {
+        // An empty message is what fetchGuarded yields for unreadable commits, so only
+        // non-empty messages are safe to cache.
+        occurrenceCache.put(key, ret);
+      }
+    }
     return ret;
   }
 
   /**
    * Gets issues from a commit message.
    *
+   * @param projectName The project the commit message belongs to.
    * @param commitMessage The commit message string.
    * @return A mapping, whose keys are issue ids and whose values is a set of places where the issue
    *     occurs. Each issue occurs at least in "somewhere". Issues from the first line get tagged
    *     with an occurrence "subject". Issues in the last block get tagged with "footer". Issues
    *     occurring between "subject" and "footer" get tagged with "body".
    */
-  public Map<String, Set<String>> getIssueIdsFromCommitMessage(String commitMessage) {
+  public Map<String, Set<String>> getIssueIdsFromCommitMessage(
+      String projectName, String commitMessage) {
     Map<String, Set<String>> ret = Maps.newHashMap();
-    addIssueIdsFromCommitMessage(ret, commitMessage);
+    IssuePattern issuePattern = getIssuePattern(projectName);
+    if (issuePattern != null) {
+      try (Timer0.Context ctx = metrics.startIssueMatching()) {
+        addIssueIdsFromCommitMessage(ret, commitMessage, issuePattern);
+      }
+    }
     return ret;
   }
 
-  private void addIssueIdsFromCommitMessage(Map<String, Set<String>> ret, String commitMessage) {
-    addIssuesOccurrence(commitMessage, "somewhere", ret);
+  private IssuePattern getIssuePattern(String projectName) {
+    return itsConfig.getProjectConfig(Project.nameKey(projectName)).getIssuePattern();
+  }
+
+  /**
+   * Adds the issues of a commit message to a map.
+   *
+   * <p>The message is scanned once for line breaks and the issue pattern is matched against
+   * regions of the message, so no part of the message gets copied. Lines are determined like
+   * {@code commitMessage.split("\n")} does, so trailing empty lines are ignored.
+   */
+  private void addIssueIdsFromCommitMessage(
+      Map<String, Set<String>> ret, String commitMessage, IssuePattern issuePattern) {
+    OccurrenceCollector collector = new OccurrenceCollector(issuePattern, commitMessage, ret);
 
-    String[] lines = commitMessage.split("\n");
-    if (lines.length > 0) {
+    collector.add(0, commitMessage.length(), "somewhere");
+
+    // lineEnds[i] is the index of the line break ending line i (or the message's length for the
+    // last line), so line i spans from lineStart(lineEnds, i) to lineEnds[i].
+    int[] lineEnds = new int[16];
+    int lineCount = 0;
+    for (int i = 0; i <= commitMessage.length(); i++) {
+      if (i == commitMessage.length() || commitMessage.charAt(i) == '\n') {
+        if (lineCount == lineEnds.length) {
+          lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+        }
+        lineEnds[lineCount++] = i;
+      }
+    }
+    if (!commitMessage.isEmpty()) {
+      while (lineCount > 0 && isEmptyLine(lineEnds, lineCount - 1)) {
+        lineCount--;
+      }
+    }
+
+    if (lineCount > 0) {
       // Parsing for "subject"
-      addIssuesOccurrence(lines[0], "subject", ret);
+      collector.add(0, lineEnds[0], "subject");
 
       // Determining footer line numbers
-      int currentLine = lines.length - 1;
-      while (currentLine >= 0 && lines[currentLine].isEmpty()) {
+      int currentLine = lineCount - 1;
+      while (currentLine >= 0 && isEmptyLine(lineEnds, currentLine)) {
         currentLine--;
       }
       int footerEnd = currentLine + 1;
-      while (currentLine >= 0 && !lines[currentLine].isEmpty()) {
+      while (currentLine >= 0 && !isEmptyLine(lineEnds, currentLine)) {
         currentLine--;
       }
       int footerStart = currentLine + 1;
@@ -171,44 +291,45 @@ public class IssueExtractor {
       }
 
       // Parsing for "body", and "footer"
-      String body = null;
-      String footer = null;
-      if (footerStart == -1) {
-        // No footer could be found. So all lines after the first one (that's
-        // the subject) is the body.
-        if (lines.length > 0) {
-          body = String.join("\n", copyOfRange(lines, 1, lines.length));
-        }
-      } else {
-        body = String.join("\n", copyOfRange(lines, 1, footerStart - 1));
-
-        StringBuilder footerBuilder = new StringBuilder();
+      int bodyEndLine = footerStart == -1 ? lineCount : footerStart - 1;
+      if (footerStart != -1) {
         for (int lineIdx = footerStart; lineIdx < footerEnd; lineIdx++) {
-          String line = lines[lineIdx];
-
           // Adding occurrences for footer keys
-          int colonIdx = line.indexOf(':');
-          if (colonIdx > 0) {
+          int lineStart = lineStart(lineEnds, lineIdx);
+          int colonIdx = indexOf(commitMessage, ':', lineStart, lineEnds[lineIdx]);
+          if (colonIdx > lineStart) {
             // tag of length at least 1
-            String tag = line.substring(0, colonIdx);
-            addIssuesOccurrence(line, "footer-" + tag, ret);
-          }
-
-          // Putting back together the footer to a single String
-          if (lineIdx > footerStart) {
-            footerBuilder.append('\n');
+            String tag = commitMessage.substring(lineStart, colonIdx);
+            collector.add(lineStart, lineEnds[lineIdx], "footer-" + tag);
           }
-          footerBuilder.append(line);
         }
-        footer = String.join("\n", copyOfRange(lines, footerStart, footerEnd));
       }
-      if (body != null) {
-        addIssuesOccurrence(body, "body", ret);
+      if (bodyEndLine > 1) {
+        collector.add(lineStart(lineEnds, 1), lineEnds[bodyEndLine - 1], "body");
+      } else {
+        collector.add(lineEnds[0], lineEnds[0], "body");
+      }
+      if (footerStart != -1) {
+        collector.add(lineStart(lineEnds, footerStart), lineEnds[footerEnd - 1], "footer");
       }
-      if (footer != null) {
-        addIssuesOccurrence(footer, "footer", ret);
+    }
+  }
+
+  private static int lineStart(int[] lineEnds, int line) {
+    return line == 0 ? 0 : lineEnds[line - 1] + 1;
+  }
+
+  private static boolean isEmptyLine(int[] lineEnds, int line) {
+    return lineStart(lineEnds, line) == lineEnds[line];
+  }
+
+  private static int indexOf(String text, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == c) {
+        return i;
       }
     }
+    return -1;
   }
 
   /**
@@ -236,7 +357,7 @@ public class IssueExtractor {
       Map<String, Set<String>> previous = Maps.newHashMap();
       if (patchSetId.get() != 1) {
         PatchSet.Id previousPatchSetId = PatchSet.id(patchSetId.changeId(), patchSetId.get() - 1);
-        String previousPatchSet = db.getRevision(previousPatchSetId);
+        String previousPatchSet = db.getRevision(projectName, previousPatchSetId);
         if (previousPatchSet != null) {
           previous = getIssueIds(projectName, previousPatchSet);
         }
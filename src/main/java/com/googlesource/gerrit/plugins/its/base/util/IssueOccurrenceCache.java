@@ -0,0 +1,217 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache of the issue occurrences of commits.
+ *
+ * <p>Commits are immutable, so the occurrences of a commit only change if the issue pattern
+ * changes. The pattern's version is part of the key, so no invalidation is needed.
+ */
+@Singleton
+public class IssueOccurrenceCache {
+  static final String CACHE_NAME = "its_issue_occurrences";
+
+  private final Cache<Key, Map<String, Set<String>>> cache;
+
+  @Inject
+  IssueOccurrenceCache(@Named(CACHE_NAME) Cache<Key, Map<String, Set<String>>> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Gets the cached issue occurrences of a commit.
+   *
+   * @return a modifiable copy of the cached occurrences, or {@code null}, if they are not cached.
+   */
+  Map<String, Set<String>> get(Key key) {
+    Map<String, Set<String>> cached = cache.getIfPresent(key);
+    if (cached == null) {
+      return null;
+    }
+    Map<String, Set<String>> ret = Maps.newHashMapWithExpectedSize(cached.size());
+    for (Map.Entry<String, Set<String>> entry : cached.entrySet()) {
+      ret.put(entry.getKey(), Sets.newLinkedHashSet(entry.getValue()));
+    }
+    return ret;
+  }
+
+  /** Caches the issue occurrences of a commit. */
+  void put(Key key, Map<String, Set<String>> occurrences) {
+    ImmutableMap.Builder<String, Set<String>> copy = ImmutableMap.builder();
+    for (Map.Entry<String, Set<String>> entry : occurrences.entrySet()) {
+      copy.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+    }
+    cache.put(key, copy.build());
+  }
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        persist(CACHE_NAME, Key.class, new TypeLiteral<Map<String, Set<String>>>() {})
+            .version(1)
+            .maximumWeight(10000)
+            .keySerializer(KeySerializer.INSTANCE)
+            .valueSerializer(OccurrencesSerializer.INSTANCE);
+      }
+    };
+  }
+
+  /** Key of the issue occurrences of a commit, as extracted by an issue pattern. */
+  static class Key {
+    private final String projectName;
+    private final String commitId;
+    private final String patternVersion;
+
+    Key(String projectName, String commitId, String patternVersion) {
+      this.projectName = Objects.toString(projectName, "");
+      this.commitId = commitId;
+      this.patternVersion = patternVersion;
+    }
+
+    Key(String projectName, String commitId, IssuePattern issuePattern) {
+      this(projectName, commitId, issuePattern.getVersion());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return projectName.equals(other.projectName)
+          && commitId.equals(other.commitId)
+          && patternVersion.equals(other.patternVersion);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(projectName, commitId, patternVersion);
+    }
+
+    @Override
+    public String toString() {
+      return projectName + " " + commitId + " (pattern " + patternVersion + ")";
+    }
+  }
+
+  enum KeySerializer implements CacheSerializer<Key> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(Key key) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        writeString(out, key.projectName);
+        writeString(out, key.commitId);
+        writeString(out, key.patternVersion);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    @Override
+    public Key deserialize(byte[] in) {
+      try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(in))) {
+        return new Key(readString(data), readString(data), readString(data));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  enum OccurrencesSerializer implements CacheSerializer<Map<String, Set<String>>> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(Map<String, Set<String>> occurrences) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        out.writeInt(occurrences.size());
+        for (Map.Entry<String, Set<String>> entry : occurrences.entrySet()) {
+          writeString(out, entry.getKey());
+          out.writeInt(entry.getValue().size());
+          for (String occurrence : entry.getValue()) {
+            writeString(out, occurrence);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    @Override
+    public Map<String, Set<String>> deserialize(byte[] in) {
+      try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(in))) {
+        ImmutableMap.Builder<String, Set<String>> occurrences = ImmutableMap.builder();
+        int issueCount = data.readInt();
+        for (int i = 0; i < issueCount; i++) {
+          String issue = readString(data);
+          ImmutableSet.Builder<String> issueOccurrences = ImmutableSet.builder();
+          int occurrenceCount = data.readInt();
+          for (int j = 0; j < occurrenceCount; j++) {
+            issueOccurrences.add(readString(data));
+          }
+          occurrences.put(issue, issueOccurrences.build());
+        }
+        return occurrences.build();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
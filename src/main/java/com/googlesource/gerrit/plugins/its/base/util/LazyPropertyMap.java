@@ -0,0 +1,121 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Iterators;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map of properties, whose values may get computed only when they are first accessed.
+ *
+ * <p>Most rules and actions only look at a few properties of an event. So properties that are
+ * expensive to compute (e.g.: ones that need a round trip to the ITS) can get added through {@link
+ * #putLazy(String, Supplier)}, and are only computed if some rule or action asks for them. Lazy
+ * values are computed at most once.
+ *
+ * <p>Iterating over the entries computes the values of the iterated entries. Iterating over the
+ * keys does not compute any values.
+ */
+class LazyPropertyMap extends AbstractMap<String, String> {
+  /** Maps keys to either the value, or a memoizing {@link Supplier} of the value. */
+  private final Map<String, Object> values = new HashMap<>();
+
+  /**
+   * Adds a property whose value is computed when it is first accessed.
+   *
+   * @param key The key of the property.
+   * @param supplier Computes the value of the property.
+   */
+  void putLazy(String key, Supplier<String> supplier) {
+    values.put(key, Suppliers.memoize(supplier));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String resolve(Object value) {
+    if (value instanceof Supplier) {
+      return ((Supplier<String>) value).get();
+    }
+    return (String) value;
+  }
+
+  @Override
+  public String get(Object key) {
+    return resolve(values.get(key));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return values.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return values.size();
+  }
+
+  @Override
+  public String put(String key, String value) {
+    return resolve(values.put(key, value));
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends String> m) {
+    if (m instanceof LazyPropertyMap) {
+      // Lazy values are memoized, so they can be shared without getting computed twice.
+      values.putAll(((LazyPropertyMap) m).values);
+    } else {
+      values.putAll(m);
+    }
+  }
+
+  @Override
+  public String remove(Object key) {
+    return resolve(values.remove(key));
+  }
+
+  @Override
+  public void clear() {
+    values.clear();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return values.keySet();
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return Iterators.transform(
+            values.entrySet().iterator(),
+            entry -> new SimpleImmutableEntry<>(entry.getKey(), resolve(entry.getValue())));
+      }
+
+      @Override
+      public int size() {
+        return values.size();
+      }
+    };
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.project.ProjectState;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * The generation of the configuration of a project.
+ *
+ * <p>As configurations are inherited, the generation consists of the revisions of the {@code
+ * refs/meta/config} branches of the project and all of its parents. Values derived from a
+ * project's configuration can be tagged with the generation they got derived from. They are
+ * current as long as the generation is, so an update of the configuration of a parent invalidates
+ * them without having to enumerate the parent's descendants.
+ */
+public class ProjectConfigRevisions {
+  private ProjectConfigRevisions() {}
+
+  /**
+   * Gets the current generation of the configuration of a project.
+   *
+   * @param projectState the project to get the generation for.
+   * @return the revisions of the configurations of the project's parents and the project, starting
+   *     at the root of the hierarchy.
+   */
+  public static ImmutableList<ObjectId> of(ProjectState projectState) {
+    ImmutableList.Builder<ObjectId> revisions = ImmutableList.builder();
+    for (ProjectState state : projectState.treeInOrder()) {
+      ObjectId revision = state.getConfig().getRevision();
+      revisions.add(revision != null ? revision : ObjectId.zeroId());
+    }
+    return revisions.build();
+  }
+}
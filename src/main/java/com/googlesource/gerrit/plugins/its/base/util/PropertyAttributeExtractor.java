@@ -27,7 +27,12 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.commons.lang.StringEscapeUtils;
 
-/** Extractor to translate the various {@code *Attribute}s to properties. */
+/**
+ * Extractor to translate the various {@code *Attribute}s to properties.
+ *
+ * <p>Properties that are costly to compute, and are rarely used by rules or actions, are only
+ * computed when they are first accessed.
+ */
 class PropertyAttributeExtractor {
   private ItsFacade its;
 
@@ -53,37 +58,40 @@ class PropertyAttributeExtractor {
   }
 
   Map<String, String> extractFrom(ChangeAttribute changeAttribute) {
-    return ImmutableMap.<String, String>builder()
-        .put("branch", changeAttribute.branch)
-        .put("topic", changeAttribute.topic != null ? changeAttribute.topic : "")
-        .put("subject", changeAttribute.subject)
-        .put("escapedSubject", StringEscapeUtils.escapeJava(changeAttribute.subject))
-        .put("commitMessage", changeAttribute.commitMessage)
-        .put("changeId", changeAttribute.id)
-        .put("changeNumber", String.valueOf(changeAttribute.number))
-        .put("changeUrl", changeAttribute.url)
-        .put("formatChangeUrl", its.createLinkForWebui(changeAttribute.url, changeAttribute.url))
-        .put("status", changeAttribute.status != null ? changeAttribute.status.toString() : "")
-        .put(
-            "private",
-            changeAttribute.isPrivate != null ? changeAttribute.isPrivate.toString() : "false")
-        .put("wip", changeAttribute.wip != null ? changeAttribute.wip.toString() : "false")
-        .putAll(extractFrom(changeAttribute.owner, "owner"))
-        .build();
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.put("branch", changeAttribute.branch);
+    properties.put("topic", changeAttribute.topic != null ? changeAttribute.topic : "");
+    properties.put("subject", changeAttribute.subject);
+    properties.putLazy(
+        "escapedSubject", () -> StringEscapeUtils.escapeJava(changeAttribute.subject));
+    properties.put("commitMessage", changeAttribute.commitMessage);
+    properties.put("changeId", changeAttribute.id);
+    properties.put("changeNumber", String.valueOf(changeAttribute.number));
+    properties.put("changeUrl", changeAttribute.url);
+    properties.putLazy(
+        "formatChangeUrl", () -> its.createLinkForWebui(changeAttribute.url, changeAttribute.url));
+    properties.put(
+        "status", changeAttribute.status != null ? changeAttribute.status.toString() : "");
+    properties.put(
+        "private",
+        changeAttribute.isPrivate != null ? changeAttribute.isPrivate.toString() : "false");
+    properties.put("wip", changeAttribute.wip != null ? changeAttribute.wip.toString() : "false");
+    properties.putAll(extractFrom(changeAttribute.owner, "owner"));
+    return properties;
   }
 
   Map<String, String> extractFrom(PatchSetAttribute patchSetAttribute) {
-    return ImmutableMap.<String, String>builder()
-        .put("revision", patchSetAttribute.revision)
-        .put("patchSetNumber", String.valueOf(patchSetAttribute.number))
-        .put("ref", patchSetAttribute.ref)
-        .put("createdOn", patchSetAttribute.createdOn.toString())
-        .put("parents", patchSetAttribute.parents.toString())
-        .put("deletions", Integer.toString(patchSetAttribute.sizeDeletions))
-        .put("insertions", Integer.toString(patchSetAttribute.sizeInsertions))
-        .putAll(extractFrom(patchSetAttribute.uploader, "uploader"))
-        .putAll(extractFrom(patchSetAttribute.author, "author"))
-        .build();
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.put("revision", patchSetAttribute.revision);
+    properties.put("patchSetNumber", String.valueOf(patchSetAttribute.number));
+    properties.put("ref", patchSetAttribute.ref);
+    properties.put("createdOn", patchSetAttribute.createdOn.toString());
+    properties.putLazy("parents", () -> patchSetAttribute.parents.toString());
+    properties.put("deletions", Integer.toString(patchSetAttribute.sizeDeletions));
+    properties.put("insertions", Integer.toString(patchSetAttribute.sizeInsertions));
+    properties.putAll(extractFrom(patchSetAttribute.uploader, "uploader"));
+    properties.putAll(extractFrom(patchSetAttribute.author, "author"));
+    return properties;
   }
 
   Map<String, String> extractFrom(RefUpdateAttribute refUpdateAttribute) {
@@ -17,6 +17,7 @@ package com.googlesource.gerrit.plugins.its.base.util;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.data.ApprovalAttribute;
 import com.google.gerrit.server.data.ChangeAttribute;
 import com.google.gerrit.server.data.PatchSetAttribute;
@@ -33,9 +34,11 @@ import com.google.gerrit.server.events.RefEvent;
 import com.google.gerrit.server.events.RefUpdatedEvent;
 import com.google.gerrit.server.events.WorkInProgressStateChangedEvent;
 import com.google.inject.Inject;
+import com.googlesource.gerrit.plugins.its.base.workflow.IssueProperties;
+import com.googlesource.gerrit.plugins.its.base.workflow.ItsMetrics;
 import com.googlesource.gerrit.plugins.its.base.workflow.RefEventProperties;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -47,17 +50,20 @@ public class PropertyExtractor {
   private final IssueExtractor issueExtractor;
   private final PropertyAttributeExtractor propertyAttributeExtractor;
   private final String pluginName;
+  private final ItsMetrics metrics;
 
   @Inject
   PropertyExtractor(
       IssueExtractor issueExtractor,
       ItsProjectExtractor itsProjectExtractor,
       PropertyAttributeExtractor propertyAttributeExtractor,
-      @PluginName String pluginName) {
+      @PluginName String pluginName,
+      ItsMetrics metrics) {
     this.issueExtractor = issueExtractor;
     this.itsProjectExtractor = itsProjectExtractor;
     this.propertyAttributeExtractor = propertyAttributeExtractor;
     this.pluginName = pluginName;
+    this.metrics = metrics;
   }
 
   /**
@@ -156,7 +162,7 @@ public class PropertyExtractor {
     common.put("refName", event.refName);
 
     // Got no patch set information, extract from commit message.
-    return issueExtractor.getIssueIdsFromCommitMessage(change.commitMessage);
+    return issueExtractor.getIssueIdsFromCommitMessage(change.project, change.commitMessage);
   }
 
   /**
@@ -199,8 +205,14 @@ public class PropertyExtractor {
    * @return set of property maps extracted from the event.
    */
   public RefEventProperties extractFrom(RefEvent event) {
+    try (Timer0.Context ctx = metrics.startPropertyExtraction()) {
+      return extractPropertiesFrom(event);
+    }
+  }
+
+  private RefEventProperties extractPropertiesFrom(RefEvent event) {
     Map<String, Set<String>> associations = null;
-    Map<String, String> common = new HashMap<>();
+    Map<String, String> common = new LazyPropertyMap();
     common.put("event", event.getClass().getName());
     String project = event.getProjectNameKey().get();
     common.put("event-type", event.type);
@@ -230,14 +242,12 @@ public class PropertyExtractor {
       associations = extractFrom((WorkInProgressStateChangedEvent) event, common);
     }
 
-    Set<Map<String, String>> ret = new HashSet<>();
+    // The properties of different issues differ in the issue id, so there is no need to compare
+    // their content.
+    Set<Map<String, String>> ret = Collections.newSetFromMap(new IdentityHashMap<>());
     if (associations != null) {
       for (Entry<String, Set<String>> assoc : associations.entrySet()) {
-        Map<String, String> properties = new HashMap<>();
-        properties.put("issue", assoc.getKey());
-        properties.put("association", String.join(" ", assoc.getValue()));
-        properties.putAll(common);
-        ret.add(properties);
+        ret.add(new IssueProperties(common, assoc.getKey(), assoc.getValue()));
       }
     }
     return new RefEventProperties(common, ret);
@@ -0,0 +1,152 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import com.google.common.cache.Cache;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Cache of whether issues exist, for commit validation.
+ *
+ * <p>Existing issues are kept for long, as issues are rarely deleted. Missing issues are only kept
+ * briefly, so a push referencing an issue that was just created gets rejected at most until the
+ * missing issue expires.
+ *
+ * <p>Issues are cached per ITS server, as identified by {@link ItsFacadeFactory#getServerId}, so
+ * facades that get built per lookup share cached issues.
+ */
+@Singleton
+public class IssueExistenceCache {
+  static final String EXISTING_CACHE_NAME = "its_issues_existing";
+  static final String MISSING_CACHE_NAME = "its_issues_missing";
+
+  private final ItsFacadeFactory itsFactory;
+  private final Cache<Key, Boolean> existing;
+  private final Cache<Key, Boolean> missing;
+  private final Counter0 hits;
+  private final Counter0 misses;
+
+  @Inject
+  IssueExistenceCache(
+      ItsFacadeFactory itsFactory,
+      @Named(EXISTING_CACHE_NAME) Cache<Key, Boolean> existing,
+      @Named(MISSING_CACHE_NAME) Cache<Key, Boolean> missing,
+      MetricMaker metricMaker) {
+    this.itsFactory = itsFactory;
+    this.existing = existing;
+    this.missing = missing;
+    hits =
+        metricMaker.newCounter(
+            "issues/exists_cache_hits",
+            new Description("Existence checks answered from the cache").setRate());
+    misses =
+        metricMaker.newCounter(
+            "issues/exists_cache_misses",
+            new Description("Existence checks that had to ask the ITS").setRate());
+  }
+
+  /**
+   * Gets whether an issue is known to exist.
+   *
+   * @param project The project the issue is checked for.
+   * @param issueId The id of the issue.
+   * @return Whether the issue exists, or null, if this is not cached.
+   */
+  Boolean get(Project.NameKey project, String issueId) {
+    Key key = new Key(itsFactory.getServerId(project), issueId);
+    Boolean exists = null;
+    if (existing.getIfPresent(key) != null) {
+      exists = true;
+    } else if (missing.getIfPresent(key) != null) {
+      exists = false;
+    }
+    if (exists != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return exists;
+  }
+
+  /** Caches whether an issue exists. */
+  void put(Project.NameKey project, String issueId, boolean exists) {
+    Key key = new Key(itsFactory.getServerId(project), issueId);
+    if (exists) {
+      missing.invalidate(key);
+      existing.put(key, true);
+    } else {
+      existing.invalidate(key);
+      missing.put(key, false);
+    }
+  }
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(EXISTING_CACHE_NAME, Key.class, Boolean.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(Duration.ofHours(1));
+        cache(MISSING_CACHE_NAME, Key.class, Boolean.class)
+            .maximumWeight(10000)
+            .expireAfterWrite(Duration.ofSeconds(30));
+      }
+    };
+  }
+
+  /** Key of an issue of an ITS server. */
+  static class Key {
+    private final String serverId;
+    private final String issueId;
+
+    Key(String serverId, String issueId) {
+      this.serverId = serverId;
+      this.issueId = issueId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return serverId.equals(other.serverId) && issueId.equals(other.issueId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(serverId, issueId);
+    }
+
+    @Override
+    public String toString() {
+      return issueId;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import com.google.gerrit.entities.Project;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacades;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsCircuitBreaker;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConcurrencyLimiter;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsRateLimiter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Checks whether issues exist.
+ *
+ * <p>Issues whose existence is cached are not checked again. The others are checked at once: in
+ * one request, if the facade is a {@link BatchingItsFacade}, and concurrently otherwise.
+ */
+@Singleton
+class IssueExistenceChecker {
+  private final AsyncItsFacades asyncFacades;
+  private final ItsCircuitBreaker circuitBreaker;
+  private final ItsRateLimiter rateLimiter;
+  private final ItsConcurrencyLimiter concurrencyLimiter;
+  private final IssueExistenceCache existenceCache;
+
+  @Inject
+  IssueExistenceChecker(
+      AsyncItsFacades asyncFacades,
+      ItsCircuitBreaker circuitBreaker,
+      ItsRateLimiter rateLimiter,
+      ItsConcurrencyLimiter concurrencyLimiter,
+      IssueExistenceCache existenceCache) {
+    this.asyncFacades = asyncFacades;
+    this.circuitBreaker = circuitBreaker;
+    this.rateLimiter = rateLimiter;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.existenceCache = existenceCache;
+  }
+
+  /**
+   * Starts checking whether issues exist.
+   *
+   * @param its The facade of the ITS of the issues.
+   * @param project The project the issues are checked for.
+   * @param issueIds The ids of the issues to check.
+   * @return The future of whether each issue exists, by issue id.
+   */
+  Map<String, CompletableFuture<Boolean>> check(
+      ItsFacade its, Project.NameKey project, Collection<String> issueIds) {
+    Map<String, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+    Set<String> unknownIssueIds = new LinkedHashSet<>();
+    for (String issueId : issueIds) {
+      if (checks.containsKey(issueId) || unknownIssueIds.contains(issueId)) {
+        continue;
+      }
+      Boolean cached = existenceCache.get(project, issueId);
+      if (cached != null) {
+        checks.put(issueId, CompletableFuture.completedFuture(cached));
+      } else {
+        unknownIssueIds.add(issueId);
+      }
+    }
+
+    if (unknownIssueIds.size() > 1 && its instanceof BatchingItsFacade) {
+      CompletableFuture<Map<String, Boolean>> bulk =
+          call(its, project, asyncIts -> asyncIts.exist(unknownIssueIds))
+              .thenApply(
+                  existing -> {
+                    for (String issueId : unknownIssueIds) {
+                      existenceCache.put(
+                          project, issueId, Boolean.TRUE.equals(existing.get(issueId)));
+                    }
+                    return existing;
+                  });
+      for (String issueId : unknownIssueIds) {
+        checks.put(issueId, bulk.thenApply(existing -> Boolean.TRUE.equals(existing.get(issueId))));
+      }
+    } else {
+      for (String issueId : unknownIssueIds) {
+        checks.put(
+            issueId,
+            call(its, project, asyncIts -> asyncIts.exists(issueId))
+                .thenApply(
+                    exists -> {
+                      existenceCache.put(project, issueId, exists);
+                      return exists;
+                    }));
+      }
+    }
+    return checks;
+  }
+
+  private <T> CompletableFuture<T> call(
+      ItsFacade its, Project.NameKey project, Function<AsyncItsFacade, CompletableFuture<T>> call) {
+    AsyncItsFacade asyncIts = asyncFacades.get(its);
+    return circuitBreaker.callAsync(
+        its,
+        project,
+        () -> {
+          rateLimiter.acquire(project);
+          return concurrencyLimiter.callAsync(project, () -> call.apply(asyncIts));
+        });
+  }
+}
@@ -25,10 +25,16 @@ import com.google.inject.Inject;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
 import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor;
-import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,8 +43,6 @@ public class ItsValidateComment implements CommitValidationListener {
 
   private static final Logger log = LoggerFactory.getLogger(ItsValidateComment.class);
 
-  @Inject private ItsFacade client;
-
   @Inject @PluginName private String pluginName;
 
   @Inject private ItsConfig itsConfig;
@@ -47,30 +51,63 @@ public class ItsValidateComment implements CommitValidationListener {
 
   @Inject private IssueExtractor issueExtractor;
 
-  private List<CommitValidationMessage> validCommit(Project.NameKey project, RevCommit commit)
+  @Inject private IssueExistenceChecker existenceChecker;
+
+  @Inject private PushIssueChecks pushIssueChecks;
+
+  @Inject private ValidationBudget budget;
+
+  private List<CommitValidationMessage> validCommit(
+      Project.NameKey project, ItsProjectConfig projectConfig, CommitReceivedEvent event)
       throws CommitValidationException {
+    RevCommit commit = event.commit;
     List<CommitValidationMessage> ret = Lists.newArrayList();
-    ItsAssociationPolicy associationPolicy = itsConfig.getItsAssociationPolicy();
+    ItsAssociationPolicy associationPolicy = projectConfig.getItsAssociationPolicy();
 
     switch (associationPolicy) {
       case MANDATORY:
       case SUGGESTED:
         String commitMessage = commit.getFullMessage();
-        String[] issueIds = issueExtractor.getIssueIds(commitMessage);
+        String[] issueIds = issueExtractor.getIssueIds(projectConfig, commitMessage);
         String synopsis = null;
         String details = null;
         if (issueIds.length > 0) {
           List<String> nonExistingIssueIds = Lists.newArrayList();
-          client = itsFacadeFactory.getFacade(project);
+          ItsFacade its = itsFacadeFactory.getFacade(project);
+          // The issues of the whole push are checked at once. Issues that are not covered by
+          // that, for example as the push is too large, are checked now.
+          Map<String, CompletableFuture<Boolean>> pushChecks =
+              pushIssueChecks.get(event, projectConfig, its);
+          List<String> uncheckedIssueIds = Lists.newArrayList();
           for (String issueId : issueIds) {
+            if (!pushChecks.containsKey(issueId)) {
+              uncheckedIssueIds.add(issueId);
+            }
+          }
+          Map<String, CompletableFuture<Boolean>> commitChecks =
+              existenceChecker.check(its, project, uncheckedIssueIds);
+          Map<String, CompletableFuture<Boolean>> checks = new LinkedHashMap<>();
+          for (String issueId : issueIds) {
+            checks.put(issueId, pushChecks.getOrDefault(issueId, commitChecks.get(issueId)));
+          }
+          for (Map.Entry<String, CompletableFuture<Boolean>> check : checks.entrySet()) {
+            String issueId = check.getKey();
             boolean exists = false;
             try {
-              exists = client.exists(issueId);
-            } catch (IOException e) {
-              synopsis = "Failed to check whether or not issue " + issueId + " exists";
-              log.warn(synopsis, e);
-              details = e.toString();
-              ret.add(commitValidationFailure(synopsis, details));
+              long remaining = budget.remainingNanos(event.command);
+              exists = check.getValue().get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+              // Whether the issue exists is unknown, so it is not reported as non-existing.
+              synopsis = "Timed out checking whether or not issue " + issueId + " exists";
+              log.warn(synopsis);
+              details = pluginName + " Issue-Tracker did not answer in time";
+              ret.add(commitValidationFailure(associationPolicy, synopsis, details));
+              continue;
+            } catch (ExecutionException e) {
+              ret.add(checkFailure(associationPolicy, issueId, e.getCause()));
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              ret.add(checkFailure(associationPolicy, issueId, e));
             }
             if (!exists) {
               nonExistingIssueIds.add(issueId);
@@ -95,9 +132,9 @@ public class ItsValidateComment implements CommitValidationListener {
             sb.append(" Issue-Tracker");
             details = sb.toString();
 
-            ret.add(commitValidationFailure(synopsis, details));
+            ret.add(commitValidationFailure(associationPolicy, synopsis, details));
           }
-        } else if (!itsConfig
+        } else if (!projectConfig
             .getDummyIssuePattern()
             .map(p -> p.matcher(commitMessage).find())
             .orElse(false)) {
@@ -111,14 +148,14 @@ public class ItsValidateComment implements CommitValidationListener {
           sb.append("Hint: insert one or more issue-id anywhere in the ");
           sb.append("commit message.\n");
           sb.append("      Issue-ids are strings matching ");
-          sb.append(itsConfig.getIssuePattern().pattern());
+          sb.append(projectConfig.getIssuePattern().getPattern().pattern());
           sb.append("\n");
           sb.append("      and are pointing to existing tickets on ");
           sb.append(pluginName);
           sb.append(" Issue-Tracker");
           details = sb.toString();
 
-          ret.add(commitValidationFailure(synopsis, details));
+          ret.add(commitValidationFailure(associationPolicy, synopsis, details));
         }
         break;
       case OPTIONAL:
@@ -128,10 +165,19 @@ public class ItsValidateComment implements CommitValidationListener {
     return ret;
   }
 
-  private CommitValidationMessage commitValidationFailure(String synopsis, String details)
+  private CommitValidationMessage checkFailure(
+      ItsAssociationPolicy associationPolicy, String issueId, Throwable cause)
+      throws CommitValidationException {
+    String synopsis = "Failed to check whether or not issue " + issueId + " exists";
+    log.warn(synopsis, cause);
+    return commitValidationFailure(associationPolicy, synopsis, cause.toString());
+  }
+
+  private CommitValidationMessage commitValidationFailure(
+      ItsAssociationPolicy associationPolicy, String synopsis, String details)
       throws CommitValidationException {
     CommitValidationMessage ret = new CommitValidationMessage(synopsis + "\n" + details, false);
-    if (itsConfig.getItsAssociationPolicy() == ItsAssociationPolicy.MANDATORY) {
+    if (associationPolicy == ItsAssociationPolicy.MANDATORY) {
       throw new CommitValidationException(synopsis, Collections.singletonList(ret));
     }
     return ret;
@@ -141,10 +187,10 @@ public class ItsValidateComment implements CommitValidationListener {
   public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
       throws CommitValidationException {
     Project.NameKey projectName = receiveEvent.getProjectNameKey();
-    ItsConfig.setCurrentProjectName(projectName);
+    ItsProjectConfig projectConfig = itsConfig.getProjectConfig(projectName);
 
-    if (itsConfig.isEnabled(projectName, receiveEvent.getRefName())) {
-      return validCommit(projectName, receiveEvent.commit);
+    if (projectConfig.isEnabled(receiveEvent.getRefName())) {
+      return validCommit(projectName, projectConfig, receiveEvent);
     }
 
     return Collections.emptyList();
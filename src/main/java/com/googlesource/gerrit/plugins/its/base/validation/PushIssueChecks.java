@@ -0,0 +1,137 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the issues of all commits of a push at once.
+ *
+ * <p>Gerrit validates the commits of a push one by one. When the first commit of a push gets
+ * validated, the issues of all commits the push adds to the repository are collected and checked
+ * in one deduplicated lookup. The further commits of the push then pick up the results.
+ *
+ * <p>Like Gerrit, only commits that are not yet reachable from any branch or tag are considered
+ * new, so pushing a new branch does not check the history it builds upon again.
+ */
+@Singleton
+class PushIssueChecks {
+  private static final Logger log = LoggerFactory.getLogger(PushIssueChecks.class);
+
+  private final GitRepositoryManager repoManager;
+  private final IssueExtractor issueExtractor;
+  private final IssueExistenceChecker checker;
+  private final Cache<ReceiveCommand, Map<String, CompletableFuture<Boolean>>> pushes =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  @Inject
+  PushIssueChecks(
+      GitRepositoryManager repoManager,
+      IssueExtractor issueExtractor,
+      IssueExistenceChecker checker) {
+    this.repoManager = repoManager;
+    this.issueExtractor = issueExtractor;
+    this.checker = checker;
+  }
+
+  /**
+   * Gets the checks of the issues of the push a commit is part of.
+   *
+   * @param event The event of the received commit.
+   * @param projectConfig The configuration of the project the commit is pushed to.
+   * @param its The facade of the ITS of the issues.
+   * @return The future of whether each issue of the push exists, by issue id. Issues of commits
+   *     that are not covered have to be checked on their own.
+   */
+  Map<String, CompletableFuture<Boolean>> get(
+      CommitReceivedEvent event, ItsProjectConfig projectConfig, ItsFacade its) {
+    if (event.command == null || event.revWalk == null) {
+      return Collections.emptyMap();
+    }
+    return pushes
+        .asMap()
+        .computeIfAbsent(event.command, command -> checkPush(event, projectConfig, its));
+  }
+
+  private Map<String, CompletableFuture<Boolean>> checkPush(
+      CommitReceivedEvent event, ItsProjectConfig projectConfig, ItsFacade its) {
+    Set<String> issueIds = new LinkedHashSet<>();
+    try (RevWalk walk = new RevWalk(event.revWalk.getObjectReader())) {
+      walk.markStart(walk.parseCommit(event.command.getNewId()));
+      markExistingCommitsUninteresting(walk, event);
+      for (RevCommit commit : walk) {
+        Collections.addAll(
+            issueIds, issueExtractor.getIssueIds(projectConfig, commit.getFullMessage()));
+      }
+    } catch (IOException e) {
+      log.warn(
+          "Cannot collect the issues of the push to {}, checking commits one by one",
+          event.refName,
+          e);
+      return Collections.emptyMap();
+    }
+    return checker.check(its, event.getProjectNameKey(), issueIds);
+  }
+
+  /** Excludes the old id of the ref and everything reachable from a branch or tag from a walk. */
+  private void markExistingCommitsUninteresting(RevWalk walk, CommitReceivedEvent event)
+      throws IOException {
+    ObjectId oldId = event.command.getOldId();
+    if (!ObjectId.zeroId().equals(oldId)) {
+      walk.markUninteresting(walk.parseCommit(oldId));
+    }
+    try (Repository repo = repoManager.openRepository(event.getProjectNameKey())) {
+      List<Ref> refs = new ArrayList<>(repo.getRefDatabase().getRefsByPrefix(R_HEADS));
+      refs.addAll(repo.getRefDatabase().getRefsByPrefix(R_TAGS));
+      for (Ref ref : refs) {
+        if (ref.getObjectId() == null) {
+          continue;
+        }
+        RevObject tip = walk.peel(walk.parseAny(ref.getObjectId()));
+        if (tip instanceof RevCommit) {
+          walk.markUninteresting((RevCommit) tip);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Bounds the time commit validation waits for the ITS during a push.
+ *
+ * <p>The commits of a push are validated one by one, but for the same receive command. So the
+ * deadline starts with the first commit validated for a receive command, and all further commits
+ * of the push share it.
+ */
+@Singleton
+class ValidationBudget {
+  static final String TIMEOUT_KEY = "commitValidationTimeout";
+  static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+  private final long timeoutNanos;
+  private final Cache<ReceiveCommand, Long> deadlines =
+      CacheBuilder.newBuilder().weakKeys().build();
+
+  @Inject
+  ValidationBudget(@PluginName String pluginName, PluginConfigFactory pluginCfgFactory) {
+    String value = pluginCfgFactory.getFromGerritConfig(pluginName).getString(TIMEOUT_KEY);
+    long timeout =
+        value == null
+            ? DEFAULT_TIMEOUT
+            : ConfigUtil.getTimeUnit(value, DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+  }
+
+  /**
+   * Gets the time left to wait for the ITS.
+   *
+   * @param command The receive command of the push, or null if the commit is validated outside of
+   *     a push.
+   * @return The nanoseconds left until the push's deadline, {@code 0} once it passed, or {@link
+   *     Long#MAX_VALUE} if there is no deadline.
+   */
+  long remainingNanos(ReceiveCommand command) {
+    if (timeoutNanos <= 0) {
+      return Long.MAX_VALUE;
+    }
+    long now = System.nanoTime();
+    long deadline = now + timeoutNanos;
+    if (command != null) {
+      deadline = deadlines.asMap().computeIfAbsent(command, c -> now + timeoutNanos);
+    }
+    return Math.max(0, deadline - now);
+  }
+}
@@ -0,0 +1,45 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade.FieldValue;
+
+/**
+ * Collects the comments and field values that {@link BatchableAction}s add to issues, so they can
+ * be handed to a {@link BatchingItsFacade} in one batch.
+ */
+class ActionBatch {
+  private final ListMultimap<String, String> comments = ArrayListMultimap.create();
+  private final ListMultimap<String, FieldValue> fieldValues = ArrayListMultimap.create();
+
+  void addComment(String issueId, String comment) {
+    comments.put(issueId, comment);
+  }
+
+  void addValueToField(String issueId, String value, String fieldId) {
+    fieldValues.put(issueId, new FieldValue(fieldId, value));
+  }
+
+  ListMultimap<String, String> getComments() {
+    return comments;
+  }
+
+  ListMultimap<String, FieldValue> getFieldValues() {
+    return fieldValues;
+  }
+}
@@ -14,13 +14,17 @@
 
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
+import com.google.common.collect.Maps;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.events.Event;
 import com.google.gerrit.server.events.EventListener;
 import com.google.gerrit.server.events.RefEvent;
 import com.google.inject.Inject;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
 import com.googlesource.gerrit.plugins.its.base.util.PropertyExtractor;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -40,17 +44,26 @@ public class ActionController implements EventListener {
   private final RuleBase ruleBase;
   private final ActionExecutor actionExecutor;
   private final ItsConfig itsConfig;
+  private final RefEventQueue eventQueue;
+  private final ActionLanes actionLanes;
+  private final ItsMetrics metrics;
 
   @Inject
   public ActionController(
       PropertyExtractor propertyExtractor,
       RuleBase ruleBase,
       ActionExecutor actionExecutor,
-      ItsConfig itsConfig) {
+      ItsConfig itsConfig,
+      RefEventQueue eventQueue,
+      ActionLanes actionLanes,
+      ItsMetrics metrics) {
     this.propertyExtractor = propertyExtractor;
     this.ruleBase = ruleBase;
     this.actionExecutor = actionExecutor;
     this.itsConfig = itsConfig;
+    this.eventQueue = eventQueue;
+    this.actionLanes = actionLanes;
+    this.metrics = metrics;
   }
 
   @Override
@@ -58,23 +71,51 @@ public class ActionController implements EventListener {
     if (event instanceof RefEvent) {
       RefEvent refEvent = (RefEvent) event;
       if (itsConfig.isEnabled(refEvent)) {
-        handleEvent(refEvent);
+        eventQueue.submit(refEvent, () -> handleEvent(refEvent));
       }
     }
   }
 
   private void handleEvent(RefEvent refEvent) {
-    RefEventProperties refEventProperties = propertyExtractor.extractFrom(refEvent);
+    String eventType = refEvent.type;
+    try (Timer1.Context<String> ctx = metrics.startEvent(eventType)) {
+      RefEventProperties refEventProperties = propertyExtractor.extractFrom(refEvent);
+      Set<Map<String, String>> issuesProperties = refEventProperties.getIssuesProperties();
 
-    handleIssuesEvent(refEventProperties.getIssuesProperties());
-    handleProjectEvent(refEventProperties.getProjectProperties());
+      handleIssuesEvent(issuesProperties);
+      handleProjectEvent(refEventProperties.getProjectProperties());
+      metrics.eventProcessed(eventType, issuesProperties.size());
+    }
   }
 
   private void handleIssuesEvent(Set<Map<String, String>> issuesProperties) {
+    if (issuesProperties.isEmpty()) {
+      return;
+    }
+    String project = issuesProperties.iterator().next().get("project");
+    if (actionExecutor.executesIssuesTogether(project)) {
+      // The issues get handled together, so the actions for all issues of the project share a lane
+      // to keep them in order.
+      List<Map.Entry<Map<String, String>, Collection<ActionRequest>>> issuesActions =
+          new ArrayList<>(issuesProperties.size());
+      for (Map<String, String> issueProperties : issuesProperties) {
+        Collection<ActionRequest> actions = ruleBase.actionRequestsFor(issueProperties);
+        if (!actions.isEmpty()) {
+          issuesActions.add(Maps.immutableEntry(issueProperties, actions));
+        }
+      }
+      if (!issuesActions.isEmpty()) {
+        actionLanes.execute(project, () -> actionExecutor.executeOnIssues(issuesActions));
+      }
+      return;
+    }
+
     for (Map<String, String> issueProperties : issuesProperties) {
       Collection<ActionRequest> actions = ruleBase.actionRequestsFor(issueProperties);
       if (!actions.isEmpty()) {
-        actionExecutor.executeOnIssue(actions, issueProperties);
+        actionLanes.execute(
+            issueProperties.get("issue"),
+            () -> actionExecutor.executeOnIssue(actions, issueProperties));
       }
     }
   }
@@ -97,6 +138,8 @@ public class ActionController implements EventListener {
       return;
     }
 
-    actionExecutor.executeOnProject(projectActions, projectProperties);
+    actionLanes.execute(
+        projectProperties.get("its-project"),
+        () -> actionExecutor.executeOnProject(projectActions, projectProperties));
   }
 }
@@ -14,14 +14,28 @@
 
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.registration.DynamicMap;
 import com.google.gerrit.extensions.registration.PluginName;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
 import com.google.inject.Inject;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacades;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.CircuitOpenException;
+import com.googlesource.gerrit.plugins.its.base.its.ItsCircuitBreaker;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConcurrencyLimiter;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.ItsRateLimiter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +51,12 @@ public class ActionExecutor {
   private final AddPropertyToField.Factory addPropertyToFieldFactory;
   private final CreateVersionFromProperty.Factory createVersionFromPropertyFactory;
   private final DynamicMap<CustomAction> customActions;
+  private final ItsMetrics metrics;
+  private final ActionRetries actionRetries;
+  private final ItsCircuitBreaker circuitBreaker;
+  private final ItsRateLimiter rateLimiter;
+  private final ItsConcurrencyLimiter concurrencyLimiter;
+  private final AsyncItsFacades asyncFacades;
 
   @Inject
   public ActionExecutor(
@@ -47,7 +67,13 @@ public class ActionExecutor {
       LogEvent.Factory logEventFactory,
       AddPropertyToField.Factory addPropertyToFieldFactory,
       CreateVersionFromProperty.Factory createVersionFromPropertyFactory,
-      DynamicMap<CustomAction> customActions) {
+      DynamicMap<CustomAction> customActions,
+      ItsMetrics metrics,
+      ActionRetries actionRetries,
+      ItsCircuitBreaker circuitBreaker,
+      ItsRateLimiter rateLimiter,
+      ItsConcurrencyLimiter concurrencyLimiter,
+      AsyncItsFacades asyncFacades) {
     this.itsFactory = itsFactory;
     this.addCommentFactory = addCommentFactory;
     this.addStandardCommentFactory = addStandardCommentFactory;
@@ -56,6 +82,12 @@ public class ActionExecutor {
     this.addPropertyToFieldFactory = addPropertyToFieldFactory;
     this.createVersionFromPropertyFactory = createVersionFromPropertyFactory;
     this.customActions = customActions;
+    this.metrics = metrics;
+    this.actionRetries = actionRetries;
+    this.circuitBreaker = circuitBreaker;
+    this.rateLimiter = rateLimiter;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.asyncFacades = asyncFacades;
   }
 
   private Action getAction(String actionName) {
@@ -78,37 +110,329 @@ public class ActionExecutor {
   }
 
   private void execute(
-      Action action, String target, ActionRequest actionRequest, Map<String, String> properties)
+      Action action,
+      String actionName,
+      String target,
+      ActionRequest actionRequest,
+      Map<String, String> properties)
       throws IOException {
-    ItsFacade its = itsFactory.getFacade(Project.nameKey(properties.get("project")));
-    action.execute(its, target, actionRequest, properties);
+    Project.NameKey project = Project.nameKey(properties.get("project"));
+    ItsFacade its = itsFactory.getFacade(project);
+    try (Timer1.Context<String> ctx = metrics.startAction(actionName)) {
+      callIts(its, project, () -> action.execute(its, target, actionRequest, properties));
+    }
+  }
+
+  private void callIts(ItsFacade its, Project.NameKey project, ItsCircuitBreaker.VoidItsCall call)
+      throws IOException {
+    circuitBreaker.run(
+        its,
+        project,
+        () -> {
+          rateLimiter.acquire(project);
+          concurrencyLimiter.run(project, call);
+        });
   }
 
   private void executeOnIssue(
-      String issue, ActionRequest actionRequest, Map<String, String> properties) {
+      String issue, ActionRequest actionRequest, Map<String, String> properties, int attempt) {
+    String actionName = actionRequest.getName();
+    executeOnIssue(issue, actionRequest, actionName, getAction(actionName), properties, attempt);
+  }
+
+  private void executeOnIssue(
+      String issue,
+      ActionRequest actionRequest,
+      String actionName,
+      @Nullable Action action,
+      Map<String, String> properties,
+      int attempt) {
     try {
-      Action action = getAction(actionRequest.getName());
       if (action == null) {
-        ItsFacade its = itsFactory.getFacade(Project.nameKey(properties.get("project")));
-        its.performAction(issue, actionRequest.getUnparsed());
+        Project.NameKey project = Project.nameKey(properties.get("project"));
+        ItsFacade its = itsFactory.getFacade(project);
+        try (Timer1.Context<String> ctx = metrics.startAction(actionName)) {
+          callIts(its, project, () -> its.performAction(issue, actionRequest.getUnparsed()));
+        }
       } else if (action.getType() == ActionType.ISSUE) {
-        execute(action, issue, actionRequest, properties);
+        execute(action, actionName, issue, actionRequest, properties);
       }
     } catch (IOException e) {
+      metrics.actionFailed(actionName);
+      logFailure(actionRequest, e);
+      actionRetries.failed(ActionType.ISSUE, issue, actionRequest, properties, attempt, e);
+    }
+  }
+
+  private static void logFailure(ActionRequest actionRequest, IOException e) {
+    if (e instanceof CircuitOpenException) {
+      log.warn("Not executing action {}: {}", actionRequest, e.getMessage());
+    } else {
       log.error("Error while executing action " + actionRequest, e);
     }
   }
 
   public void executeOnIssue(Iterable<ActionRequest> actions, Map<String, String> properties) {
     for (ActionRequest actionRequest : actions) {
-      executeOnIssue(properties.get("issue"), actionRequest, properties);
+      executeOnIssue(properties.get("issue"), actionRequest, properties, 1);
+    }
+  }
+
+  /**
+   * Checks whether the actions for the issues of an event can get executed together.
+   *
+   * @param project The name of the project of the event.
+   * @return true, if the ITS of the project accepts batches of comments and field values, or can
+   *     get called asynchronously.
+   */
+  public boolean executesIssuesTogether(String project) {
+    ItsFacade its = itsFactory.getFacade(Project.nameKey(project));
+    return its instanceof BatchingItsFacade || asyncFacades.isNative(its);
+  }
+
+  /**
+   * Executes the actions for the issues of an event.
+   *
+   * <p>The actions get executed in steps, and each step executes the next actions for each issue.
+   * If the ITS of the event's project accepts batches, the comments or field values added by the
+   * next batchable actions for an issue are sent in one batch with those for the other issues. A
+   * batch ends at the first action for the issue that adds something else, so the actions for each
+   * issue still get executed in order.
+   *
+   * <p>If the ITS of the event's project can get called asynchronously, the ITS actions of a step
+   * are performed concurrently.
+   *
+   * @param issuesActions The actions to execute, by the properties of the issue to execute them on.
+   *     All issues have to be of the same project.
+   */
+  public void executeOnIssues(
+      List<Map.Entry<Map<String, String>, Collection<ActionRequest>>> issuesActions) {
+    if (issuesActions.isEmpty()) {
+      return;
+    }
+    Project.NameKey project = Project.nameKey(issuesActions.get(0).getKey().get("project"));
+    ItsFacade its = itsFactory.getFacade(project);
+    BatchingItsFacade batchingIts =
+        its instanceof BatchingItsFacade ? (BatchingItsFacade) its : null;
+    AsyncItsFacade asyncIts = asyncFacades.isNative(its) ? asyncFacades.get(its) : null;
+    if (batchingIts == null && asyncIts == null) {
+      for (Map.Entry<Map<String, String>, Collection<ActionRequest>> issueActions : issuesActions) {
+        executeOnIssue(issueActions.getValue(), issueActions.getKey());
+      }
+      return;
+    }
+
+    List<PendingActions> pendingActions = new ArrayList<>(issuesActions.size());
+    for (Map.Entry<Map<String, String>, Collection<ActionRequest>> issueActions : issuesActions) {
+      PendingActions pending = new PendingActions(issueActions.getKey());
+      for (ActionRequest actionRequest : issueActions.getValue()) {
+        pending.add(actionRequest, getAction(actionRequest.getName()));
+      }
+      pendingActions.add(pending);
+    }
+    boolean more = true;
+    while (more) {
+      more = executeStep(its, project, batchingIts, asyncIts, pendingActions);
+    }
+  }
+
+  /**
+   * Executes the next actions for each issue.
+   *
+   * <p>For each issue, a step either adds the comments or field values of the next batchable
+   * actions to a batch, or executes the next other action. ITS actions are performed concurrently
+   * through the asynchronous facade, while other actions get executed one by one. The step only
+   * ends once its batches got sent and its ITS actions are done.
+   *
+   * @return true, if actions are left for another step.
+   */
+  private boolean executeStep(
+      ItsFacade its,
+      Project.NameKey project,
+      @Nullable BatchingItsFacade batchingIts,
+      @Nullable AsyncItsFacade asyncIts,
+      List<PendingActions> pendingActions) {
+    ActionBatch batch = new ActionBatch();
+    List<BatchedAction> batchedComments = new ArrayList<>();
+    List<BatchedAction> batchedFieldValues = new ArrayList<>();
+    List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+    boolean more = false;
+    for (PendingActions pending : pendingActions) {
+      if (!pending.hasNext()) {
+        continue;
+      }
+      Map<String, String> properties = pending.properties;
+      String issue = properties.get("issue");
+      Action action = pending.nextAction();
+      if (batchingIts != null && action instanceof BatchableAction) {
+        boolean fieldValue = action instanceof AddPropertyToField;
+        List<BatchedAction> batchedActions = fieldValue ? batchedFieldValues : batchedComments;
+        do {
+          BatchableAction batchable = (BatchableAction) pending.nextAction();
+          addToBatch(batch, batchedActions, batchable, issue, pending.next(), properties);
+        } while (pending.hasNext() && continuesBatch(pending.nextAction(), fieldValue));
+      } else if (action == null && asyncIts != null) {
+        inFlight.add(performActionAsync(asyncIts, its, project, issue, pending.next(), properties));
+      } else {
+        ActionRequest actionRequest = pending.next();
+        executeOnIssue(issue, actionRequest, actionRequest.getName(), action, properties, 1);
+      }
+      more |= pending.hasNext();
+    }
+
+    if (!batchedComments.isEmpty()) {
+      executeBatch(
+          batchedComments, its, project, () -> batchingIts.addComments(batch.getComments()));
+    }
+    if (!batchedFieldValues.isEmpty()) {
+      executeBatch(
+          batchedFieldValues,
+          its,
+          project,
+          () -> batchingIts.addValuesToFields(batch.getFieldValues()));
+    }
+    CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).join();
+    return more;
+  }
+
+  private static boolean continuesBatch(@Nullable Action action, boolean fieldValue) {
+    return action instanceof BatchableAction
+        && (action instanceof AddPropertyToField) == fieldValue;
+  }
+
+  private void addToBatch(
+      ActionBatch batch,
+      List<BatchedAction> batchedActions,
+      BatchableAction action,
+      String issue,
+      ActionRequest actionRequest,
+      Map<String, String> properties) {
+    String actionName = actionRequest.getName();
+    Timer1.Context<String> ctx = metrics.startAction(actionName);
+    try {
+      action.addTo(batch, issue, actionRequest, properties);
+    } catch (IOException e) {
+      ctx.close();
+      metrics.actionFailed(actionName);
+      logFailure(actionRequest, e);
+      actionRetries.failed(ActionType.ISSUE, issue, actionRequest, properties, 1, e);
+      return;
+    }
+    batchedActions.add(new BatchedAction(issue, actionRequest, properties, ctx));
+  }
+
+  private CompletableFuture<Void> performActionAsync(
+      AsyncItsFacade asyncIts,
+      ItsFacade its,
+      Project.NameKey project,
+      String issue,
+      ActionRequest actionRequest,
+      Map<String, String> properties) {
+    String actionName = actionRequest.getName();
+    Timer1.Context<String> ctx = metrics.startAction(actionName);
+    return circuitBreaker
+        .callAsync(
+            its,
+            project,
+            () -> {
+              rateLimiter.acquire(project);
+              return concurrencyLimiter.callAsync(
+                  project, () -> asyncIts.performAction(issue, actionRequest.getUnparsed()));
+            })
+        .handle(
+            (result, error) -> {
+              ctx.close();
+              if (error != null) {
+                Throwable cause = ItsCircuitBreaker.unwrap(error);
+                IOException e =
+                    cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                metrics.actionFailed(actionName);
+                logFailure(actionRequest, e);
+                actionRetries.failed(ActionType.ISSUE, issue, actionRequest, properties, 1, e);
+              }
+              return null;
+            });
+  }
+
+  private void executeBatch(
+      List<BatchedAction> batchedActions,
+      ItsFacade its,
+      Project.NameKey project,
+      ItsCircuitBreaker.VoidItsCall call) {
+    try (Timer0.Context ctx = metrics.startBatch(batchedActions.size())) {
+      callIts(its, project, call);
+    } catch (IOException e) {
+      if (e instanceof CircuitOpenException) {
+        log.warn("Not executing batch of {} actions: {}", batchedActions.size(), e.getMessage());
+      } else {
+        log.error("Error while executing batch of " + batchedActions.size() + " actions", e);
+      }
+      // Retries execute the actions one by one.
+      for (BatchedAction batched : batchedActions) {
+        metrics.actionFailed(batched.actionRequest.getName());
+        actionRetries.failed(
+            ActionType.ISSUE, batched.issue, batched.actionRequest, batched.properties, 1, e);
+      }
+    } finally {
+      for (BatchedAction batched : batchedActions) {
+        batched.ctx.close();
+      }
+    }
+  }
+
+  private static class BatchedAction {
+    final String issue;
+    final ActionRequest actionRequest;
+    final Map<String, String> properties;
+    final Timer1.Context<String> ctx;
+
+    BatchedAction(
+        String issue,
+        ActionRequest actionRequest,
+        Map<String, String> properties,
+        Timer1.Context<String> ctx) {
+      this.issue = issue;
+      this.actionRequest = actionRequest;
+      this.properties = properties;
+      this.ctx = ctx;
+    }
+  }
+
+  /** The actions for an issue that are not executed yet. */
+  private static class PendingActions {
+    final Map<String, String> properties;
+    private final List<ActionRequest> actionRequests = new ArrayList<>();
+    private final List<Action> actions = new ArrayList<>();
+    private int next;
+
+    PendingActions(Map<String, String> properties) {
+      this.properties = properties;
+    }
+
+    void add(ActionRequest actionRequest, @Nullable Action action) {
+      actionRequests.add(actionRequest);
+      actions.add(action);
+    }
+
+    boolean hasNext() {
+      return next < actionRequests.size();
+    }
+
+    /** @return the action to execute next, or null if it is performed by the ITS itself. */
+    @Nullable
+    Action nextAction() {
+      return actions.get(next);
+    }
+
+    ActionRequest next() {
+      return actionRequests.get(next++);
     }
   }
 
   private void executeOnProject(
-      String itsProject, ActionRequest actionRequest, Map<String, String> properties) {
+      String itsProject, ActionRequest actionRequest, Map<String, String> properties, int attempt) {
+    String actionName = actionRequest.getName();
     try {
-      String actionName = actionRequest.getName();
       Action action = getAction(actionName);
       if (action == null) {
         log.debug("No action found for name {}", actionName);
@@ -117,15 +441,39 @@ public class ActionExecutor {
       if (action.getType() != ActionType.PROJECT) {
         return;
       }
-      execute(action, itsProject, actionRequest, properties);
+      execute(action, actionName, itsProject, actionRequest, properties);
     } catch (IOException e) {
-      log.error("Error while executing action " + actionRequest, e);
+      metrics.actionFailed(actionName);
+      logFailure(actionRequest, e);
+      actionRetries.failed(ActionType.PROJECT, itsProject, actionRequest, properties, attempt, e);
     }
   }
 
   public void executeOnProject(Iterable<ActionRequest> actions, Map<String, String> properties) {
     for (ActionRequest actionRequest : actions) {
-      executeOnProject(properties.get("its-project"), actionRequest, properties);
+      executeOnProject(properties.get("its-project"), actionRequest, properties, 1);
+    }
+  }
+
+  /**
+   * Executes an action again that failed before.
+   *
+   * @param type Whether the action gets executed on an issue or on an ITS project.
+   * @param target The issue id, or the name of the ITS project, to execute the action on.
+   * @param actionRequest The action to execute.
+   * @param properties The properties to execute the action with.
+   * @param attempt The number of this execution, counting the failed ones.
+   */
+  void retry(
+      ActionType type,
+      String target,
+      ActionRequest actionRequest,
+      Map<String, String> properties,
+      int attempt) {
+    if (type == ActionType.PROJECT) {
+      executeOnProject(target, actionRequest, properties, attempt);
+    } else {
+      executeOnIssue(target, actionRequest, properties, attempt);
     }
   }
 }
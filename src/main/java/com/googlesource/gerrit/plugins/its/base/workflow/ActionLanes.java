@@ -0,0 +1,224 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes actions on lanes that are keyed by their target.
+ *
+ * <p>Tasks for the same key (e.g.: the same issue) run one after the other in submission order,
+ * while tasks for keys on different lanes run in parallel.
+ */
+@Singleton
+public class ActionLanes implements LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(ActionLanes.class);
+
+  static final String LANES_KEY = "actionLanes";
+  static final String THREAD_TYPE_KEY = "actionThreadType";
+
+  static final int DEFAULT_VIRTUAL_LANES = 1024;
+
+  /** The kind of threads actions are executed on. */
+  public enum ThreadType {
+    /** A pool with one platform thread per lane. */
+    PLATFORM,
+    /**
+     * A new virtual thread for each action task. Falls back to {@link #PLATFORM} on Java versions
+     * without virtual threads.
+     */
+    VIRTUAL
+  }
+
+  private final OneOffRequestContext requestContext;
+  private final ExecutorService pool;
+  private final Executor[] lanes;
+  private final AtomicInteger[] backlogs;
+
+  @Inject
+  ActionLanes(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      OneOffRequestContext requestContext,
+      MetricMaker metricMaker) {
+    this(pluginName, pluginCfgFactory.getFromGerritConfig(pluginName), requestContext, metricMaker);
+  }
+
+  private ActionLanes(
+      String pluginName,
+      PluginConfig cfg,
+      OneOffRequestContext requestContext,
+      MetricMaker metricMaker) {
+    this(pluginName, getThreadType(cfg), getLaneCount(cfg), requestContext, metricMaker);
+  }
+
+  ActionLanes(
+      String pluginName,
+      ThreadType threadType,
+      int laneCount,
+      OneOffRequestContext requestContext,
+      MetricMaker metricMaker) {
+    this.requestContext = requestContext;
+
+    if (laneCount > 0) {
+      ExecutorService virtualThreads =
+          threadType == ThreadType.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+      if (virtualThreads != null) {
+        this.pool = virtualThreads;
+      } else {
+        if (threadType == ThreadType.VIRTUAL) {
+          log.warn(
+              "Virtual threads are not available on Java {}, using platform threads",
+              System.getProperty("java.version"));
+        }
+        this.pool =
+            Executors.newFixedThreadPool(
+                laneCount,
+                new ThreadFactoryBuilder()
+                    .setNameFormat(pluginName + "-actions-%d")
+                    .setDaemon(true)
+                    .build());
+      }
+      this.lanes = new Executor[laneCount];
+      this.backlogs = new AtomicInteger[laneCount];
+      for (int i = 0; i < laneCount; i++) {
+        lanes[i] = MoreExecutors.newSequentialExecutor(pool);
+        backlogs[i] = new AtomicInteger();
+      }
+    } else {
+      this.pool = null;
+      this.lanes = new Executor[0];
+      this.backlogs = new AtomicInteger[0];
+    }
+
+    metricMaker.newConstantMetric(
+        "actions/lanes",
+        lanes.length,
+        new Description("Number of lanes actions are executed on").setConstant());
+    metricMaker.newCallbackMetric(
+        "actions/lane_backlog",
+        Integer.class,
+        new Description("Action tasks waiting or running on any lane").setGauge().setUnit("tasks"),
+        this::getBacklog);
+  }
+
+  private static ThreadType getThreadType(PluginConfig cfg) {
+    return cfg.getEnum(THREAD_TYPE_KEY, ThreadType.PLATFORM);
+  }
+
+  private static int getLaneCount(PluginConfig cfg) {
+    // Lanes on virtual threads are cheap, so they default to many more lanes.
+    int defaultLaneCount =
+        getThreadType(cfg) == ThreadType.VIRTUAL
+            ? DEFAULT_VIRTUAL_LANES
+            : Runtime.getRuntime().availableProcessors();
+    return cfg.getInt(LANES_KEY, defaultLaneCount);
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task.
+   *
+   * <p>The plugin is built for Java versions without virtual threads, so the executor is looked up
+   * reflectively.
+   *
+   * @return The executor, or null if the running Java version does not have virtual threads.
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Executes a task on the lane for a key.
+   *
+   * @param key The key determining the lane. Tasks with equal keys run in submission order.
+   * @param task The task to execute.
+   */
+  public void execute(String key, Runnable task) {
+    if (lanes.length == 0) {
+      task.run();
+      return;
+    }
+    int lane = Math.floorMod(Objects.hashCode(key), lanes.length);
+    AtomicInteger backlog = backlogs[lane];
+    backlog.incrementAndGet();
+    try {
+      lanes[lane].execute(
+          () -> {
+            try (ManualRequestContext ctx = requestContext.open()) {
+              task.run();
+            } catch (RuntimeException e) {
+              log.error("Failed to execute actions for " + key, e);
+            } finally {
+              backlog.decrementAndGet();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      backlog.decrementAndGet();
+      log.warn("Dropping actions for {} as the plugin is stopping", key);
+    }
+  }
+
+  int getBacklog() {
+    int backlog = 0;
+    for (AtomicInteger laneBacklog : backlogs) {
+      backlog += laneBacklog.get();
+    }
+    return backlog;
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    if (pool != null) {
+      pool.shutdown();
+      try {
+        if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+          pool.shutdownNow();
+          log.warn("Dropping {} unexecuted action tasks", getBacklog());
+        }
+      } catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
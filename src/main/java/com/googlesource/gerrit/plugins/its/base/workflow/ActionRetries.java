@@ -0,0 +1,261 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries failed actions with exponential backoff.
+ *
+ * <p>Retries wait on a scheduler, and get executed on the {@link ActionLanes} once they are due,
+ * so waiting for a retry does not block the processing of other events. Retries may hence get
+ * executed after actions that were triggered later for the same issue.
+ *
+ * <p>Actions that still fail after the last retry, and retries that are still waiting when the
+ * plugin stops, are put into the {@link DeadLetterStore}, from which they can be replayed.
+ */
+@Singleton
+public class ActionRetries implements LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(ActionRetries.class);
+
+  static final String RETRIES_KEY = "actionRetries";
+  static final String BACKOFF_KEY = "actionRetryBackoff";
+  static final String MAX_BACKOFF_KEY = "actionRetryMaxBackoff";
+
+  static final int DEFAULT_RETRIES = 3;
+  static final long DEFAULT_BACKOFF = TimeUnit.SECONDS.toMillis(10);
+  static final long DEFAULT_MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+
+  private final Provider<ActionExecutor> actionExecutor;
+  private final ActionLanes actionLanes;
+  private final DeadLetterStore deadLetters;
+  private final int retries;
+  private final long backoff;
+  private final long maxBackoff;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final Set<Retry> pending = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  ActionRetries(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      Provider<ActionExecutor> actionExecutor,
+      ActionLanes actionLanes,
+      DeadLetterStore deadLetters,
+      MetricMaker metricMaker) {
+    this.actionExecutor = actionExecutor;
+    this.actionLanes = actionLanes;
+    this.deadLetters = deadLetters;
+
+    PluginConfig cfg = pluginCfgFactory.getFromGerritConfig(pluginName);
+    this.retries = Math.max(0, cfg.getInt(RETRIES_KEY, DEFAULT_RETRIES));
+    this.backoff = Math.max(0, getMillis(cfg, BACKOFF_KEY, DEFAULT_BACKOFF));
+    this.maxBackoff = Math.max(backoff, getMillis(cfg, MAX_BACKOFF_KEY, DEFAULT_MAX_BACKOFF));
+    this.scheduler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            new ThreadFactoryBuilder()
+                .setNameFormat(pluginName + "-action-retries-%d")
+                .setDaemon(true)
+                .build());
+    scheduler.setRemoveOnCancelPolicy(true);
+
+    metricMaker.newCallbackMetric(
+        "actions/pending_retries",
+        Integer.class,
+        new Description("Failed actions waiting for a retry").setGauge().setUnit("actions"),
+        pending::size);
+  }
+
+  /**
+   * Handles the failure of an action.
+   *
+   * <p>If the action has retries left, a retry is scheduled. Otherwise, the action is put into the
+   * {@link DeadLetterStore}.
+   *
+   * @param type Whether the action was executed on an issue or on an ITS project.
+   * @param target The issue id, or the name of the ITS project, the action was executed on.
+   * @param actionRequest The action that failed.
+   * @param properties The properties the action was executed with.
+   * @param attempt The number of times the action has been executed, including the failed one.
+   * @param error The error the action failed with.
+   */
+  public void failed(
+      ActionType type,
+      String target,
+      ActionRequest actionRequest,
+      Map<String, String> properties,
+      int attempt,
+      Exception error) {
+    Retry retry = new Retry(type, target, actionRequest, properties, attempt, error);
+    if (attempt > retries) {
+      deadLetter(retry);
+      return;
+    }
+    long delay = getBackoff(attempt);
+    log.debug(
+        "Retrying action {} on {} in {} ms ({} of {} retries)",
+        actionRequest,
+        target,
+        delay,
+        attempt,
+        retries);
+    pending.add(retry);
+    try {
+      scheduler.schedule(retry, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      pending.remove(retry);
+      deadLetter(retry);
+    }
+  }
+
+  /**
+   * Executes the action of a dead letter again.
+   *
+   * <p>The action gets executed on the {@link ActionLanes} and is retried again, should it fail.
+   *
+   * @param deadLetter The dead letter to replay. It should have been removed from the {@link
+   *     DeadLetterStore}.
+   */
+  public void replay(DeadLetter deadLetter) {
+    ActionRequest actionRequest = new ActionRequest(deadLetter.action);
+    actionLanes.execute(
+        deadLetter.target,
+        () ->
+            actionExecutor
+                .get()
+                .retry(
+                    deadLetter.type, deadLetter.target, actionRequest, deadLetter.properties, 1));
+  }
+
+  private static long getMillis(PluginConfig cfg, String key, long defaultValue) {
+    String value = cfg.getString(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    return ConfigUtil.getTimeUnit(value, defaultValue, TimeUnit.MILLISECONDS);
+  }
+
+  /** Gets the time to wait before the retry following the given attempt. */
+  long getBackoff(int attempt) {
+    long delay = backoff;
+    for (int i = 1; i < attempt && delay < maxBackoff; i++) {
+      delay *= 2;
+    }
+    return Math.min(delay, maxBackoff);
+  }
+
+  int getPendingRetries() {
+    return pending.size();
+  }
+
+  private void deadLetter(Retry retry) {
+    DeadLetter deadLetter = new DeadLetter();
+    deadLetter.id = UUID.randomUUID().toString();
+    deadLetter.type = retry.type;
+    deadLetter.target = retry.target;
+    deadLetter.action = retry.actionRequest.getUnparsed();
+    deadLetter.properties = new HashMap<>(retry.properties);
+    deadLetter.attempts = retry.attempt;
+    deadLetter.error = retry.error.getMessage();
+    deadLetter.failedAt = retry.failedAt;
+    try {
+      deadLetters.add(deadLetter);
+      log.error(
+          "Giving up on action {} on {} after {} attempts. Stored it as dead letter {}",
+          retry.actionRequest,
+          retry.target,
+          retry.attempt,
+          deadLetter.id);
+    } catch (IOException e) {
+      log.error(
+          "Giving up on action {} on {} after {} attempts. Failed to store it as dead letter",
+          retry.actionRequest,
+          retry.target,
+          retry.attempt,
+          e);
+    }
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    scheduler.shutdownNow();
+    for (Retry retry : pending) {
+      if (pending.remove(retry)) {
+        deadLetter(retry);
+      }
+    }
+  }
+
+  private class Retry implements Runnable {
+    final ActionType type;
+    final String target;
+    final ActionRequest actionRequest;
+    final Map<String, String> properties;
+    final int attempt;
+    final Exception error;
+    final Timestamp failedAt;
+
+    Retry(
+        ActionType type,
+        String target,
+        ActionRequest actionRequest,
+        Map<String, String> properties,
+        int attempt,
+        Exception error) {
+      this.type = type;
+      this.target = target;
+      this.actionRequest = actionRequest;
+      this.properties = properties;
+      this.attempt = attempt;
+      this.error = error;
+      this.failedAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    @Override
+    public void run() {
+      if (pending.remove(this)) {
+        actionLanes.execute(
+            target,
+            () -> actionExecutor.get().retry(type, target, actionRequest, properties, attempt + 1));
+      }
+    }
+  }
+}
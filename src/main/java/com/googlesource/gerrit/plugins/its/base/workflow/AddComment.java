@@ -24,7 +24,7 @@ import java.util.Map;
  *
  * <p>The action requests parameters get concatenated and get added to the issue.
  */
-public class AddComment extends IssueAction {
+public class AddComment extends IssueAction implements BatchableAction {
   public interface Factory {
     AddComment create();
   }
@@ -38,4 +38,14 @@ public class AddComment extends IssueAction {
       its.addComment(issue, comment);
     }
   }
+
+  @Override
+  public void addTo(
+      ActionBatch batch, String issue, ActionRequest actionRequest, Map<String, String> properties)
+      throws IOException {
+    String comment = String.join(" ", actionRequest.getParameters());
+    if (!Strings.isNullOrEmpty(comment)) {
+      batch.addComment(issue, comment);
+    }
+  }
 }
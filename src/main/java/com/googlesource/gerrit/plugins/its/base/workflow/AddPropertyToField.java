@@ -20,7 +20,7 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
 
-public class AddPropertyToField extends IssueAction {
+public class AddPropertyToField extends IssueAction implements BatchableAction {
 
   public interface Factory {
     AddPropertyToField create();
@@ -44,4 +44,17 @@ public class AddPropertyToField extends IssueAction {
     }
     its.addValueToField(issue, parameters.get().getPropertyValue(), parameters.get().getFieldId());
   }
+
+  @Override
+  public void addTo(
+      ActionBatch batch, String issue, ActionRequest actionRequest, Map<String, String> properties)
+      throws IOException {
+    Optional<AddPropertyToFieldParameters> parameters =
+        parametersExtractor.extract(actionRequest, properties);
+    if (!parameters.isPresent()) {
+      return;
+    }
+    batch.addValueToField(
+        issue, parameters.get().getPropertyValue(), parameters.get().getFieldId());
+  }
 }
@@ -15,20 +15,11 @@
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
 import com.google.common.base.Strings;
-import com.google.common.io.CharStreams;
 import com.google.inject.Inject;
-import com.google.inject.ProvisionException;
-import com.google.template.soy.SoyFileSet;
-import com.google.template.soy.SoyFileSet.Builder;
 import com.google.template.soy.data.SanitizedContent;
 import com.google.template.soy.tofu.SoyTofu;
-import com.googlesource.gerrit.plugins.its.base.ItsPath;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -46,42 +37,27 @@ public class AddSoyComment extends IssueAction {
     AddSoyComment create();
   }
 
-  private final Path templateDir;
+  private final SoyTemplateCache templateCache;
   protected HashMap<String, Object> soyContext;
 
   @Inject
-  public AddSoyComment(@ItsPath Path itsPath) {
-    this.templateDir = itsPath.resolve("templates");
+  public AddSoyComment(SoyTemplateCache templateCache) {
+    this.templateCache = templateCache;
   }
 
   private String soyTemplate(
-      SoyFileSet.Builder builder,
-      String template,
-      SanitizedContent.ContentKind kind,
-      Map<String, String> properties) {
-    Path templatePath = templateDir.resolve(template + ".soy");
-    String content;
-
-    try (Reader r = Files.newBufferedReader(templatePath, StandardCharsets.UTF_8)) {
-      content = CharStreams.toString(r);
-    } catch (IOException err) {
-      throw new ProvisionException(
-          "Failed to read template file " + templatePath.toAbsolutePath().toString(), err);
-    }
-
-    builder.add(content, templatePath.toAbsolutePath().toString());
+      String template, SanitizedContent.ContentKind kind, Map<String, String> properties) {
     SoyTofu.Renderer renderer =
-        builder
-            .build()
-            .compileToTofu()
+        templateCache
+            .get(template)
             .newRenderer("etc.its.templates." + template)
             .setContentKind(kind)
             .setData(properties);
     return renderer.render();
   }
 
-  private String soyTextTemplate(Builder builder, String template, Map<String, String> properties) {
-    return soyTemplate(builder, template, SanitizedContent.ContentKind.TEXT, properties);
+  private String soyTextTemplate(String template, Map<String, String> properties) {
+    return soyTemplate(template, SanitizedContent.ContentKind.TEXT, properties);
   }
 
   @Override
@@ -97,7 +73,7 @@ public class AddSoyComment extends IssueAction {
   private String buildComment(ActionRequest actionRequest, Map<String, String> properties) {
     String template = actionRequest.getParameter(1);
     if (!template.isEmpty()) {
-      return soyTextTemplate(SoyFileSet.builder(), template, properties);
+      return soyTextTemplate(template, properties);
     }
     log.error("No template name given in {}", actionRequest);
     return "";
@@ -24,7 +24,7 @@ import java.util.Map;
  *
  * <p>Comments are added for merging, abandoning, restoring of changes and adding of patch sets.
  */
-public class AddStandardComment extends IssueAction {
+public class AddStandardComment extends IssueAction implements BatchableAction {
   public interface Factory {
     AddStandardComment create();
   }
@@ -75,6 +75,16 @@ public class AddStandardComment extends IssueAction {
     }
   }
 
+  @Override
+  public void addTo(
+      ActionBatch batch, String issue, ActionRequest actionRequest, Map<String, String> properties)
+      throws IOException {
+    String comment = buildComment(properties);
+    if (!Strings.isNullOrEmpty(comment)) {
+      batch.addComment(issue, comment);
+    }
+  }
+
   private String buildComment(Map<String, String> properties) {
     switch (properties.get("event-type")) {
       case "change-abandoned":
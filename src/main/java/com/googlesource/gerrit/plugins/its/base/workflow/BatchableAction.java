@@ -0,0 +1,38 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * An action that only adds comments or field values to its issue.
+ *
+ * <p>Instead of executing it against an ITS, its comments and field values can get added to an
+ * {@link ActionBatch}, which sends them together with those of other actions.
+ */
+interface BatchableAction extends Action {
+  /**
+   * Adds the comments or field values of this action to a batch.
+   *
+   * @param batch The batch to add to.
+   * @param issue The issue to add the comments or field values to.
+   * @param actionRequest The request to execute.
+   * @param properties The properties for the execution.
+   */
+  void addTo(
+      ActionBatch batch, String issue, ActionRequest actionRequest, Map<String, String> properties)
+      throws IOException;
+}
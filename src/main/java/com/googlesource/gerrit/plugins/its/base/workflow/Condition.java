@@ -20,6 +20,7 @@ import com.google.common.collect.Sets;
 import com.google.gerrit.common.Nullable;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,7 @@ import java.util.Set;
 public class Condition {
   private final String key;
   private final Set<String> values;
+  private final String[] valueArray;
   private final boolean negated;
 
   public interface Factory {
@@ -71,6 +73,7 @@ public class Condition {
       modifyableValues = Sets.newHashSet(valueList);
     }
     this.values = Collections.unmodifiableSet(modifyableValues);
+    this.valueArray = modifyableValues.toArray(new String[0]);
     this.negated = modifyableNegated;
   }
 
@@ -78,6 +81,15 @@ public class Condition {
     return key;
   }
 
+  /** @return the values to match, without the "!" of negated conditions. */
+  public Set<String> getValues() {
+    return values;
+  }
+
+  public boolean isNegated() {
+    return negated;
+  }
+
   /**
    * Checks whether or not the Condition matches the given set of properties
    *
@@ -88,16 +100,92 @@ public class Condition {
    *     and whose value matches at least one of the rule's value.
    */
   public boolean isMetBy(Map<String, String> properties) {
-    String property = properties.get(key);
-    String[] propertyValues = property != null ? property.split(" ") : new String[] {};
-    for (String p : propertyValues) {
-      if (values.contains(p.trim())) {
-        return !negated;
+    if (properties instanceof IssueProperties) {
+      Collection<String> propertyValues = ((IssueProperties) properties).getValues(key);
+      if (propertyValues != null) {
+        return containsAnyValue(propertyValues) ? !negated : negated;
       }
     }
+    String property = properties.get(key);
+    if (property != null && containsAnyValue(property, true)) {
+      return !negated;
+    }
     return negated;
   }
 
+  /**
+   * Checks whether the values of a multi-valued property contain one of the condition's values.
+   *
+   * <p>This gives the same results as checking the values joined by spaces, as property values are
+   * never blank.
+   */
+  private boolean containsAnyValue(Collection<String> propertyValues) {
+    if (propertyValues.isEmpty()) {
+      return containsAnyValue("", true);
+    }
+    int remaining = propertyValues.size();
+    for (String propertyValue : propertyValues) {
+      if (containsAnyValue(propertyValue, --remaining == 0)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a property contains one of the condition's values.
+   *
+   * <p>The property is treated as space separated list of values, each of which gets trimmed. The
+   * values are scanned in place to avoid allocating on this hot path. This gives the same results
+   * as matching the trimmed values of {@code property.split(" ")}: trailing empty values are
+   * ignored, while an empty property consists of a single empty value.
+   *
+   * @param property The property to check.
+   * @param ignoreTrailingEmpty Whether trailing empty values get ignored. This is only false for
+   *     properties that are followed by further values of a multi-valued property.
+   */
+  private boolean containsAnyValue(String property, boolean ignoreTrailingEmpty) {
+    int end = property.length();
+    if (ignoreTrailingEmpty && end > 0) {
+      while (end > 0 && property.charAt(end - 1) == ' ') {
+        end--;
+      }
+      if (end == 0) {
+        return false;
+      }
+    }
+    int start = 0;
+    while (true) {
+      int valueEnd = property.indexOf(' ', start);
+      if (valueEnd < 0 || valueEnd > end) {
+        valueEnd = end;
+      }
+      if (matchesValue(property, start, valueEnd)) {
+        return true;
+      }
+      if (valueEnd == end) {
+        return false;
+      }
+      start = valueEnd + 1;
+    }
+  }
+
+  private boolean matchesValue(String property, int start, int end) {
+    while (start < end && property.charAt(start) <= ' ') {
+      start++;
+    }
+    while (start < end && property.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int length = end - start;
+    for (String value : valueArray) {
+      if (value.length() == length && property.regionMatches(start, value, 0, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public String toString() {
     return "[" + key + " = " + values + "]";
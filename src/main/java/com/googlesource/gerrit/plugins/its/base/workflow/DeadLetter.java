@@ -0,0 +1,45 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+/** An action that kept failing, and is kept in the {@link DeadLetterStore} for a later replay. */
+public class DeadLetter {
+  /** Identifier of the dead letter within the {@link DeadLetterStore}. */
+  public String id;
+
+  /** Whether the action was executed on an issue or on an ITS project. */
+  public ActionType type;
+
+  /** The issue id, or the name of the ITS project, the action was executed on. */
+  public String target;
+
+  /** The unparsed action request. */
+  public String action;
+
+  /** The properties the action was executed with. */
+  public Map<String, String> properties;
+
+  /** The number of times the action has been executed. */
+  public int attempts;
+
+  /** The message of the error the last execution failed with. */
+  public String error;
+
+  /** When the last execution failed. */
+  public Timestamp failedAt;
+}
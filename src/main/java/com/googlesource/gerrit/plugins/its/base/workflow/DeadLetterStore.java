@@ -0,0 +1,154 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.gerrit.json.OutputFormat;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores {@link DeadLetter}s as files in the plugin's data directory, so they survive restarts.
+ */
+@Singleton
+public class DeadLetterStore {
+  private static final Logger log = LoggerFactory.getLogger(DeadLetterStore.class);
+
+  private static final String DIRECTORY = "dead-letters";
+  private static final String SUFFIX = ".json";
+  private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f-]+");
+  private static final Gson GSON = OutputFormat.JSON.newGson();
+
+  private final Path dir;
+
+  @Inject
+  DeadLetterStore(@PluginData Path pluginData) {
+    this.dir = pluginData.resolve(DIRECTORY);
+  }
+
+  /**
+   * Adds a dead letter.
+   *
+   * @param deadLetter The dead letter to add. Its id has to consist of lower case hex digits and
+   *     dashes, as the ids generated by {@link java.util.UUID} do.
+   * @throws IOException if the dead letter could not be written.
+   */
+  public void add(DeadLetter deadLetter) throws IOException {
+    if (!isValidId(deadLetter.id)) {
+      throw new IllegalArgumentException("Invalid dead letter id " + deadLetter.id);
+    }
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, deadLetter.id, ".tmp");
+    try {
+      Files.write(tmp, GSON.toJson(deadLetter).getBytes(UTF_8));
+      Files.move(tmp, file(deadLetter.id), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Gets all dead letters.
+   *
+   * @return The dead letters, oldest first. Files that cannot be parsed are skipped.
+   * @throws IOException if the dead letters could not be read.
+   */
+  public List<DeadLetter> list() throws IOException {
+    if (!Files.isDirectory(dir)) {
+      return Collections.emptyList();
+    }
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String fileName = file.getFileName().toString();
+        read(fileName.substring(0, fileName.length() - SUFFIX.length()))
+            .ifPresent(deadLetters::add);
+      }
+    }
+    deadLetters.sort(
+        comparing((DeadLetter d) -> d.failedAt, nullsFirst(naturalOrder()))
+            .thenComparing(d -> d.id));
+    return deadLetters;
+  }
+
+  /**
+   * Gets a dead letter.
+   *
+   * @param id The id of the dead letter.
+   * @return The dead letter, or empty if there is no dead letter with that id.
+   * @throws IOException if the dead letter could not be read.
+   */
+  public Optional<DeadLetter> get(String id) throws IOException {
+    if (!isValidId(id)) {
+      return Optional.empty();
+    }
+    return read(id);
+  }
+
+  /**
+   * Removes a dead letter.
+   *
+   * @param id The id of the dead letter.
+   * @return true, if the dead letter got removed. false, if there was no such dead letter.
+   * @throws IOException if the dead letter could not be removed.
+   */
+  public boolean remove(String id) throws IOException {
+    return isValidId(id) && Files.deleteIfExists(file(id));
+  }
+
+  private Optional<DeadLetter> read(String id) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file(id), UTF_8)) {
+      DeadLetter deadLetter = GSON.fromJson(reader, DeadLetter.class);
+      if (deadLetter != null) {
+        deadLetter.id = id;
+      }
+      return Optional.ofNullable(deadLetter);
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (JsonParseException e) {
+      log.error("Skipping unparsable dead letter {}", file(id), e);
+      return Optional.empty();
+    }
+  }
+
+  private Path file(String id) {
+    return dir.resolve(id + SUFFIX);
+  }
+
+  private static boolean isValidId(String id) {
+    return id != null && ID_PATTERN.matcher(id).matches();
+  }
+}
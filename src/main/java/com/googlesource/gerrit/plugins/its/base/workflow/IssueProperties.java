@@ -0,0 +1,100 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The properties of a {@link com.google.gerrit.server.events.RefEvent} for a single issue.
+ *
+ * <p>The properties common to all issues of an event are shared between the issues, and only the
+ * issue id and the issue's associations are kept per issue. The associations are multi-valued,
+ * and are available through {@link #getValues(String)}.
+ *
+ * <p>For actions, this is an immutable {@code Map<String, String>} just like before. In this view,
+ * the associations are joined by spaces.
+ */
+public class IssueProperties extends AbstractMap<String, String> {
+  public static final String ISSUE = "issue";
+  public static final String ASSOCIATION = "association";
+
+  private final Map<String, String> common;
+  private final String issue;
+  private final Set<String> associations;
+
+  private String joinedAssociations;
+  private volatile Set<Entry<String, String>> entrySet;
+
+  /**
+   * @param common The properties shared by all issues of the event. The map is not copied, and
+   *     must not get modified afterwards.
+   * @param issue The issue id.
+   * @param associations Where the issue occurs (e.g.: "subject", "footer").
+   */
+  public IssueProperties(Map<String, String> common, String issue, Set<String> associations) {
+    this.common = common;
+    this.issue = issue;
+    this.associations = ImmutableSet.copyOf(associations);
+  }
+
+  /**
+   * Gets the values of a multi-valued property.
+   *
+   * @param key The key of the property.
+   * @return The values of the property, or {@code null}, if the property is not multi-valued.
+   *     Single-valued properties are available through {@link #get(Object)}.
+   */
+  public Collection<String> getValues(String key) {
+    return ASSOCIATION.equals(key) ? associations : null;
+  }
+
+  @Override
+  public String get(Object key) {
+    if (ISSUE.equals(key)) {
+      return issue;
+    }
+    if (ASSOCIATION.equals(key)) {
+      if (joinedAssociations == null) {
+        joinedAssociations = String.join(" ", associations);
+      }
+      return joinedAssociations;
+    }
+    return common.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return ISSUE.equals(key) || ASSOCIATION.equals(key) || common.containsKey(key);
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    Set<Entry<String, String>> ret = entrySet;
+    if (ret == null) {
+      Map<String, String> properties = new HashMap<>(common);
+      properties.put(ISSUE, issue);
+      properties.put(ASSOCIATION, get(ASSOCIATION));
+      ret = Collections.unmodifiableMap(properties).entrySet();
+      entrySet = ret;
+    }
+    return ret;
+  }
+}
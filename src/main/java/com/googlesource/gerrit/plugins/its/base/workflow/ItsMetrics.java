@@ -0,0 +1,181 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.Histogram1;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Metrics for the stages of processing an event.
+ *
+ * <p>The metric maker of a plugin prefixes metric names with {@code plugins/<plugin-name>/}, so
+ * the metrics of different its plugins do not collide.
+ */
+@Singleton
+public class ItsMetrics {
+  private final Timer1<String> eventLatency;
+  private final Counter1<String> eventsProcessed;
+  private final Histogram1<String> issuesPerEvent;
+  private final Timer0 propertyExtractionLatency;
+  private final Timer0 commitMessageFetchLatency;
+  private final Timer0 issueMatchingLatency;
+  private final Timer0 ruleEvaluationLatency;
+  private final Timer1<String> actionLatency;
+  private final Counter1<String> actionsFired;
+  private final Counter1<String> actionFailures;
+  private final Timer0 batchLatency;
+  private final Histogram0 batchSize;
+
+  @Inject
+  public ItsMetrics(MetricMaker metricMaker) {
+    Field<String> eventType =
+        Field.ofString("event_type", Metadata.Builder::eventType)
+            .description("The type of the event")
+            .build();
+    Field<String> actionName =
+        Field.ofString("action", Metadata.Builder::actionType)
+            .description("The name of the action")
+            .build();
+
+    eventLatency =
+        metricMaker.newTimer(
+            "events/latency",
+            new Description("Time to extract properties from an event and evaluate rules")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            eventType);
+    eventsProcessed =
+        metricMaker.newCounter(
+            "events/processed",
+            new Description("Events processed").setRate().setUnit("events"),
+            eventType);
+    issuesPerEvent =
+        metricMaker.newHistogram(
+            "events/issues",
+            new Description("Issues an event relates to").setCumulative().setUnit("issues"),
+            eventType);
+    propertyExtractionLatency =
+        metricMaker.newTimer(
+            "properties/latency",
+            new Description("Time to extract the properties of an event")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    commitMessageFetchLatency =
+        metricMaker.newTimer(
+            "issues/fetch_latency",
+            new Description("Time to read commit messages from the repository")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    issueMatchingLatency =
+        metricMaker.newTimer(
+            "issues/match_latency",
+            new Description("Time to match the issue pattern against commit messages")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    ruleEvaluationLatency =
+        metricMaker.newTimer(
+            "rules/latency",
+            new Description("Time to find the actions for a set of properties")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    actionLatency =
+        metricMaker.newTimer(
+            "actions/latency",
+            new Description("Time to execute an action")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            actionName);
+    actionsFired =
+        metricMaker.newCounter(
+            "actions/fired",
+            new Description("Actions executed").setRate().setUnit("actions"),
+            actionName);
+    actionFailures =
+        metricMaker.newCounter(
+            "actions/failures",
+            new Description("Actions that failed with an I/O error").setRate().setUnit("actions"),
+            actionName);
+    batchLatency =
+        metricMaker.newTimer(
+            "actions/batch_latency",
+            new Description("Time to send a batch of comments or field values to the ITS")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    batchSize =
+        metricMaker.newHistogram(
+            "actions/batch_size",
+            new Description("Actions whose comments or field values got sent in one batch")
+                .setCumulative()
+                .setUnit("actions"));
+  }
+
+  /** Starts timing the processing of an event. */
+  public Timer1.Context<String> startEvent(String eventType) {
+    return eventLatency.start(eventType);
+  }
+
+  /** Records that an event got processed. */
+  public void eventProcessed(String eventType, int issueCount) {
+    eventsProcessed.increment(eventType);
+    issuesPerEvent.record(eventType, issueCount);
+  }
+
+  /** Starts timing the extraction of properties from an event. */
+  public Timer0.Context startPropertyExtraction() {
+    return propertyExtractionLatency.start();
+  }
+
+  /** Starts timing the reading of a commit message. */
+  public Timer0.Context startCommitMessageFetch() {
+    return commitMessageFetchLatency.start();
+  }
+
+  /** Starts timing the matching of the issue pattern against a commit message. */
+  public Timer0.Context startIssueMatching() {
+    return issueMatchingLatency.start();
+  }
+
+  /** Starts timing the lookup of the actions for a set of properties. */
+  public Timer0.Context startRuleEvaluation() {
+    return ruleEvaluationLatency.start();
+  }
+
+  /** Starts timing the execution of an action, and records that the action got fired. */
+  public Timer1.Context<String> startAction(String actionName) {
+    actionsFired.increment(actionName);
+    return actionLatency.start(actionName);
+  }
+
+  /** Records that an action failed with an I/O error. */
+  public void actionFailed(String actionName) {
+    actionFailures.increment(actionName);
+  }
+
+  /** Starts timing the sending of a batch, and records the number of actions in the batch. */
+  public Timer0.Context startBatch(int actionCount) {
+    batchSize.record(actionCount);
+    return batchLatency.start();
+  }
+}
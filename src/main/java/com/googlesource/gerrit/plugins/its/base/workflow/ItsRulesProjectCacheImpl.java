@@ -26,33 +26,71 @@ import com.google.gerrit.server.project.ProjectState;
 import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.Singleton;
-import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
 import com.googlesource.gerrit.plugins.its.base.GlobalRulesFileName;
 import com.googlesource.gerrit.plugins.its.base.PluginRulesFileName;
+import com.googlesource.gerrit.plugins.its.base.util.ProjectConfigRevisions;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Caches the rules of projects.
+ *
+ * <p>As projects inherit the rules of their parents, cached rules are tagged with the revisions of
+ * the configurations of the project and all of its parents they got read from. Rules whose
+ * revisions are no longer current are re-read on lookup, so an update of a parent's configuration
+ * takes effect for all of its descendants without enumerating them.
+ */
 @Singleton
 public class ItsRulesProjectCacheImpl implements ItsRulesProjectCache {
   private static final Logger log = LoggerFactory.getLogger(ItsRulesProjectCacheImpl.class);
   private static final String CACHE_NAME = "its_rules_project";
 
-  private final LoadingCache<String, List<Rule>> cache;
+  /** The rules of a project, along with the revisions of the configurations they got read from. */
+  static class ProjectRules {
+    private final ImmutableList<ObjectId> revisions;
+    private final List<Rule> rules;
+
+    ProjectRules(ImmutableList<ObjectId> revisions, List<Rule> rules) {
+      this.revisions = revisions;
+      this.rules = rules;
+    }
+
+    ImmutableList<ObjectId> getRevisions() {
+      return revisions;
+    }
+
+    List<Rule> getRules() {
+      return rules;
+    }
+  }
+
+  private final LoadingCache<String, ProjectRules> cache;
+  private final ProjectCache projectCache;
 
   @Inject
-  ItsRulesProjectCacheImpl(@Named(CACHE_NAME) LoadingCache<String, List<Rule>> cache) {
+  ItsRulesProjectCacheImpl(
+      @Named(CACHE_NAME) LoadingCache<String, ProjectRules> cache, ProjectCache projectCache) {
     this.cache = cache;
+    this.projectCache = projectCache;
   }
 
   @Override
   public List<Rule> get(String projectName) {
     try {
-      return cache.get(projectName);
+      ProjectRules projectRules = cache.get(projectName);
+      ProjectState projectState = projectCache.get(Project.nameKey(projectName));
+      if (projectState != null
+          && !projectRules.getRevisions().equals(ProjectConfigRevisions.of(projectState))) {
+        cache.invalidate(projectName);
+        projectRules = cache.get(projectName);
+      }
+      return projectRules.getRules();
     } catch (ExecutionException e) {
       log.warn("Cannot get project specific rules for project {}", projectName, e);
       return ImmutableList.of();
@@ -68,7 +106,7 @@ public class ItsRulesProjectCacheImpl implements ItsRulesProjectCache {
     return new CacheModule() {
       @Override
       protected void configure() {
-        cache(CACHE_NAME, String.class, new TypeLiteral<List<Rule>>() {}).loader(Loader.class);
+        cache(CACHE_NAME, String.class, ProjectRules.class).loader(Loader.class);
 
         bind(ItsRulesProjectCacheImpl.class);
         bind(ItsRulesProjectCache.class).to(ItsRulesProjectCacheImpl.class);
@@ -78,7 +116,7 @@ public class ItsRulesProjectCacheImpl implements ItsRulesProjectCache {
     };
   }
 
-  static class Loader extends CacheLoader<String, List<Rule>> {
+  static class Loader extends CacheLoader<String, ProjectRules> {
     private final String globalRulesFileName;
     private final String pluginRulesFileName;
     private final ProjectCache projectCache;
@@ -97,8 +135,9 @@ public class ItsRulesProjectCacheImpl implements ItsRulesProjectCache {
     }
 
     @Override
-    public List<Rule> load(String projectName) throws IOException {
+    public ProjectRules load(String projectName) throws IOException {
       ProjectState project = projectCache.checkedGet(Project.nameKey(projectName));
+      ImmutableList<ObjectId> revisions = ProjectConfigRevisions.of(project);
       List<Rule> projectRules = readRulesFrom(project);
       if (projectRules.isEmpty()) {
         for (ProjectState parent : project.parents()) {
@@ -108,7 +147,7 @@ public class ItsRulesProjectCacheImpl implements ItsRulesProjectCache {
           }
         }
       }
-      return projectRules;
+      return new ProjectRules(revisions, projectRules);
     }
 
     private List<Rule> readRulesFrom(ProjectState project) {
@@ -1,23 +1,20 @@
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
 import com.google.gerrit.entities.RefNames;
-import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.common.ProjectInfo;
 import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
-import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.inject.Inject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * Evicts the cached rules of a project when its configuration gets updated.
+ *
+ * <p>Rules of descendants of the project do not need to be evicted, as {@link
+ * ItsRulesProjectCacheImpl} re-reads rules whose parent configurations changed on lookup.
+ */
 public class ItsRulesProjectCacheRefresher implements GitReferenceUpdatedListener {
-  private static final Logger log = LoggerFactory.getLogger(ItsRulesProjectCacheRefresher.class);
-
-  private final GerritApi gApi;
   private final ItsRulesProjectCache itsRuleProjectCache;
 
   @Inject
-  ItsRulesProjectCacheRefresher(GerritApi gApi, ItsRulesProjectCache itsRuleProjectCache) {
-    this.gApi = gApi;
+  ItsRulesProjectCacheRefresher(ItsRulesProjectCache itsRuleProjectCache) {
     this.itsRuleProjectCache = itsRuleProjectCache;
   }
 
@@ -26,14 +23,6 @@ public class ItsRulesProjectCacheRefresher implements GitReferenceUpdatedListene
     if (!event.getRefName().equals(RefNames.REFS_CONFIG)) {
       return;
     }
-    String projectName = event.getProjectName();
-    itsRuleProjectCache.evict(projectName);
-    try {
-      for (ProjectInfo childProject : gApi.projects().name(projectName).children()) {
-        itsRuleProjectCache.evict(childProject.name);
-      }
-    } catch (RestApiException e) {
-      log.warn("Unable to evict ITS rules cache", e);
-    }
+    itsRuleProjectCache.evict(event.getProjectName());
   }
 }
@@ -42,7 +42,8 @@ public class RefEventProperties {
 
   /**
    * @return Properties of the ref event added of the properties specific to the issues. There will
-   *     be as many set of properties as number of issues
+   *     be as many set of properties as number of issues. The properties of the issues are
+   *     typically {@link IssueProperties}, which share the properties of the ref event.
    */
   public Set<Map<String, String>> getIssuesProperties() {
     return issuesProperties;
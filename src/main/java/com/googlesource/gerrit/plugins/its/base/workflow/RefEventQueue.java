@@ -0,0 +1,194 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.events.RefEvent;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue decoupling the processing of {@link RefEvent}s from Gerrit's event dispatching.
+ *
+ * <p>Property extraction, rule evaluation and action execution for an event run on the queue's
+ * own threads, so a slow issue tracker does not stall the other event listeners.
+ */
+@Singleton
+public class RefEventQueue implements LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(RefEventQueue.class);
+
+  static final String POOL_SIZE_KEY = "eventThreads";
+  static final String QUEUE_DEPTH_KEY = "eventQueueDepth";
+  static final String OVERFLOW_POLICY_KEY = "eventQueueOverflowPolicy";
+
+  static final int DEFAULT_POOL_SIZE = 1;
+  static final int DEFAULT_QUEUE_DEPTH = 1000;
+
+  /** What to do with an event that arrives while the queue is full. */
+  public enum OverflowPolicy {
+    /** Process the event on the thread that dispatched it. */
+    CALLER_RUNS,
+    /** Drop the event that just arrived. */
+    DISCARD,
+    /** Drop the oldest queued event to make room for the one that just arrived. */
+    DISCARD_OLDEST
+  }
+
+  private final OneOffRequestContext requestContext;
+  private final ThreadPoolExecutor executor;
+  private final Counter0 rejected;
+
+  @Inject
+  RefEventQueue(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginCfgFactory,
+      OneOffRequestContext requestContext,
+      MetricMaker metricMaker) {
+    this.requestContext = requestContext;
+
+    PluginConfig cfg = pluginCfgFactory.getFromGerritConfig(pluginName);
+    int poolSize = cfg.getInt(POOL_SIZE_KEY, DEFAULT_POOL_SIZE);
+    int queueDepth = Math.max(1, cfg.getInt(QUEUE_DEPTH_KEY, DEFAULT_QUEUE_DEPTH));
+    OverflowPolicy overflowPolicy =
+        cfg.getEnum(OVERFLOW_POLICY_KEY, OverflowPolicy.CALLER_RUNS);
+
+    this.rejected =
+        metricMaker.newCounter(
+            "events/rejected",
+            new Description("Events that did not fit into the event queue").setRate());
+
+    if (poolSize > 0) {
+      this.executor =
+          new ThreadPoolExecutor(
+              poolSize,
+              poolSize,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(queueDepth),
+              new ThreadFactoryBuilder()
+                  .setNameFormat(pluginName + "-events-%d")
+                  .setDaemon(true)
+                  .build(),
+              rejectionHandler(overflowPolicy));
+    } else {
+      this.executor = null;
+    }
+
+    metricMaker.newCallbackMetric(
+        "events/queue_depth",
+        Integer.class,
+        new Description("Events waiting in the event queue").setGauge().setUnit("events"),
+        () -> executor != null ? executor.getQueue().size() : 0);
+  }
+
+  private RejectedExecutionHandler rejectionHandler(OverflowPolicy overflowPolicy) {
+    switch (overflowPolicy) {
+      case DISCARD:
+        return (task, pool) -> {
+          rejected.increment();
+          log.warn("Event queue is full. Discarding {}", task);
+        };
+      case DISCARD_OLDEST:
+        return (task, pool) -> {
+          rejected.increment();
+          if (!pool.isShutdown()) {
+            Runnable oldest = pool.getQueue().poll();
+            log.warn("Event queue is full. Discarding {}", oldest);
+            pool.execute(task);
+          }
+        };
+      case CALLER_RUNS:
+      default:
+        return (task, pool) -> {
+          rejected.increment();
+          if (!pool.isShutdown()) {
+            task.run();
+          }
+        };
+    }
+  }
+
+  /**
+   * Queues the processing of an event.
+   *
+   * @param event The event that is to be processed.
+   * @param task The processing of {@code event}.
+   */
+  public void submit(RefEvent event, Runnable task) {
+    EventTask eventTask = new EventTask(event, task);
+    if (executor == null) {
+      eventTask.run();
+    } else {
+      executor.execute(eventTask);
+    }
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+          log.warn("Dropping {} unprocessed events", executor.shutdownNow().size());
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private class EventTask implements Runnable {
+    private final RefEvent event;
+    private final Runnable task;
+
+    EventTask(RefEvent event, Runnable task) {
+      this.event = event;
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      try (ManualRequestContext ctx = requestContext.open()) {
+        task.run();
+      } catch (RuntimeException e) {
+        log.error("Failed to process " + this, e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return event.type + " event on " + event.getProjectNameKey().get() + " " + event.getRefName();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.server.config.ConfigResource;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * REST endpoint replaying actions from the {@link DeadLetterStore}.
+ *
+ * <p>Replayed actions are removed from the store and executed asynchronously. Should they fail
+ * again, they are retried and eventually end up in the store again.
+ */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+@Singleton
+public class ReplayDeadLetters
+    implements RestModifyView<ConfigResource, ReplayDeadLetters.Input> {
+  public static class Input {
+    /** Ids of the dead letters to replay. If empty, all dead letters get replayed. */
+    public List<String> ids;
+  }
+
+  private final DeadLetterStore deadLetters;
+  private final ActionRetries actionRetries;
+
+  @Inject
+  ReplayDeadLetters(DeadLetterStore deadLetters, ActionRetries actionRetries) {
+    this.deadLetters = deadLetters;
+    this.actionRetries = actionRetries;
+  }
+
+  @Override
+  public Response<List<String>> apply(ConfigResource resource, Input input)
+      throws IOException, UnprocessableEntityException {
+    List<DeadLetter> toReplay;
+    if (input == null || input.ids == null || input.ids.isEmpty()) {
+      toReplay = deadLetters.list();
+    } else {
+      toReplay = new ArrayList<>();
+      for (String id : input.ids) {
+        Optional<DeadLetter> deadLetter = deadLetters.get(id);
+        if (!deadLetter.isPresent()) {
+          throw new UnprocessableEntityException("Dead letter " + id + " not found");
+        }
+        toReplay.add(deadLetter.get());
+      }
+    }
+
+    List<String> replayed = new ArrayList<>();
+    for (DeadLetter deadLetter : toReplay) {
+      // Only the caller that removes a dead letter replays it, so concurrent calls do not execute
+      // an action twice.
+      if (deadLetters.remove(deadLetter.id)) {
+        actionRetries.replay(deadLetter);
+        replayed.add(deadLetter.id);
+      }
+    }
+    return Response.ok(replayed);
+  }
+}
@@ -45,6 +45,11 @@ public class Rule {
     return name;
   }
 
+  /** @return the conditions that have to be met for this rule's actions to fire. */
+  public Set<Condition> getConditions() {
+    return Collections.unmodifiableSet(conditions);
+  }
+
   /**
    * Adds a condition to the rule.
    *
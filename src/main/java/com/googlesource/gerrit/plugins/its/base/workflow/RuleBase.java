@@ -14,7 +14,9 @@
 
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.gerrit.metrics.Timer0;
 import com.google.inject.Inject;
 import com.googlesource.gerrit.plugins.its.base.GlobalRulesFileName;
 import com.googlesource.gerrit.plugins.its.base.ItsPath;
@@ -22,7 +24,6 @@ import com.googlesource.gerrit.plugins.its.base.PluginRulesFileName;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -39,8 +40,11 @@ public class RuleBase {
   private final File globalRuleFile;
   private final File itsSpecificRuleFile;
   private final ItsRulesProjectCache rulesProjectCache;
+  private final ItsMetrics metrics;
 
-  private Collection<Rule> rules;
+  private final RuleIndex rules;
+  private final Map<Collection<Rule>, RuleIndex> projectRules =
+      CacheBuilder.newBuilder().weakKeys().<Collection<Rule>, RuleIndex>build().asMap();
 
   public interface Factory {
     RuleBase create();
@@ -52,15 +56,18 @@ public class RuleBase {
       @GlobalRulesFileName String globalRulesFileName,
       @PluginRulesFileName String pluginRulesFileName,
       ItsRulesProjectCache rulesProjectCache,
-      RulesConfigReader rulesConfigReader) {
+      RulesConfigReader rulesConfigReader,
+      ItsMetrics metrics) {
     this.globalRuleFile = itsPath.resolve(globalRulesFileName).toFile();
     this.itsSpecificRuleFile = itsPath.resolve(pluginRulesFileName).toFile();
     this.rulesProjectCache = rulesProjectCache;
+    this.metrics = metrics;
     this.rules =
-        new ImmutableList.Builder<Rule>()
-            .addAll(getRulesFromFile(rulesConfigReader, globalRuleFile))
-            .addAll(getRulesFromFile(rulesConfigReader, itsSpecificRuleFile))
-            .build();
+        new RuleIndex(
+            new ImmutableList.Builder<Rule>()
+                .addAll(getRulesFromFile(rulesConfigReader, globalRuleFile))
+                .addAll(getRulesFromFile(rulesConfigReader, itsSpecificRuleFile))
+                .build());
   }
 
   /**
@@ -90,13 +97,26 @@ public class RuleBase {
   /**
    * Gets the action requests for a set of properties.
    *
+   * <p>Rules are looked up through a {@link RuleIndex}, so only rules that can match the
+   * properties get evaluated. Indexes of project specific rules are kept for as long as the {@link
+   * ItsRulesProjectCache} holds on to the rules.
+   *
    * @param properties The properties to search actions for.
    * @return Requests for the actions that should be fired.
    */
   public Collection<ActionRequest> actionRequestsFor(Map<String, String> properties) {
+    try (Timer0.Context ctx = metrics.startRuleEvaluation()) {
+      return lookUpActionRequestsFor(properties);
+    }
+  }
+
+  private Collection<ActionRequest> lookUpActionRequestsFor(Map<String, String> properties) {
     String projectName = properties.get("project");
     Collection<Rule> fromProjectConfig = rulesProjectCache.get(projectName);
-    Collection<Rule> rulesToAdd = !fromProjectConfig.isEmpty() ? fromProjectConfig : rules;
+    RuleIndex rulesToAdd =
+        !fromProjectConfig.isEmpty()
+            ? projectRules.computeIfAbsent(fromProjectConfig, RuleIndex::new)
+            : rules;
     if (rulesToAdd.isEmpty() && !globalRuleFile.exists() && !itsSpecificRuleFile.exists()) {
       log.warn(
           "Neither global rule file {} nor Its specific rule file {} exist and no rules are "
@@ -106,10 +126,6 @@ public class RuleBase {
           projectName);
       return Collections.emptyList();
     }
-    Collection<ActionRequest> actions = new ArrayList<>();
-    for (Rule rule : rulesToAdd) {
-      actions.addAll(rule.actionRequestsFor(properties));
-    }
-    return actions;
+    return rulesToAdd.actionRequestsFor(properties);
   }
 }
@@ -0,0 +1,184 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index over an ordered collection of {@link Rule}s.
+ *
+ * <p>A rule can only fire if all of its conditions are met. So each rule having a positive
+ * condition is indexed by the values of one of them, and only rules whose indexed condition is met
+ * by a set of properties get evaluated against it. Rules without positive conditions are evaluated
+ * for every set of properties.
+ *
+ * <p>For each rule, the positive condition on the key that most rules have positive conditions on
+ * gets indexed. This keeps the number of keys to look up low, as typically almost all rules
+ * condition on {@code event-type}.
+ */
+class RuleIndex {
+  /**
+   * The indexed rules. This is deliberately not the collection the index is built from, as that
+   * may serve as weak key for this index.
+   */
+  private final Rule[] rules;
+
+  /** Maps keys to values to the positions of the rules indexed by that key and value. */
+  private final Map<String, Map<String, BitSet>> index = new HashMap<>();
+
+  /** Positions of the rules that have no indexed condition. */
+  private final BitSet unindexed = new BitSet();
+
+  RuleIndex(Collection<Rule> rules) {
+    this.rules = rules.toArray(new Rule[0]);
+
+    Map<String, Integer> ruleCountByKey = new HashMap<>();
+    for (Rule rule : this.rules) {
+      for (Condition condition : rule.getConditions()) {
+        if (!condition.isNegated()) {
+          ruleCountByKey.merge(condition.getKey(), 1, Integer::sum);
+        }
+      }
+    }
+
+    for (int i = 0; i < this.rules.length; i++) {
+      Condition indexed = null;
+      for (Condition condition : this.rules[i].getConditions()) {
+        if (!condition.isNegated()
+            && (indexed == null
+                || ruleCountByKey.get(condition.getKey())
+                    > ruleCountByKey.get(indexed.getKey()))) {
+          indexed = condition;
+        }
+      }
+      if (indexed == null) {
+        unindexed.set(i);
+      } else {
+        Map<String, BitSet> byValue = index.computeIfAbsent(indexed.getKey(), k -> new HashMap<>());
+        for (String value : indexed.getValues()) {
+          byValue.computeIfAbsent(value, v -> new BitSet()).set(i);
+        }
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return rules.length == 0;
+  }
+
+  /**
+   * Gets the action requests for a set of properties.
+   *
+   * @param properties The properties to search actions for.
+   * @return Requests for the actions that should be fired, in the order of the rules.
+   */
+  Collection<ActionRequest> actionRequestsFor(Map<String, String> properties) {
+    BitSet candidates = (BitSet) unindexed.clone();
+    for (Map.Entry<String, Map<String, BitSet>> entry : index.entrySet()) {
+      String key = entry.getKey();
+      Map<String, BitSet> byValue = entry.getValue();
+      Collection<String> propertyValues =
+          properties instanceof IssueProperties
+              ? ((IssueProperties) properties).getValues(key)
+              : null;
+      if (propertyValues != null) {
+        if (propertyValues.isEmpty()) {
+          addCandidates(candidates, byValue, "", true);
+        }
+        int remaining = propertyValues.size();
+        for (String propertyValue : propertyValues) {
+          addCandidates(candidates, byValue, propertyValue, --remaining == 0);
+        }
+      } else {
+        String property = properties.get(key);
+        if (property != null) {
+          addCandidates(candidates, byValue, property, true);
+        }
+      }
+    }
+
+    Collection<ActionRequest> actions = new ArrayList<>();
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      actions.addAll(rules[i].actionRequestsFor(properties));
+    }
+    return actions;
+  }
+
+  /**
+   * Adds the rules indexed by the values of a property to the candidates.
+   *
+   * <p>Just like {@link Condition#isMetBy}, this scans the space separated values of the property
+   * in place instead of splitting it, so looking up the candidates does not allocate. Values that
+   * make up the whole property, as is typical, are looked up directly. Other values get compared to
+   * the indexed values.
+   *
+   * @param ignoreTrailingEmpty Whether trailing empty values get ignored. This is only false for
+   *     properties that are followed by further values of a multi-valued property.
+   */
+  private static void addCandidates(
+      BitSet candidates,
+      Map<String, BitSet> byValue,
+      String property,
+      boolean ignoreTrailingEmpty) {
+    int end = property.length();
+    if (ignoreTrailingEmpty && end > 0) {
+      while (end > 0 && property.charAt(end - 1) == ' ') {
+        end--;
+      }
+      if (end == 0) {
+        return;
+      }
+    }
+    int start = 0;
+    while (true) {
+      int valueEnd = property.indexOf(' ', start);
+      if (valueEnd < 0 || valueEnd > end) {
+        valueEnd = end;
+      }
+      BitSet matching = lookUp(byValue, property, start, valueEnd);
+      if (matching != null) {
+        candidates.or(matching);
+      }
+      if (valueEnd == end) {
+        return;
+      }
+      start = valueEnd + 1;
+    }
+  }
+
+  private static BitSet lookUp(Map<String, BitSet> byValue, String property, int start, int end) {
+    while (start < end && property.charAt(start) <= ' ') {
+      start++;
+    }
+    while (start < end && property.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    if (start == 0 && end == property.length()) {
+      return byValue.get(property);
+    }
+    int length = end - start;
+    for (Map.Entry<String, BitSet> entry : byValue.entrySet()) {
+      String value = entry.getKey();
+      if (value.length() == length && property.regionMatches(start, value, 0, length)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+}
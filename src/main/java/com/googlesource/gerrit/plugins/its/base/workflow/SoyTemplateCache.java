@@ -0,0 +1,127 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.google.inject.ProvisionException;
+import com.google.inject.Singleton;
+import com.google.template.soy.SoyFileSet;
+import com.google.template.soy.tofu.SoyTofu;
+import com.googlesource.gerrit.plugins.its.base.ItsPath;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the compiled Soy templates in {@code etc/its/templates}.
+ *
+ * <p>A template is compiled on first use and recompiled once the content of its file changes. On
+ * each use, only the modification time and size of the file are checked. The file is only read and
+ * hashed if they changed, and only recompiled if its content changed.
+ *
+ * <p>As modification times are coarse on some file systems, an edit right after the file got read
+ * might not change them. So files that got modified shortly before they got read are read again
+ * on each use until that time has passed.
+ */
+@Singleton
+public class SoyTemplateCache {
+  /** How long after its modification a file may still change without changing its stamp. */
+  private static final long RACY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+  private final Path templateDir;
+  private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+  @Inject
+  SoyTemplateCache(@ItsPath Path itsPath) {
+    this.templateDir = itsPath.resolve("templates");
+  }
+
+  /**
+   * Gets the compiled template for a name.
+   *
+   * @param template The name of the template, without the {@code .soy} extension.
+   * @return The compiled template.
+   * @throws ProvisionException if the template file cannot be read.
+   */
+  public SoyTofu get(String template) {
+    Path templatePath = templateDir.resolve(template + ".soy");
+    try {
+      long checkedAt = System.currentTimeMillis();
+      BasicFileAttributes attributes =
+          Files.readAttributes(templatePath, BasicFileAttributes.class);
+      CompiledTemplate cached = templates.get(template);
+      if (cached != null && cached.isCurrent(attributes)) {
+        return cached.tofu;
+      }
+      byte[] content = Files.readAllBytes(templatePath);
+      HashCode contentHash = Hashing.murmur3_128().hashBytes(content);
+      return templates
+          .compute(
+              template,
+              (name, current) ->
+                  new CompiledTemplate(
+                      contentHash,
+                      current != null && current.contentHash.equals(contentHash)
+                          ? current.tofu
+                          : compile(templatePath, content),
+                      attributes,
+                      checkedAt))
+          .tofu;
+    } catch (IOException err) {
+      templates.remove(template);
+      throw new ProvisionException(
+          "Failed to read template file " + templatePath.toAbsolutePath().toString(), err);
+    }
+  }
+
+  private static SoyTofu compile(Path templatePath, byte[] content) {
+    String source = new String(content, StandardCharsets.UTF_8);
+    return SoyFileSet.builder()
+        .add(source, templatePath.toAbsolutePath().toString())
+        .build()
+        .compileToTofu();
+  }
+
+  private static class CompiledTemplate {
+    private final HashCode contentHash;
+    private final SoyTofu tofu;
+    private final FileTime lastModified;
+    private final long size;
+    private final boolean racy;
+
+    CompiledTemplate(
+        HashCode contentHash, SoyTofu tofu, BasicFileAttributes attributes, long checkedAt) {
+      this.contentHash = contentHash;
+      this.tofu = tofu;
+      this.lastModified = attributes.lastModifiedTime();
+      this.size = attributes.size();
+      this.racy = lastModified.toMillis() > checkedAt - RACY_MILLIS;
+    }
+
+    boolean isCurrent(BasicFileAttributes attributes) {
+      return !racy
+          && lastModified.equals(attributes.lastModifiedTime())
+          && size == attributes.size();
+    }
+  }
+}
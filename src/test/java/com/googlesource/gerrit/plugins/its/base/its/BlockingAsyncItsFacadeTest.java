@@ -0,0 +1,76 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BlockingAsyncItsFacadeTest extends MockingTestCase {
+  private ItsFacade its;
+
+  public void testExists() throws IOException {
+    expect(its.exists("4711")).andReturn(true);
+    expect(its.exists("4712")).andReturn(false);
+
+    replayMocks();
+
+    AsyncItsFacade asyncIts = new BlockingAsyncItsFacade(its, MoreExecutors.directExecutor());
+    assertTrue(asyncIts.exists("4711").join());
+    assertFalse(asyncIts.exists("4712").join());
+  }
+
+  public void testFailure() throws IOException {
+    its.performAction("4711", "close");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+
+    replayMocks();
+
+    AsyncItsFacade asyncIts = new BlockingAsyncItsFacade(its, MoreExecutors.directExecutor());
+    assertFailsWith(IOException.class, asyncIts.performAction("4711", "close"));
+  }
+
+  public void testRejection() {
+    replayMocks();
+
+    Executor rejecting =
+        command -> {
+          throw new RejectedExecutionException();
+        };
+    AsyncItsFacade asyncIts = new BlockingAsyncItsFacade(its, rejecting);
+    assertFailsWith(RejectedExecutionException.class, asyncIts.addComment("4711", "comment"));
+  }
+
+  private void assertFailsWith(Class<? extends Exception> expected, CompletableFuture<?> future) {
+    try {
+      future.join();
+      fail("No exception thrown");
+    } catch (CompletionException e) {
+      assertEquals(expected, e.getCause().getClass());
+    }
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    its = createMock(ItsFacade.class);
+  }
+}
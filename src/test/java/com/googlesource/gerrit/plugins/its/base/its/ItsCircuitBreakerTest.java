@@ -0,0 +1,260 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.eclipse.jgit.lib.Config;
+
+public class ItsCircuitBreakerTest extends LoggingMockingTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+
+  private Injector injector;
+  private Config serverConfig;
+  private PluginConfigFactory pluginConfigFactory;
+  private ItsFacade its;
+
+  public void testCallsPassThrough() throws IOException {
+    expect(its.exists("4711")).andReturn(true);
+    its.addComment("4711", "comment");
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertTrue(circuitBreaker.call(its, PROJECT, () -> its.exists("4711")));
+    circuitBreaker.run(its, PROJECT, () -> its.addComment("4711", "comment"));
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  public void testOpensAfterConsecutiveFailures() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 2);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "1h");
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    its.addComment("4711", "comment 2");
+    expectLastCall().andThrow(new IOException("injected exception 2"));
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 2"));
+    assertEquals(ItsCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertLogMessageContains("Opening circuit after 2 failed calls");
+
+    assertFailsWith(
+        CircuitOpenException.class, circuitBreaker, () -> its.addComment("4711", "comment 3"));
+  }
+
+  public void testSuccessResetsFailures() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 2);
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    its.addComment("4711", "comment 2");
+    its.addComment("4711", "comment 3");
+    expectLastCall().andThrow(new IOException("injected exception 3"));
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    circuitBreaker.run(its, PROJECT, () -> its.addComment("4711", "comment 2"));
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 3"));
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  public void testClosesAfterSuccessfulProbe() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 1);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "0");
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    expect(its.healthCheck(ItsFacade.Check.SYSINFO)).andReturn("ok");
+    its.addComment("4711", "comment 2");
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    assertEquals(ItsCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    circuitBreaker.run(its, PROJECT, () -> its.addComment("4711", "comment 2"));
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertLogMessageContains("Opening circuit after 1 failed calls");
+    assertLogMessageContains("Closing circuit as the health check succeeded");
+  }
+
+  public void testStaysOpenAfterFailedProbe() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 1);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "0");
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    expect(its.healthCheck(ItsFacade.Check.SYSINFO)).andThrow(new IOException("unreachable"));
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    assertFailsWith(
+        CircuitOpenException.class, circuitBreaker, () -> its.addComment("4711", "comment 2"));
+    assertEquals(ItsCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertLogMessageContains("Opening circuit after 1 failed calls");
+  }
+
+  public void testDisabled() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 0);
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    its.addComment("4711", "comment 2");
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    circuitBreaker.run(its, PROJECT, () -> its.addComment("4711", "comment 2"));
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  public void testFacadesOfOneServerShareCircuit() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 1);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "1h");
+
+    // Factories may build a new facade on each lookup.
+    ItsFacade otherIts = createMock(ItsFacade.class);
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    try {
+      circuitBreaker.run(otherIts, PROJECT, () -> otherIts.addComment("4711", "comment 2"));
+      fail("No exception thrown");
+    } catch (CircuitOpenException e) {
+      // expected
+    }
+    assertLogMessageContains("Opening circuit after 1 failed calls");
+  }
+
+  public void testServersHaveOwnCircuits() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 1);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "1h");
+
+    its.addComment("4711", "comment 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    its.addComment("42", "comment 2");
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertFailsWith(IOException.class, circuitBreaker, () -> its.addComment("4711", "comment 1"));
+    circuitBreaker.run(
+        its, Project.nameKey("otherProject"), () -> its.addComment("42", "comment 2"));
+    assertLogMessageContains("Opening circuit after 1 failed calls");
+  }
+
+  public void testCallAsync() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsCircuitBreaker.FAILURE_THRESHOLD_KEY, 1);
+    serverConfig.setString("plugin", "ItsTestName", ItsCircuitBreaker.OPEN_DURATION_KEY, "1h");
+
+    replayMocks();
+
+    ItsCircuitBreaker circuitBreaker = createCircuitBreaker();
+    assertTrue(
+        circuitBreaker
+            .callAsync(its, PROJECT, () -> CompletableFuture.completedFuture(true))
+            .join());
+
+    CompletableFuture<Boolean> failing = new CompletableFuture<>();
+    CompletableFuture<Boolean> result = circuitBreaker.callAsync(its, PROJECT, () -> failing);
+    assertEquals(ItsCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    failing.completeExceptionally(new IOException("injected exception 1"));
+    assertTrue(result.isCompletedExceptionally());
+    assertEquals(ItsCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    CompletableFuture<Boolean> shortCircuited =
+        circuitBreaker.callAsync(its, PROJECT, () -> CompletableFuture.completedFuture(true));
+    try {
+      shortCircuited.join();
+      fail("No exception thrown");
+    } catch (CompletionException e) {
+      assertEquals(CircuitOpenException.class, ItsCircuitBreaker.unwrap(e).getClass());
+    }
+    assertLogMessageContains("Opening circuit after 1 failed calls");
+  }
+
+  private void assertFailsWith(
+      Class<? extends IOException> expected,
+      ItsCircuitBreaker circuitBreaker,
+      ItsCircuitBreaker.VoidItsCall call) {
+    try {
+      circuitBreaker.run(its, PROJECT, call);
+      fail("No exception thrown");
+    } catch (IOException e) {
+      assertEquals(expected, e.getClass());
+    }
+  }
+
+  private ItsCircuitBreaker createCircuitBreaker() {
+    return injector.getInstance(ItsCircuitBreaker.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      its = createMock(ItsFacade.class);
+      bind(ItsFacade.class).toInstance(its);
+
+      // Keeps the default server id, i.e.: one server per project.
+      bind(ItsFacadeFactory.class).toInstance(project -> its);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import static org.easymock.EasyMock.expect;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.Config;
+
+public class ItsConcurrencyLimiterTest extends LoggingMockingTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+
+  private Injector injector;
+  private Config serverConfig;
+  private PluginConfigFactory pluginConfigFactory;
+  private ItsFacade its;
+
+  public void testCallsPassThrough() throws IOException {
+    replayMocks();
+
+    ItsConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+    assertEquals("result", concurrencyLimiter.call(PROJECT, () -> "result"));
+  }
+
+  public void testLimitsConcurrentCalls() throws Exception {
+    serverConfig.setInt("plugin", "ItsTestName", ItsConcurrencyLimiter.MAX_CONCURRENT_CALLS_KEY, 2);
+
+    replayMocks();
+
+    ItsConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    CountDownLatch done = new CountDownLatch(32);
+    for (int i = 0; i < 32; i++) {
+      pool.execute(
+          () -> {
+            try {
+              concurrencyLimiter.run(
+                  PROJECT,
+                  () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                      Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                  });
+            } catch (IOException e) {
+              fail("Unexpected exception " + e);
+            }
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    pool.shutdown();
+    assertEquals(2, maxRunning.get());
+  }
+
+  public void testAsyncCallHoldsPermitUntilCompletion() throws Exception {
+    serverConfig.setInt("plugin", "ItsTestName", ItsConcurrencyLimiter.MAX_CONCURRENT_CALLS_KEY, 1);
+
+    replayMocks();
+
+    ItsConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+    CompletableFuture<Boolean> pending = new CompletableFuture<>();
+    CompletableFuture<Boolean> first = concurrencyLimiter.callAsync(PROJECT, () -> pending);
+
+    CompletableFuture<Boolean> done = CompletableFuture.completedFuture(true);
+    CompletableFuture<CompletableFuture<Boolean>> second =
+        CompletableFuture.supplyAsync(() -> concurrencyLimiter.callAsync(PROJECT, () -> done));
+    Thread.sleep(50);
+    assertFalse(second.isDone());
+
+    pending.complete(false);
+    assertFalse(first.join());
+    assertTrue(second.get(10, TimeUnit.SECONDS).join());
+  }
+
+  public void testProjectsOfOneServerSharePermits() throws Exception {
+    serverConfig.setInt("plugin", "ItsTestName", ItsConcurrencyLimiter.MAX_CONCURRENT_CALLS_KEY, 1);
+
+    replayMocks();
+
+    ItsConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+    CompletableFuture<Boolean> pending = new CompletableFuture<>();
+    CompletableFuture<Boolean> first = concurrencyLimiter.callAsync(PROJECT, () -> pending);
+
+    CompletableFuture<Boolean> done = CompletableFuture.completedFuture(true);
+    CompletableFuture<CompletableFuture<Boolean>> second =
+        CompletableFuture.supplyAsync(
+            () -> concurrencyLimiter.callAsync(Project.nameKey("otherProject"), () -> done));
+    Thread.sleep(50);
+    assertFalse(second.isDone());
+
+    pending.complete(false);
+    assertFalse(first.join());
+    assertTrue(second.get(10, TimeUnit.SECONDS).join());
+  }
+
+  public void testFailedCallReleasesPermit() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ItsConcurrencyLimiter.MAX_CONCURRENT_CALLS_KEY, 1);
+
+    replayMocks();
+
+    ItsConcurrencyLimiter concurrencyLimiter = createConcurrencyLimiter();
+    try {
+      concurrencyLimiter.run(
+          PROJECT,
+          () -> {
+            throw new IOException("injected exception 1");
+          });
+      fail("No exception thrown");
+    } catch (IOException e) {
+      assertEquals("injected exception 1", e.getMessage());
+    }
+    assertEquals("result", concurrencyLimiter.call(PROJECT, () -> "result"));
+  }
+
+  private ItsConcurrencyLimiter createConcurrencyLimiter() {
+    return injector.getInstance(ItsConcurrencyLimiter.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      its = createMock(ItsFacade.class);
+      bind(ItsFacade.class).toInstance(its);
+      bind(ItsFacadeFactory.class).to(SingleItsServer.class);
+    }
+  }
+}
@@ -14,13 +14,18 @@
 
 package com.googlesource.gerrit.plugins.its.base.its;
 
-import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
 
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.server.config.ConfigUpdatedEvent;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
@@ -33,6 +38,7 @@ import com.google.gerrit.server.events.PatchSetCreatedEvent;
 import com.google.gerrit.server.events.RefEvent;
 import com.google.gerrit.server.events.RefUpdatedEvent;
 import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectConfig;
 import com.google.gerrit.server.project.ProjectState;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -41,6 +47,7 @@ import com.googlesource.gerrit.plugins.its.base.validation.ItsAssociationPolicy;
 import java.util.Arrays;
 import java.util.Optional;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 
 public class ItsConfigTest extends LoggingMockingTestCase {
   private Injector injector;
@@ -51,7 +58,10 @@ public class ItsConfigTest extends LoggingMockingTestCase {
 
   public void setupIsEnabled(
       String enabled, String itsProject, String parentEnabled, String[] branches) {
-    ProjectState projectState = createMock(ProjectState.class);
+    ProjectState projectState =
+        createProjectState(
+            newPluginConfig(enabled, itsProject, null),
+            newPluginConfig(enabled, null, branches));
 
     expect(projectCache.get(Project.nameKey("testProject"))).andReturn(projectState).anyTimes();
     expect(projectCache.get(Project.nameKey("parentProject"))).andReturn(projectState).anyTimes();
@@ -60,48 +70,47 @@ public class ItsConfigTest extends LoggingMockingTestCase {
     if (parentEnabled == null) {
       parents = Arrays.asList(projectState);
     } else {
-      ProjectState parentProjectState = createMock(ProjectState.class);
-
-      PluginConfig parentPluginConfig = createMock(PluginConfig.class);
-
-      expect(pluginConfigFactory.getFromProjectConfig(parentProjectState, "ItsTestName"))
-          .andReturn(parentPluginConfig);
-
-      expect(parentPluginConfig.getString("enabled", "false")).andReturn(parentEnabled).anyTimes();
-
-      PluginConfig parentPluginConfigWI = createMock(PluginConfig.class);
-
-      expect(
-              pluginConfigFactory.getFromProjectConfigWithInheritance(
-                  parentProjectState, "ItsTestName"))
-          .andReturn(parentPluginConfigWI)
-          .anyTimes();
-
       String[] parentBranches = {"refs/heads/testBranch"};
-      expect(parentPluginConfigWI.getStringList("branch")).andReturn(parentBranches).anyTimes();
+      ProjectState parentProjectState =
+          createProjectState(
+              newPluginConfig(parentEnabled, null, null),
+              newPluginConfig(parentEnabled, null, parentBranches));
 
       parents = Arrays.asList(parentProjectState, projectState);
     }
     expect(projectState.treeInOrder()).andReturn(parents).anyTimes();
+  }
+
+  private ProjectState createProjectState(PluginConfig pluginConfig, PluginConfig pluginConfigWI) {
+    ProjectState projectState = createMock(ProjectState.class);
+    ProjectConfig projectConfig = createMock(ProjectConfig.class);
 
-    PluginConfig pluginConfig = createMock(PluginConfig.class);
+    expect(projectState.getNameKey()).andReturn(Project.nameKey("testProject")).anyTimes();
+    expect(projectState.getCommentLinks()).andReturn(ImmutableList.of()).anyTimes();
+    expect(projectState.getConfig()).andReturn(projectConfig).anyTimes();
+    expect(projectConfig.getRevision()).andReturn(ObjectId.zeroId()).anyTimes();
 
     expect(pluginConfigFactory.getFromProjectConfig(projectState, "ItsTestName"))
         .andReturn(pluginConfig)
         .anyTimes();
-
-    expect(pluginConfig.getString("enabled", "false")).andReturn(enabled).anyTimes();
-    expect(pluginConfig.getString(eq("its-project"))).andReturn(itsProject).anyTimes();
-
-    PluginConfig pluginConfigWI = createMock(PluginConfig.class);
-
     expect(pluginConfigFactory.getFromProjectConfigWithInheritance(projectState, "ItsTestName"))
         .andReturn(pluginConfigWI)
         .anyTimes();
+    return projectState;
+  }
 
-    expect(pluginConfigWI.getString("enabled", "false")).andReturn(enabled).anyTimes();
-
-    expect(pluginConfigWI.getStringList("branch")).andReturn(branches).anyTimes();
+  private PluginConfig newPluginConfig(String enabled, String itsProject, String[] branches) {
+    Config cfg = new Config();
+    if (enabled != null) {
+      cfg.setString("plugin", "ItsTestName", "enabled", enabled);
+    }
+    if (itsProject != null) {
+      cfg.setString("plugin", "ItsTestName", "its-project", itsProject);
+    }
+    if (branches != null) {
+      cfg.setStringList("plugin", "ItsTestName", "branch", Arrays.asList(branches));
+    }
+    return new PluginConfig("ItsTestName", cfg);
   }
 
   public void testIsEnabledRefNoParentNoBranchEnabled() {
@@ -505,6 +514,29 @@ public class ItsConfigTest extends LoggingMockingTestCase {
     assertEquals("itsProject", itsProjectName.get());
   }
 
+  public void testServerWideConfigIsRebuiltOnGerritConfigReload() {
+    ItsConfig itsConfig = createItsConfig();
+
+    expect(serverConfig.getString("plugin", "ItsTestName", "commentlink"))
+        .andReturn("foo")
+        .once()
+        .andReturn("bar")
+        .once();
+
+    replayMocks();
+
+    assertEquals("foo", itsConfig.getCommentLinkName());
+    assertEquals("foo", itsConfig.getCommentLinkName());
+
+    Config newConfig = new Config();
+    newConfig.setString("plugin", "ItsTestName", "commentlink", "bar");
+    injector
+        .getInstance(ItsProjectConfigCache.class)
+        .configUpdated(new ConfigUpdatedEvent(new Config(), newConfig));
+
+    assertEquals("bar", itsConfig.getCommentLinkName());
+  }
+
   public void testGetIssuePatternNullMatch() {
     ItsConfig itsConfig = createItsConfig();
 
@@ -542,6 +574,9 @@ public class ItsConfigTest extends LoggingMockingTestCase {
     expect(serverConfig.getString("commentlink", "ItsTestName", "match"))
         .andReturn("TestPattern")
         .atLeastOnce();
+    expect(serverConfig.getInt("plugin", "ItsTestName", "commentlinkGroupIndex", 1))
+        .andReturn(1)
+        .atLeastOnce();
 
     replayMocks();
 
@@ -560,6 +595,9 @@ public class ItsConfigTest extends LoggingMockingTestCase {
     expect(serverConfig.getString("commentlink", "foo", "match"))
         .andReturn("TestPattern")
         .atLeastOnce();
+    expect(serverConfig.getInt("plugin", "ItsTestName", "commentlinkGroupIndex", 1))
+        .andReturn(1)
+        .atLeastOnce();
 
     replayMocks();
 
@@ -569,6 +607,88 @@ public class ItsConfigTest extends LoggingMockingTestCase {
         itsConfig.getIssuePattern().pattern());
   }
 
+  public void testGetCompiledIssuePatternIsCached() {
+    ItsConfig itsConfig = createItsConfig();
+
+    expect(serverConfig.getString("plugin", "ItsTestName", "commentlink"))
+        .andReturn(null)
+        .atLeastOnce();
+    expect(serverConfig.getString("commentlink", "ItsTestName", "match"))
+        .andReturn("(foo)(bar)(baz)")
+        .once();
+    expect(serverConfig.getInt("plugin", "ItsTestName", "commentlinkGroupIndex", 1))
+        .andReturn(2)
+        .once();
+
+    replayMocks();
+
+    IssuePattern issuePattern = itsConfig.getCompiledIssuePattern();
+    assertEquals("(foo)(bar)(baz)", issuePattern.getPattern().pattern());
+    assertEquals(2, issuePattern.getGroupIndex());
+    assertSame(issuePattern, itsConfig.getCompiledIssuePattern());
+    assertEquals(2, itsConfig.getIssuePatternGroupIndex());
+  }
+
+  public void testGetProjectConfig() {
+    String[] branches = {"refs/heads/testBranch"};
+    setupIsEnabled("true", "itsProject", null, branches);
+
+    ItsConfig itsConfig = createItsConfig();
+
+    replayMocks();
+
+    ItsProjectConfig projectConfig = itsConfig.getProjectConfig(Project.nameKey("testProject"));
+    assertEquals(Project.nameKey("testProject"), projectConfig.getProjectName());
+    assertTrue(projectConfig.isEnabled("refs/heads/testBranch"));
+    assertFalse(projectConfig.isEnabled("refs/heads/otherBranch"));
+    assertEquals("itsProject", projectConfig.getItsProjectName().get());
+    assertEquals("ItsTestName", projectConfig.getCommentLinkName());
+    assertSame(projectConfig, itsConfig.getProjectConfig(Project.nameKey("testProject")));
+  }
+
+  public void testGetProjectConfigRebuiltOnConfigUpdate() {
+    Project.NameKey projectNK = Project.nameKey("testProject");
+    ProjectState projectState = createMock(ProjectState.class);
+    ProjectConfig projectConfig = createMock(ProjectConfig.class);
+    expect(projectCache.get(projectNK)).andReturn(projectState).anyTimes();
+    expect(projectState.getNameKey()).andReturn(projectNK).anyTimes();
+    expect(projectState.treeInOrder()).andReturn(Arrays.asList(projectState)).anyTimes();
+    expect(projectState.getCommentLinks()).andReturn(ImmutableList.of()).anyTimes();
+    expect(projectState.getConfig()).andReturn(projectConfig).anyTimes();
+    expect(projectConfig.getRevision())
+        .andReturn(ObjectId.fromString("1234567891123456789212345678931234567894"))
+        .times(2)
+        .andReturn(ObjectId.fromString("4321567891123456789212345678931234567894"))
+        .anyTimes();
+    expect(pluginConfigFactory.getFromProjectConfig(projectState, "ItsTestName"))
+        .andReturn(newPluginConfig("true", null, null))
+        .anyTimes();
+    Config suggested = new Config();
+    suggested.setString("plugin", "ItsTestName", "association", "SUGGESTED");
+    Config mandatory = new Config();
+    mandatory.setString("plugin", "ItsTestName", "association", "MANDATORY");
+    mandatory.setString("plugin", "ItsTestName", "rateLimit", "2.5");
+    expect(pluginConfigFactory.getFromProjectConfigWithInheritance(projectState, "ItsTestName"))
+        .andReturn(new PluginConfig("ItsTestName", suggested))
+        .once()
+        .andReturn(new PluginConfig("ItsTestName", mandatory))
+        .once();
+
+    ItsConfig itsConfig = createItsConfig();
+
+    replayMocks();
+
+    assertEquals(
+        ItsAssociationPolicy.SUGGESTED,
+        itsConfig.getProjectConfig(projectNK).getItsAssociationPolicy());
+    ItsProjectConfig cached = itsConfig.getProjectConfig(projectNK);
+    assertEquals(ItsAssociationPolicy.SUGGESTED, cached.getItsAssociationPolicy());
+    assertEquals(0.0, cached.getRateLimit(), 0);
+    ItsProjectConfig rebuilt = itsConfig.getProjectConfig(projectNK);
+    assertEquals(ItsAssociationPolicy.MANDATORY, rebuilt.getItsAssociationPolicy());
+    assertEquals(2.5, rebuilt.getRateLimit(), 0);
+  }
+
   public void testGetIssuePatternGroupIndexGroupDefault() {
     ItsConfig itsConfig = createItsConfig();
 
@@ -834,6 +954,16 @@ public class ItsConfigTest extends LoggingMockingTestCase {
   public void setUp() throws Exception {
     super.setUp();
     injector = Guice.createInjector(new TestModule());
+
+    // Snapshots read all of their settings, so settings a test does not care about fall back to
+    // their defaults.
+    expect(serverConfig.getString(anyString(), anyString(), anyString())).andStubReturn(null);
+    expect(serverConfig.getInt(anyString(), anyString(), anyString(), anyInt()))
+        .andStubAnswer(() -> (Integer) getCurrentArguments()[3]);
+    expect(
+            serverConfig.getEnum(
+                anyString(), anyString(), anyString(), anyObject(ItsAssociationPolicy.class)))
+        .andStubAnswer(() -> (ItsAssociationPolicy) getCurrentArguments()[3]);
   }
 
   private class TestModule extends FactoryModule {
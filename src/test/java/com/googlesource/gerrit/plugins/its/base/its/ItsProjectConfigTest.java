@@ -0,0 +1,93 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Project;
+import com.googlesource.gerrit.plugins.its.base.validation.ItsAssociationPolicy;
+import java.util.List;
+import java.util.Optional;
+import junit.framework.TestCase;
+
+public class ItsProjectConfigTest extends TestCase {
+  public void testEnabledForAllBranches() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(true, ImmutableList.of(), ImmutableList.of());
+
+    assertTrue(projectConfig.isEnabled("refs/heads/master"));
+    assertTrue(projectConfig.isEnabled("refs/heads/stable/3.2"));
+  }
+
+  public void testEnabledForBranches() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(
+            true,
+            ImmutableList.of("refs/heads/master", "refs/heads/stable/*", "^refs/heads/feature-.*"),
+            ImmutableList.of());
+
+    assertTrue(projectConfig.isEnabled("refs/heads/master"));
+    assertTrue(projectConfig.isEnabled("refs/heads/stable/3.2"));
+    assertTrue(projectConfig.isEnabled("refs/heads/feature-foo"));
+    assertFalse(projectConfig.isEnabled("refs/heads/other"));
+  }
+
+  public void testDisabled() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(false, ImmutableList.of(), ImmutableList.of());
+
+    assertFalse(projectConfig.isEnabled("refs/heads/master"));
+  }
+
+  public void testEnforced() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(
+            false,
+            ImmutableList.of(),
+            ImmutableList.of(ImmutableList.of("refs/heads/other"), ImmutableList.of()));
+
+    assertTrue(projectConfig.isEnabled("refs/heads/master"));
+  }
+
+  public void testEnforcedForBranches() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(
+            false, ImmutableList.of(), ImmutableList.of(ImmutableList.of("refs/heads/master")));
+
+    assertTrue(projectConfig.isEnabled("refs/heads/master"));
+    assertFalse(projectConfig.isEnabled("refs/heads/other"));
+  }
+
+  public void testInvalidBranchesMatchNoBranch() {
+    ItsProjectConfig projectConfig =
+        createProjectConfig(true, ImmutableList.of("master", "^refs/heads/("), ImmutableList.of());
+
+    assertFalse(projectConfig.isEnabled("refs/heads/master"));
+  }
+
+  private ItsProjectConfig createProjectConfig(
+      boolean enabled, List<String> branches, List<? extends List<String>> enforcedBranches) {
+    return new ItsProjectConfig(
+        Project.nameKey("testProject"),
+        enabled,
+        branches,
+        enforcedBranches,
+        "ItsTestName",
+        null,
+        Optional.empty(),
+        ItsAssociationPolicy.OPTIONAL,
+        Optional.empty(),
+        0);
+  }
+}
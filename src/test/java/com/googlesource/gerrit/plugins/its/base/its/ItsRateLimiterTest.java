@@ -0,0 +1,158 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.its;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+
+public class ItsRateLimiterTest extends LoggingMockingTestCase {
+  private Injector injector;
+  private Config serverConfig;
+  private double projectRate;
+  private PluginConfigFactory pluginConfigFactory;
+  private ItsConfig itsConfig;
+  private ItsFacade its;
+
+  private Project.NameKey project = Project.nameKey("testProject");
+
+  public void testUnlimited() {
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    long waited = timeAcquires(rateLimiter, 100);
+    assertTrue(waited < TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public void testGlobalLimit() {
+    serverConfig.setString("plugin", "ItsTestName", ItsRateLimiter.RATE_LIMIT_KEY, "10");
+
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    // The first permit is available right away, the other two come 100 ms apart.
+    long waited = timeAcquires(rateLimiter, 3);
+    assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  public void testProjectLimit() {
+    projectRate = 10;
+
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    long waited = timeAcquires(rateLimiter, 3);
+    assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  public void testProjectLimitDoesNotApplyToOtherProjects() {
+    projectRate = 1;
+
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    long start = System.nanoTime();
+    rateLimiter.acquire(project);
+    rateLimiter.acquire(null);
+    rateLimiter.acquire(null);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public void testGlobalLimitIsSharedByProjectsOfOneServer() {
+    serverConfig.setString("plugin", "ItsTestName", ItsRateLimiter.RATE_LIMIT_KEY, "10");
+
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    long start = System.nanoTime();
+    rateLimiter.acquire(project);
+    rateLimiter.acquire(Project.nameKey("otherProject"));
+    rateLimiter.acquire(null);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  public void testInvalidLimitIsIgnored() {
+    serverConfig.setString("plugin", "ItsTestName", ItsRateLimiter.RATE_LIMIT_KEY, "fast");
+
+    replayMocks();
+
+    ItsRateLimiter rateLimiter = createRateLimiter();
+    long waited = timeAcquires(rateLimiter, 100);
+    assertTrue(waited < TimeUnit.SECONDS.toNanos(1));
+    assertLogMessageContains("Ignoring invalid rateLimit 'fast'");
+  }
+
+  private long timeAcquires(ItsRateLimiter rateLimiter, int count) {
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      rateLimiter.acquire(project);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private ItsRateLimiter createRateLimiter() {
+    return injector.getInstance(ItsRateLimiter.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    projectRate = 0;
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+    ItsProjectConfig projectConfig = createMock(ItsProjectConfig.class);
+    expect(projectConfig.getRateLimit()).andAnswer(() -> projectRate).anyTimes();
+    ItsProjectConfig otherProjectConfig = createMock(ItsProjectConfig.class);
+    expect(otherProjectConfig.getRateLimit()).andStubReturn(0.0);
+    expect(itsConfig.getProjectConfig(eq(project))).andReturn(projectConfig).anyTimes();
+    expect(itsConfig.getProjectConfig(anyObject(Project.NameKey.class)))
+        .andStubReturn(otherProjectConfig);
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      itsConfig = createMock(ItsConfig.class);
+      bind(ItsConfig.class).toInstance(itsConfig);
+
+      its = createMock(ItsFacade.class);
+      bind(ItsFacade.class).toInstance(its);
+      bind(ItsFacadeFactory.class).to(SingleItsServer.class);
+    }
+  }
+}
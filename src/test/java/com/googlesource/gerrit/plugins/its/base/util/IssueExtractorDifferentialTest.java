@@ -0,0 +1,187 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import static java.util.Arrays.copyOfRange;
+import static org.easymock.EasyMock.expect;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor.PatchSetDb;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the commit message parsing of {@link IssueExtractor} against the straightforward
+ * split-based parsing on random commit messages.
+ */
+public class IssueExtractorDifferentialTest extends MockingTestCase {
+  private static final String[] TOKENS = {
+    "bug#1", "bug#23", "Bug: ", "Tag: ", "x", ":", " ", "\n", "\n", "\n\n", "bug#", "#4"
+  };
+
+  private Injector injector;
+  private ItsConfig itsConfig;
+
+  public void testPlainPattern() {
+    assertSameIssues(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1));
+  }
+
+  public void testAnchoredPattern() {
+    assertSameIssues(new IssuePattern(Pattern.compile("^bug#(\\d+)$"), 1));
+  }
+
+  public void testMultilinePattern() {
+    assertSameIssues(new IssuePattern(Pattern.compile("(?m)^bug#(\\d+)$"), 1));
+  }
+
+  public void testWordBoundaryPattern() {
+    assertSameIssues(new IssuePattern(Pattern.compile("\\bbug#(\\d+)\\b"), 1));
+  }
+
+  public void testLookaroundPattern() {
+    assertSameIssues(new IssuePattern(Pattern.compile("(?<!x)bug#(\\d+)(?!\\d)"), 1));
+  }
+
+  private void assertSameIssues(IssuePattern issuePattern) {
+    ItsProjectConfig projectConfig = createMock(ItsProjectConfig.class);
+    expect(itsConfig.getProjectConfig(Project.nameKey("testProject")))
+        .andReturn(projectConfig)
+        .anyTimes();
+    expect(projectConfig.getIssuePattern()).andReturn(issuePattern).anyTimes();
+
+    replayMocks();
+
+    IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
+    Random random = new Random(4711);
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder message = new StringBuilder();
+      int tokenCount = random.nextInt(40);
+      for (int j = 0; j < tokenCount; j++) {
+        message.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      String commitMessage = message.toString();
+
+      Map<String, Set<String>> expected = Maps.newHashMap();
+      try {
+        addIssueIdsBySplitting(expected, commitMessage, issuePattern);
+      } catch (IllegalArgumentException e) {
+        // Splitting cannot handle a footer directly after the first line.
+        continue;
+      }
+      assertEquals(
+          "Extracted issues do not match for '" + commitMessage + "'",
+          expected,
+          issueExtractor.getIssueIdsFromCommitMessage("testProject", commitMessage));
+    }
+  }
+
+  private static void addIssueIdsBySplitting(
+      Map<String, Set<String>> ret, String commitMessage, IssuePattern issuePattern) {
+    addIssuesOccurrence(commitMessage, "somewhere", ret, issuePattern);
+
+    String[] lines = commitMessage.split("\n");
+    if (lines.length > 0) {
+      addIssuesOccurrence(lines[0], "subject", ret, issuePattern);
+
+      int currentLine = lines.length - 1;
+      while (currentLine >= 0 && lines[currentLine].isEmpty()) {
+        currentLine--;
+      }
+      int footerEnd = currentLine + 1;
+      while (currentLine >= 0 && !lines[currentLine].isEmpty()) {
+        currentLine--;
+      }
+      int footerStart = currentLine + 1;
+
+      if (footerStart == 0) {
+        footerStart = -1;
+      }
+
+      String body;
+      String footer = null;
+      if (footerStart == -1) {
+        body = String.join("\n", copyOfRange(lines, 1, lines.length));
+      } else {
+        body = String.join("\n", copyOfRange(lines, 1, footerStart - 1));
+        for (int lineIdx = footerStart; lineIdx < footerEnd; lineIdx++) {
+          String line = lines[lineIdx];
+          int colonIdx = line.indexOf(':');
+          if (colonIdx > 0) {
+            String tag = line.substring(0, colonIdx);
+            addIssuesOccurrence(line, "footer-" + tag, ret, issuePattern);
+          }
+        }
+        footer = String.join("\n", copyOfRange(lines, footerStart, footerEnd));
+      }
+      addIssuesOccurrence(body, "body", ret, issuePattern);
+      if (footer != null) {
+        addIssuesOccurrence(footer, "footer", ret, issuePattern);
+      }
+    }
+  }
+
+  private static void addIssuesOccurrence(
+      String text, String occurrence, Map<String, Set<String>> map, IssuePattern issuePattern) {
+    Matcher matcher = issuePattern.getPattern().matcher(text);
+    while (matcher.find()) {
+      String issueId = matcher.group(issuePattern.getGroupIndex());
+      if (!Strings.isNullOrEmpty(issueId)) {
+        map.computeIfAbsent(issueId, k -> Sets.newLinkedHashSet()).add(occurrence);
+      }
+    }
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+
+    injector = Guice.createInjector(new TestModule());
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      itsConfig = createMock(ItsConfig.class);
+      bind(ItsConfig.class).toInstance(itsConfig);
+
+      bind(CommitMessageFetcher.class).toInstance(createMock(CommitMessageFetcher.class));
+      bind(PatchSetDb.class).toInstance(createMock(PatchSetDb.class));
+
+      bind(new TypeLiteral<Cache<IssueOccurrenceCache.Key, Map<String, Set<String>>>>() {})
+          .annotatedWith(Names.named(IssueOccurrenceCache.CACHE_NAME))
+          .toInstance(CacheBuilder.newBuilder().build());
+    }
+  }
+}
@@ -15,14 +15,23 @@ package com.googlesource.gerrit.plugins.its.base.util;
 
 import static org.easymock.EasyMock.expect;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
 import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
 import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor.PatchSetDb;
 import java.util.Arrays;
@@ -39,29 +48,31 @@ import org.powermock.modules.junit4.PowerMockRunner;
 public class IssueExtractorTest extends LoggingMockingTestCase {
   private Injector injector;
   private ItsConfig itsConfig;
+  private ItsProjectConfig projectConfig;
   private CommitMessageFetcher commitMessageFetcher;
   private PatchSetDb db;
 
   public void testIssueIdsNullPattern() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(null).atLeastOnce();
+    expect(projectConfig.getIssuePattern()).andReturn(null).atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Test");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Test");
     assertEquals("Number of found ids do not match", 0, ret.length);
   }
 
   public void testIssueIdsNoMatch() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Test");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Test");
     assertEquals("Number of found ids do not match", 0, ret.length);
 
     assertLogMessageContains("Matching");
@@ -70,12 +81,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsEmptyGroup() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(X*)(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(X*)(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("bug#4711");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "bug#4711");
     assertEquals("Number of found ids do not match", 0, ret.length);
 
     assertLogMessageContains("Matching");
@@ -84,12 +96,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsFullMatch() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("bug#4711");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "bug#4711");
     assertEquals("Number of found ids do not match", 1, ret.length);
     assertEquals("First found issue id do not match", "4711", ret[0]);
 
@@ -99,12 +112,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsMatch() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bar");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Foo bug#4711 bar");
     assertEquals("Number of found ids do not match", 1, ret.length);
     assertEquals("Found issue id does not match", "4711", ret[0]);
 
@@ -114,12 +128,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsGrouplessMatch() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#\\d+")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(0).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#\\d+"), 0))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bar");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Foo bug#4711 bar");
     assertEquals("Number of found ids do not match", 1, ret.length);
     assertEquals("Found issue id does not match", "bug#4711", ret[0]);
 
@@ -129,12 +144,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsMultiGroupMatchGroup1() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d)(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d)(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bar");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Foo bug#4711 bar");
     assertEquals("Number of found ids do not match", 1, ret.length);
     assertEquals("Found issue id does not match", "4", ret[0]);
 
@@ -144,12 +160,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsMultiGroupMatchGroup2() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d)(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(2).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d)(\\d+)"), 2))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bar");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Foo bug#4711 bar");
     assertEquals("Number of found ids do not match", 1, ret.length);
     assertEquals("Found issue id does not match", "711", ret[0]);
 
@@ -159,12 +176,13 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsMulipleMatches() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bug#42 bar bug#123");
+    String[] ret = issueExtractor.getIssueIds(projectConfig, "Foo bug#4711 bug#42 bar bug#123");
     assertEquals("Number of found ids do not match", 3, ret.length);
     List<String> retList = Arrays.asList(ret);
     assertTrue("4711 not among the extracted ids", retList.contains("4711"));
@@ -177,12 +195,15 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   public void testIssueIdsMulipleMatchesWithDuplicates() {
     IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
 
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     replayMocks();
 
-    String[] ret = issueExtractor.getIssueIds("Foo bug#4711 bug#42 bar\n" + "bug#123 baz bug#42");
+    String[] ret =
+        issueExtractor.getIssueIds(
+            projectConfig, "Foo bug#4711 bug#42 bar\n" + "bug#123 baz bug#42");
     assertEquals("Number of found ids do not match", 3, ret.length);
     List<String> retList = Arrays.asList(ret);
     assertTrue("4711 not among the extracted ids", retList.contains("4711"));
@@ -193,8 +214,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitSingleIssue() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -219,8 +241,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitMultipleIssues() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -249,8 +272,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitMultipleIssuesMultipleTimes() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -279,8 +303,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitSingleIssueBody() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -311,8 +336,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitSingleIssueFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -343,8 +369,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitMultipleIssuesFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -385,8 +412,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentParts() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -421,8 +449,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsEmptySubject() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -456,8 +485,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsLinePastFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -492,8 +522,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsLinesPastFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -529,8 +560,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsNoFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -558,8 +590,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsNoFooterTrailingLine() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -587,8 +620,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitDifferentPartsNoFooterTrailingLines() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -617,8 +651,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitEmpty() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -639,9 +674,102 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
     assertLogMessageContains("Matching");
   }
 
+  public void testIssueIdsCommitCached() {
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
+
+    expect(
+            commitMessageFetcher.fetchGuarded(
+                "testProject", "1234567891123456789212345678931234567894"))
+        .andReturn("bug#42\n" + "\n" + "Change-Id: I1234567891123456789212345678931234567894")
+        .once();
+
+    replayMocks();
+
+    IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
+    Map<String, Set<String>> first =
+        issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+    first.get("42").add("modified");
+    Map<String, Set<String>> second =
+        issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+
+    Map<String, Set<String>> expected = Maps.newHashMap();
+    expected.put("42", Sets.newHashSet("somewhere", "subject"));
+    assertEquals("Extracted issues do not match", expected, second);
+
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+  }
+
+  public void testIssueIdsCommitCachedPerPattern() {
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .andReturn(new IssuePattern(Pattern.compile("Change-Id: (I[0-9a-f]+)"), 1));
+
+    expect(
+            commitMessageFetcher.fetchGuarded(
+                "testProject", "1234567891123456789212345678931234567894"))
+        .andReturn("bug#42\n" + "\n" + "Change-Id: I1234567891123456789212345678931234567894")
+        .times(2);
+
+    replayMocks();
+
+    IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
+    issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+    Map<String, Set<String>> actual =
+        issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+
+    Map<String, Set<String>> expected = Maps.newHashMap();
+    expected.put(
+        "I1234567891123456789212345678931234567894",
+        Sets.newHashSet("somewhere", "footer", "footer-Change-Id"));
+    assertEquals("Extracted issues do not match", expected, actual);
+
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+  }
+
+  public void testIssueIdsCommitEmptyNotCached() {
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
+
+    expect(
+            commitMessageFetcher.fetchGuarded(
+                "testProject", "1234567891123456789212345678931234567894"))
+        .andReturn("")
+        .times(2);
+
+    replayMocks();
+
+    IssueExtractor issueExtractor = injector.getInstance(IssueExtractor.class);
+    issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+    issueExtractor.getIssueIds("testProject", "1234567891123456789212345678931234567894");
+
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+    assertLogMessageContains("Matching");
+  }
+
   public void testIssueIdsCommitBlankLine() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -661,8 +789,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitBlankLines() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -682,8 +811,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitMoreBlankLines() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -703,8 +833,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitMixed() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -743,8 +874,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedEmptyFirst() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     expect(
             commitMessageFetcher.fetchGuarded(
@@ -768,8 +900,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSingleSubjectIssueFirst() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -801,8 +934,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSingleSubjectIssueSecondEmpty() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -814,7 +948,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
 
     // Call for previous patch set
     PatchSet.Id previousPatchSetId = PatchSet.id(changeId, 1);
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     expect(
@@ -850,8 +984,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSingleSubjectIssueSecondSame() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -868,7 +1003,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
                 "testProject", "9876543211987654321298765432139876543214"))
         .andReturn("bug#42\n" + "\n" + "Change-Id: I9876543211987654321298765432139876543214");
 
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     PatchSet.Id currentPatchSetId = createMock(PatchSet.Id.class);
@@ -899,8 +1034,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSingleSubjectIssueSecondBody() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -921,7 +1057,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
                 + "\n"
                 + "Change-Id: I9876543211987654321298765432139876543214");
 
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     PatchSet.Id currentPatchSetId = createMock(PatchSet.Id.class);
@@ -952,8 +1088,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSingleSubjectIssueSecondFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -974,7 +1111,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
                 "testProject", "9876543211987654321298765432139876543214"))
         .andReturn("bug#42\n" + "\n" + "Change-Id: I9876543211987654321298765432139876543214");
 
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     PatchSet.Id currentPatchSetId = createMock(PatchSet.Id.class);
@@ -1008,8 +1145,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedSubjectFooter() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -1036,7 +1174,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
                 + "\n"
                 + "Change-Id: I9876543211987654321298765432139876543214");
 
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     PatchSet.Id currentPatchSetId = createMock(PatchSet.Id.class);
@@ -1078,8 +1216,9 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
   }
 
   public void testIssueIdsCommitWAddedMultiple() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).atLeastOnce();
-    expect(itsConfig.getIssuePatternGroupIndex()).andReturn(1).atLeastOnce();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .atLeastOnce();
 
     Change.Id changeId = createMock(Change.Id.class);
 
@@ -1107,7 +1246,7 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
                 + "Bug: bug#16\n"
                 + "Change-Id: I9876543211987654321298765432139876543214");
 
-    expect(db.getRevision(previousPatchSetId))
+    expect(db.getRevision("testProject", previousPatchSetId))
         .andReturn("9876543211987654321298765432139876543214");
 
     PatchSet.Id currentPatchSetId = createMock(PatchSet.Id.class);
@@ -1155,19 +1294,31 @@ public class IssueExtractorTest extends LoggingMockingTestCase {
     super.setUp();
 
     injector = Guice.createInjector(new TestModule());
+
+    expect(itsConfig.getProjectConfig(Project.nameKey("testProject")))
+        .andReturn(projectConfig)
+        .anyTimes();
   }
 
   private class TestModule extends FactoryModule {
     @Override
     protected void configure() {
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
       itsConfig = createMock(ItsConfig.class);
       bind(ItsConfig.class).toInstance(itsConfig);
 
+      projectConfig = createMock(ItsProjectConfig.class);
+
       commitMessageFetcher = createMock(CommitMessageFetcher.class);
       bind(CommitMessageFetcher.class).toInstance(commitMessageFetcher);
 
       db = createMock(PatchSetDb.class);
       bind(PatchSetDb.class).toInstance(db);
+
+      bind(new TypeLiteral<Cache<IssueOccurrenceCache.Key, Map<String, Set<String>>>>() {})
+          .annotatedWith(Names.named(IssueOccurrenceCache.CACHE_NAME))
+          .toInstance(CacheBuilder.newBuilder().build());
     }
   }
 }
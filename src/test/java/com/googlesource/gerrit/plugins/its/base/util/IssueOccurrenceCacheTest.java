@@ -0,0 +1,60 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.googlesource.gerrit.plugins.its.base.util.IssueOccurrenceCache.Key;
+import com.googlesource.gerrit.plugins.its.base.util.IssueOccurrenceCache.KeySerializer;
+import com.googlesource.gerrit.plugins.its.base.util.IssueOccurrenceCache.OccurrencesSerializer;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+
+public class IssueOccurrenceCacheTest extends TestCase {
+  public void testKeySerializerRoundTrip() {
+    Key key = new Key("testProject", "1234567891123456789212345678931234567894", "f00");
+
+    Key actual = KeySerializer.INSTANCE.deserialize(KeySerializer.INSTANCE.serialize(key));
+
+    assertEquals(key, actual);
+  }
+
+  public void testKeyWithoutProject() {
+    assertEquals(new Key(null, "4711", "f00"), new Key("", "4711", "f00"));
+  }
+
+  public void testOccurrencesSerializerRoundTrip() {
+    Map<String, Set<String>> occurrences =
+        ImmutableMap.of(
+            "42",
+            ImmutableSet.of("somewhere", "subject", "footer-Bug"),
+            "ärger",
+            ImmutableSet.of("somewhere"));
+
+    Map<String, Set<String>> actual =
+        OccurrencesSerializer.INSTANCE.deserialize(
+            OccurrencesSerializer.INSTANCE.serialize(occurrences));
+
+    assertEquals(occurrences, actual);
+  }
+
+  public void testOccurrencesSerializerEmpty() {
+    Map<String, Set<String>> actual =
+        OccurrencesSerializer.INSTANCE.deserialize(
+            OccurrencesSerializer.INSTANCE.serialize(ImmutableMap.of()));
+
+    assertTrue(actual.isEmpty());
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class LazyPropertyMapTest extends TestCase {
+  private AtomicInteger computations;
+
+  public void testLazyValueIsNotComputedUntilAccessed() {
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.put("key1", "value1");
+    properties.putLazy("key2", this::compute);
+
+    assertEquals("value1", properties.get("key1"));
+    assertTrue(properties.containsKey("key2"));
+    assertEquals(ImmutableSet.of("key1", "key2"), properties.keySet());
+    assertEquals(2, properties.size());
+    assertEquals(0, computations.get());
+  }
+
+  public void testLazyValueIsComputedOnce() {
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.putLazy("key", this::compute);
+
+    assertEquals("computed", properties.get("key"));
+    assertEquals("computed", properties.get("key"));
+    assertEquals(1, computations.get());
+  }
+
+  public void testPutAllKeepsValuesLazy() {
+    LazyPropertyMap source = new LazyPropertyMap();
+    source.putLazy("key", this::compute);
+    LazyPropertyMap properties = new LazyPropertyMap();
+
+    properties.putAll(source);
+    assertEquals(0, computations.get());
+
+    assertEquals("computed", properties.get("key"));
+    assertEquals("computed", source.get("key"));
+    assertEquals(1, computations.get());
+  }
+
+  public void testEqualsPlainMap() {
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.put("key1", "value1");
+    properties.putLazy("key2", this::compute);
+
+    ImmutableMap<String, String> expected = ImmutableMap.of("key1", "value1", "key2", "computed");
+    assertEquals(expected, properties);
+    assertEquals(properties, expected);
+    assertEquals(expected.hashCode(), properties.hashCode());
+    assertEquals(1, computations.get());
+  }
+
+  public void testMissingKey() {
+    LazyPropertyMap properties = new LazyPropertyMap();
+    properties.putLazy("key", this::compute);
+
+    assertNull(properties.get("missing"));
+    assertFalse(properties.containsKey("missing"));
+  }
+
+  private String compute() {
+    computations.incrementAndGet();
+    return "computed";
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    computations = new AtomicInteger();
+  }
+}
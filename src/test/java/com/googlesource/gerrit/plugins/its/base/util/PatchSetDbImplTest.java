@@ -0,0 +1,129 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.util;
+
+import static org.easymock.EasyMock.expect;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor.PatchSetDbImpl;
+import java.nio.charset.StandardCharsets;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.RefUpdate;
+
+public class PatchSetDbImplTest extends MockingTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+  private static final Change.Id CHANGE_ID = Change.id(4711);
+
+  private GitRepositoryManager repoManager;
+  private InMemoryRepository repo;
+
+  public void testRevisionOfPatchSet() throws Exception {
+    ObjectId revision = createPatchSet(1);
+    expectRepositoryOpened(1);
+
+    replayMocks();
+
+    PatchSetDbImpl db = new PatchSetDbImpl(repoManager);
+    assertEquals(revision.name(), db.getRevision("testProject", PatchSet.id(CHANGE_ID, 1)));
+  }
+
+  public void testRevisionOfPatchSetAmongMany() throws Exception {
+    ObjectId revision = null;
+    for (int i = 1; i <= 50; i++) {
+      ObjectId created = createPatchSet(i);
+      if (i == 49) {
+        revision = created;
+      }
+    }
+    expectRepositoryOpened(1);
+
+    replayMocks();
+
+    PatchSetDbImpl db = new PatchSetDbImpl(repoManager);
+    assertEquals(revision.name(), db.getRevision("testProject", PatchSet.id(CHANGE_ID, 49)));
+  }
+
+  public void testRevisionIsCached() throws Exception {
+    ObjectId revision = createPatchSet(1);
+    expectRepositoryOpened(1);
+
+    replayMocks();
+
+    PatchSetDbImpl db = new PatchSetDbImpl(repoManager);
+    db.getRevision("testProject", PatchSet.id(CHANGE_ID, 1));
+    assertEquals(revision.name(), db.getRevision("testProject", PatchSet.id(CHANGE_ID, 1)));
+  }
+
+  public void testMissingPatchSet() throws Exception {
+    createPatchSet(1);
+    expectRepositoryOpened(2);
+
+    replayMocks();
+
+    PatchSetDbImpl db = new PatchSetDbImpl(repoManager);
+    assertNull(db.getRevision("testProject", PatchSet.id(CHANGE_ID, 2)));
+    assertNull(db.getRevision("testProject", PatchSet.id(CHANGE_ID, 2)));
+  }
+
+  public void testMissingRepository() throws Exception {
+    expect(repoManager.openRepository(PROJECT))
+        .andThrow(new RepositoryNotFoundException("testProject"));
+
+    replayMocks();
+
+    PatchSetDbImpl db = new PatchSetDbImpl(repoManager);
+    assertNull(db.getRevision("testProject", PatchSet.id(CHANGE_ID, 1)));
+  }
+
+  private ObjectId createPatchSet(int patchSetNumber) throws Exception {
+    ObjectId revision;
+    try (ObjectInserter inserter = repo.newObjectInserter()) {
+      revision =
+          inserter.insert(
+              Constants.OBJ_BLOB,
+              ("patch set " + patchSetNumber).getBytes(StandardCharsets.UTF_8));
+      inserter.flush();
+    }
+    RefUpdate update = repo.updateRef(PatchSet.id(CHANGE_ID, patchSetNumber).toRefName());
+    update.setNewObjectId(revision);
+    assertEquals(RefUpdate.Result.NEW, update.forceUpdate());
+    return revision;
+  }
+
+  private void expectRepositoryOpened(int times) throws Exception {
+    expect(repoManager.openRepository(PROJECT))
+        .andAnswer(
+            () -> {
+              repo.incrementOpen();
+              return repo;
+            })
+        .times(times);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    repoManager = createMock(GitRepositoryManager.class);
+    repo = new InMemoryRepository(new DfsRepositoryDescription("testProject"));
+  }
+}
@@ -209,6 +209,46 @@ public class PropertyAttributeExtractorTest extends LoggingMockingTestCase {
     assertEquals("Properties do not match", expected, actual);
   }
 
+  public void testChangeAttributeFormatChangeUrlIsLazy() {
+    ChangeAttribute changeAttribute = new ChangeAttribute();
+    changeAttribute.branch = "testBranch";
+    changeAttribute.subject = "testSubject";
+    changeAttribute.id = "testId";
+    changeAttribute.number = 4711;
+    changeAttribute.url = "http://www.example.org/test";
+
+    replayMocks();
+
+    PropertyAttributeExtractor extractor = injector.getInstance(PropertyAttributeExtractor.class);
+
+    Map<String, String> actual = extractor.extractFrom(changeAttribute);
+
+    assertEquals("testBranch", actual.get("branch"));
+    assertTrue(actual.containsKey("formatChangeUrl"));
+    assertTrue(actual.keySet().contains("formatChangeUrl"));
+  }
+
+  public void testChangeAttributeFormatChangeUrlIsComputedOnce() {
+    ChangeAttribute changeAttribute = new ChangeAttribute();
+    changeAttribute.branch = "testBranch";
+    changeAttribute.subject = "testSubject";
+    changeAttribute.id = "testId";
+    changeAttribute.number = 4711;
+    changeAttribute.url = "http://www.example.org/test";
+
+    expect(facade.createLinkForWebui("http://www.example.org/test", "http://www.example.org/test"))
+        .andReturn("[[http://www.example.org/test]]");
+
+    replayMocks();
+
+    PropertyAttributeExtractor extractor = injector.getInstance(PropertyAttributeExtractor.class);
+
+    Map<String, String> actual = extractor.extractFrom(changeAttribute);
+
+    assertEquals("[[http://www.example.org/test]]", actual.get("formatChangeUrl"));
+    assertEquals("[[http://www.example.org/test]]", actual.get("formatChangeUrl"));
+  }
+
   public void testPatchSetAttribute() {
     AccountAttribute uploader = new AccountAttribute();
     uploader.email = "testEmail1";
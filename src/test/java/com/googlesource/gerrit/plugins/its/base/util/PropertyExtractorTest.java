@@ -25,6 +25,8 @@ import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.data.AccountAttribute;
 import com.google.gerrit.server.data.ApprovalAttribute;
 import com.google.gerrit.server.data.ChangeAttribute;
@@ -413,6 +415,8 @@ public class PropertyExtractorTest extends LoggingMockingTestCase {
   private class TestModule extends FactoryModule {
     @Override
     protected void configure() {
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
       bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
 
       itsProjectExtractor = createMock(ItsProjectExtractor.class);
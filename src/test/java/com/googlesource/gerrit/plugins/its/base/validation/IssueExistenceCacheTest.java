@@ -0,0 +1,109 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.NoopItsFacade;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+
+public class IssueExistenceCacheTest extends TestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+  private static final Project.NameKey OTHER_PROJECT = Project.nameKey("otherProject");
+  private static final Project.NameKey OTHER_SERVER_PROJECT = Project.nameKey("otherServerProject");
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return nanos.get();
+        }
+      };
+
+  private IssueExistenceCache cache;
+
+  public void testUnknownIssue() {
+    assertNull(cache.get(PROJECT, "4711"));
+  }
+
+  public void testExistingIssue() {
+    cache.put(PROJECT, "4711", true);
+
+    assertEquals(Boolean.TRUE, cache.get(PROJECT, "4711"));
+  }
+
+  public void testMissingIssue() {
+    cache.put(PROJECT, "4711", false);
+
+    assertEquals(Boolean.FALSE, cache.get(PROJECT, "4711"));
+  }
+
+  public void testMissingIssueExpiresFirst() {
+    cache.put(PROJECT, "4711", true);
+    cache.put(PROJECT, "42", false);
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+    assertEquals(Boolean.TRUE, cache.get(PROJECT, "4711"));
+    assertNull(cache.get(PROJECT, "42"));
+  }
+
+  public void testCreatedIssueReplacesMissingIssue() {
+    cache.put(PROJECT, "4711", false);
+    cache.put(PROJECT, "4711", true);
+
+    assertEquals(Boolean.TRUE, cache.get(PROJECT, "4711"));
+  }
+
+  public void testIssuesOfDifferentServersAreSeparate() {
+    cache.put(PROJECT, "4711", true);
+
+    assertNull(cache.get(OTHER_SERVER_PROJECT, "4711"));
+  }
+
+  public void testIssuesOfOneServerAreShared() {
+    cache.put(PROJECT, "4711", true);
+
+    assertEquals(Boolean.TRUE, cache.get(OTHER_PROJECT, "4711"));
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    cache =
+        new IssueExistenceCache(
+            new ItsFacadeFactory() {
+              @Override
+              public ItsFacade getFacade(Project.NameKey project) {
+                // Factories may build a new facade on each lookup.
+                return new NoopItsFacade();
+              }
+
+              @Override
+              public String getServerId(Project.NameKey project) {
+                return OTHER_SERVER_PROJECT.equals(project) ? "other-server" : "server";
+              }
+            },
+            CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, TimeUnit.HOURS).build(),
+            CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(30, TimeUnit.SECONDS).build(),
+            new DisabledMetricMaker());
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.its.NoopItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.SingleItsServer;
+import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.easymock.EasyMock;
+import org.eclipse.jgit.lib.Config;
+
+public class IssueExistenceCheckerTest extends MockingTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+
+  private Injector injector;
+  private PluginConfigFactory pluginConfigFactory;
+  private ItsConfig itsConfig;
+  private IssueExistenceCache existenceCache;
+
+  public void testChecksEachIssueOnce() throws Exception {
+    ItsFacade its = createMock(ItsFacade.class);
+    expect(its.exists("4711")).andReturn(true).once();
+    expect(its.exists("42")).andReturn(false).once();
+
+    replayMocks();
+
+    Map<String, CompletableFuture<Boolean>> checks =
+        createChecker().check(its, PROJECT, ImmutableList.of("4711", "42", "4711"));
+
+    assertEquals(2, checks.size());
+    assertTrue(checks.get("4711").get());
+    assertFalse(checks.get("42").get());
+  }
+
+  public void testCachedIssuesAreNotChecked() throws Exception {
+    ItsFacade its = createMock(ItsFacade.class);
+    expect(its.exists("42")).andReturn(false).once();
+
+    replayMocks();
+
+    existenceCache.put(PROJECT, "4711", true);
+    Map<String, CompletableFuture<Boolean>> checks =
+        createChecker().check(its, PROJECT, ImmutableList.of("4711", "42"));
+
+    assertTrue(checks.get("4711").get());
+    assertFalse(checks.get("42").get());
+  }
+
+  public void testResultsAreCached() throws Exception {
+    ItsFacade its = createMock(ItsFacade.class);
+    expect(its.exists("4711")).andReturn(true).once();
+
+    replayMocks();
+
+    createChecker().check(its, PROJECT, ImmutableList.of("4711")).get("4711").get();
+
+    assertEquals(Boolean.TRUE, existenceCache.get(PROJECT, "4711"));
+  }
+
+  public void testFailedChecksAreNotCached() throws Exception {
+    ItsFacade its = createMock(ItsFacade.class);
+    expect(its.exists("4711")).andThrow(new IOException("injected exception 1")).once();
+
+    replayMocks();
+
+    CompletableFuture<Boolean> check =
+        createChecker().check(its, PROJECT, ImmutableList.of("4711")).get("4711");
+
+    assertTrue(check.handle((exists, error) -> error != null).get());
+    assertNull(existenceCache.get(PROJECT, "4711"));
+  }
+
+  public void testBatchingFacadeChecksIssuesInOneRequest() throws Exception {
+    BatchingItsFacade its = createMock(BatchingItsFacade.class);
+    expect(its.exist(ImmutableSet.of("4711", "42")))
+        .andReturn(ImmutableMap.of("4711", true, "42", false))
+        .once();
+
+    replayMocks();
+
+    Map<String, CompletableFuture<Boolean>> checks =
+        createChecker().check(its, PROJECT, ImmutableList.of("4711", "42"));
+
+    assertTrue(checks.get("4711").get());
+    assertFalse(checks.get("42").get());
+  }
+
+  private IssueExistenceChecker createChecker() {
+    return injector.getInstance(IssueExistenceChecker.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+
+    pluginConfigFactory = EasyMock.createMock(PluginConfigFactory.class);
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andReturn(new PluginConfig("ItsTestName", new Config()))
+        .anyTimes();
+    expect(pluginConfigFactory.getFromProjectConfigWithInheritance(PROJECT, "ItsTestName"))
+        .andReturn(new PluginConfig("ItsTestName", new Config()))
+        .anyTimes();
+    EasyMock.replay(pluginConfigFactory);
+
+    ItsProjectConfig projectConfig = EasyMock.createMock(ItsProjectConfig.class);
+    expect(projectConfig.getRateLimit()).andStubReturn(0.0);
+    itsConfig = EasyMock.createMock(ItsConfig.class);
+    expect(itsConfig.getProjectConfig(anyObject(Project.NameKey.class)))
+        .andStubReturn(projectConfig);
+    EasyMock.replay(projectConfig, itsConfig);
+
+    existenceCache =
+        new IssueExistenceCache(
+            new SingleItsServer(null),
+            CacheBuilder.newBuilder().build(),
+            CacheBuilder.newBuilder().build(),
+            new DisabledMetricMaker());
+
+    injector = Guice.createInjector(new TestModule());
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+      bind(ItsConfig.class).toInstance(itsConfig);
+      bind(IssueExistenceCache.class).toInstance(existenceCache);
+      bind(ItsFacadeFactory.class).to(SingleItsServer.class);
+      bind(ItsFacade.class).toInstance(new NoopItsFacade());
+    }
+  }
+}
@@ -15,26 +15,39 @@ package com.googlesource.gerrit.plugins.its.base.validation;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.CommitValidationException;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.its.IssuePattern;
 import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.its.SingleItsServer;
 import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
 import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
+import org.easymock.EasyMock;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.junit.runner.RunWith;
@@ -48,7 +61,10 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
   private IssueExtractor issueExtractor;
   private ItsFacade itsFacade;
   private ItsConfig itsConfig;
+  private ItsProjectConfig projectConfig;
   private ItsFacadeFactory itsFacadeFactory;
+  private PluginConfigFactory pluginConfigFactory;
+  private Config serverConfig;
 
   private Project project = new Project(Project.nameKey("myProject"));
 
@@ -59,7 +75,7 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.OPTIONAL)
         .atLeastOnce();
 
@@ -77,14 +93,16 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
-    expect(itsConfig.getDummyIssuePattern()).andReturn(Optional.empty()).atLeastOnce();
+    expect(projectConfig.getDummyIssuePattern()).andReturn(Optional.empty()).atLeastOnce();
     expect(commit.getFullMessage()).andReturn("TestMessage").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("TestMessage")).andReturn(new String[] {}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "TestMessage"))
+        .andReturn(new String[] {})
+        .atLeastOnce();
 
     replayMocks();
 
@@ -102,14 +120,16 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
-    expect(itsConfig.getDummyIssuePattern()).andReturn(Optional.empty()).atLeastOnce();
+    expect(projectConfig.getDummyIssuePattern()).andReturn(Optional.empty()).atLeastOnce();
     expect(commit.getFullMessage()).andReturn("TestMessage").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("TestMessage")).andReturn(new String[] {}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "TestMessage"))
+        .andReturn(new String[] {})
+        .atLeastOnce();
 
     replayMocks();
 
@@ -125,16 +145,18 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
-    expect(itsConfig.getDummyIssuePattern())
+    expect(projectConfig.getDummyIssuePattern())
         .andReturn(Optional.of(Pattern.compile("SKIP")))
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("TestMessage SKIP").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("TestMessage SKIP")).andReturn(new String[] {}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "TestMessage SKIP"))
+        .andReturn(new String[] {})
+        .atLeastOnce();
 
     replayMocks();
 
@@ -149,13 +171,15 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     ReceiveCommand command = createMock(ReceiveCommand.class);
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711")).andReturn(new String[] {"4711"}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711"))
+        .andReturn(new String[] {"4711"})
+        .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade);
     expect(itsFacade.exists("4711")).andReturn(true).atLeastOnce();
 
@@ -173,13 +197,15 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711")).andReturn(new String[] {"4711"}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711"))
+        .andReturn(new String[] {"4711"})
+        .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade);
     expect(itsFacade.exists("4711")).andReturn(true).atLeastOnce();
 
@@ -198,13 +224,15 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711")).andReturn(new String[] {"4711"}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711"))
+        .andReturn(new String[] {"4711"})
+        .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade);
     expect(itsFacade.exists("4711")).andReturn(false).atLeastOnce();
 
@@ -227,13 +255,15 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711")).andReturn(new String[] {"4711"}).atLeastOnce();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711"))
+        .andReturn(new String[] {"4711"})
+        .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade);
     expect(itsFacade.exists("4711")).andReturn(false).atLeastOnce();
 
@@ -251,13 +281,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -278,13 +308,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -306,13 +336,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -340,13 +370,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -368,13 +398,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -403,13 +433,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.MANDATORY)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -431,13 +461,13 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     RevCommit commit = createMock(RevCommit.class);
     CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
 
-    expect(itsConfig.getItsAssociationPolicy())
+    expect(projectConfig.getItsAssociationPolicy())
         .andReturn(ItsAssociationPolicy.SUGGESTED)
         .atLeastOnce();
     expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
     expect(commit.getId()).andReturn(commit).anyTimes();
     expect(commit.getName()).andReturn("TestCommit").anyTimes();
-    expect(issueExtractor.getIssueIds("bug#4711, bug#42"))
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
         .andReturn(new String[] {"4711", "42"})
         .atLeastOnce();
     expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
@@ -471,6 +501,128 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
     assertLogMessageContains("4711");
   }
 
+  public void testExistenceIsCachedAcrossCommits() throws CommitValidationException, IOException {
+    ItsValidateComment ivc = injector.getInstance(ItsValidateComment.class);
+    ReceiveCommand command = createMock(ReceiveCommand.class);
+    RevCommit commit = createMock(RevCommit.class);
+    CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
+
+    expect(projectConfig.getItsAssociationPolicy())
+        .andReturn(ItsAssociationPolicy.SUGGESTED)
+        .atLeastOnce();
+    expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
+    expect(commit.getId()).andReturn(commit).anyTimes();
+    expect(commit.getName()).andReturn("TestCommit").anyTimes();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
+        .andReturn(new String[] {"4711", "42"})
+        .atLeastOnce();
+    expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
+    expect(itsFacade.exists("4711")).andReturn(true).once();
+    expect(itsFacade.exists("42")).andReturn(false).once();
+
+    replayMocks();
+
+    List<CommitValidationMessage> first = ivc.onCommitReceived(event);
+    List<CommitValidationMessage> second = ivc.onCommitReceived(event);
+
+    assertEquals("Size of returned CommitValidationMessages does not match", 1, first.size());
+    assertEquals(first.get(0).getMessage(), second.get(0).getMessage());
+    assertTrue(
+        "CommitValidationMessages does not contain '42'",
+        second.get(0).getMessage().contains("42"));
+    assertFalse(
+        "CommitValidationMessages contains '4711', although that bug exists",
+        second.get(0).getMessage().contains("4711"));
+  }
+
+  public void testSuggestedMatchingTimeoutIsNotNonExisting()
+      throws CommitValidationException, IOException {
+    serverConfig.setString("plugin", "ItsTestName", ValidationBudget.TIMEOUT_KEY, "100ms");
+    List<CommitValidationMessage> ret;
+    ItsValidateComment ivc = injector.getInstance(ItsValidateComment.class);
+    ReceiveCommand command = createMock(ReceiveCommand.class);
+    RevCommit commit = createMock(RevCommit.class);
+    CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
+
+    expect(projectConfig.getItsAssociationPolicy())
+        .andReturn(ItsAssociationPolicy.SUGGESTED)
+        .atLeastOnce();
+    expect(commit.getFullMessage()).andReturn("bug#4711, bug#42").atLeastOnce();
+    expect(commit.getId()).andReturn(commit).anyTimes();
+    expect(commit.getName()).andReturn("TestCommit").anyTimes();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711, bug#42"))
+        .andReturn(new String[] {"4711", "42"})
+        .atLeastOnce();
+    expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
+    expect(itsFacade.exists("4711"))
+        .andAnswer(
+            () -> {
+              Thread.sleep(1000);
+              return true;
+            })
+        .atLeastOnce();
+    expect(itsFacade.exists("42")).andReturn(false).atLeastOnce();
+    // Mocks serialize calls by default, which would hold back the check of 42.
+    EasyMock.makeThreadSafe(itsFacade, false);
+
+    replayMocks();
+
+    ret = ivc.onCommitReceived(event);
+
+    assertEquals("Size of returned CommitValidationMessages does not match", 2, ret.size());
+    assertTrue(
+        "First CommitValidationMessages does not contain 'Timed out'",
+        ret.get(0).getMessage().contains("Timed out"));
+    assertTrue(
+        "First CommitValidationMessages does not contain '4711'",
+        ret.get(0).getMessage().contains("4711"));
+    assertTrue(
+        "Second CommitValidationMessages does not contain 'Non-existing'",
+        ret.get(1).getMessage().contains("Non-existing"));
+    assertFalse(
+        "Second CommitValidationMessages contains '4711', although it was not checked",
+        ret.get(1).getMessage().contains("4711"));
+    assertTrue(
+        "Second CommitValidationMessages does not contain '42'",
+        ret.get(1).getMessage().contains("42"));
+
+    assertLogMessageContains("Timed out checking whether or not issue 4711 exists");
+  }
+
+  public void testMandatoryMatchingTimeout() throws IOException {
+    serverConfig.setString("plugin", "ItsTestName", ValidationBudget.TIMEOUT_KEY, "100ms");
+    ItsValidateComment ivc = injector.getInstance(ItsValidateComment.class);
+    ReceiveCommand command = createMock(ReceiveCommand.class);
+    RevCommit commit = createMock(RevCommit.class);
+    CommitReceivedEvent event = newCommitReceivedEvent(command, project, null, commit, null);
+
+    expect(projectConfig.getItsAssociationPolicy())
+        .andReturn(ItsAssociationPolicy.MANDATORY)
+        .atLeastOnce();
+    expect(commit.getFullMessage()).andReturn("bug#4711").atLeastOnce();
+    expect(commit.getId()).andReturn(commit).anyTimes();
+    expect(commit.getName()).andReturn("TestCommit").anyTimes();
+    expect(issueExtractor.getIssueIds(projectConfig, "bug#4711"))
+        .andReturn(new String[] {"4711"})
+        .atLeastOnce();
+    expect(itsFacadeFactory.getFacade(project.getNameKey())).andReturn(itsFacade).anyTimes();
+    expect(itsFacade.exists("4711"))
+        .andAnswer(
+            () -> {
+              Thread.sleep(1000);
+              return true;
+            })
+        .atLeastOnce();
+
+    replayMocks();
+
+    CommitValidationException thrown =
+        assertThrows(CommitValidationException.class, () -> ivc.onCommitReceived(event));
+    assertThat(thrown).hasMessageThat().contains("Timed out");
+
+    assertLogMessageContains("Timed out checking whether or not issue 4711 exists");
+  }
+
   public void assertEmptyList(List<CommitValidationMessage> list) {
     if (!list.isEmpty()) {
       StringBuffer sb = new StringBuffer();
@@ -484,15 +636,33 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
   }
 
   private void setupCommonMocks() {
-    expect(itsConfig.getIssuePattern()).andReturn(Pattern.compile("bug#(\\d+)")).anyTimes();
+    projectConfig = createMock(ItsProjectConfig.class);
     Project.NameKey projectNK = Project.nameKey("myProject");
-    expect(itsConfig.isEnabled(projectNK, null)).andReturn(true).anyTimes();
+    expect(itsConfig.getProjectConfig(projectNK)).andReturn(projectConfig).anyTimes();
+    expect(projectConfig.getIssuePattern())
+        .andReturn(new IssuePattern(Pattern.compile("bug#(\\d+)"), 1))
+        .anyTimes();
+    expect(projectConfig.isEnabled(null)).andReturn(true).anyTimes();
+    expect(projectConfig.getRateLimit()).andStubReturn(0.0);
+    expect(itsFacadeFactory.getServerId(projectNK)).andStubReturn("");
   }
 
   @Override
   public void setUp() throws Exception {
     super.setUp();
 
+    pluginConfigFactory = EasyMock.createMock(PluginConfigFactory.class);
+    serverConfig = new Config();
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+    expect(
+            pluginConfigFactory.getFromProjectConfigWithInheritance(
+                anyObject(Project.NameKey.class), eq("ItsTestName")))
+        .andReturn(new PluginConfig("ItsTestName", new Config()))
+        .anyTimes();
+    EasyMock.replay(pluginConfigFactory);
+
     injector = Guice.createInjector(new TestModule());
 
     setupCommonMocks();
@@ -531,6 +701,17 @@ public class ItsValidateCommentTest extends LoggingMockingTestCase {
 
       itsFacadeFactory = createMock(ItsFacadeFactory.class);
       bind(ItsFacadeFactory.class).toInstance(itsFacadeFactory);
+
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+      bind(GitRepositoryManager.class).toInstance(createMock(GitRepositoryManager.class));
+      bind(IssueExistenceCache.class)
+          .toInstance(
+              new IssueExistenceCache(
+                  new SingleItsServer(null),
+                  CacheBuilder.newBuilder().build(),
+                  CacheBuilder.newBuilder().build(),
+                  new DisabledMetricMaker()));
     }
   }
 }
@@ -0,0 +1,198 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.validation;
+
+import static org.easymock.EasyMock.expect;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
+import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
+import com.googlesource.gerrit.plugins.its.base.util.IssueExtractor;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+public class PushIssueChecksTest extends MockingTestCase {
+  private static final Project.NameKey PROJECT = Project.nameKey("testProject");
+  private static final String BRANCH = "refs/heads/master";
+
+  private GitRepositoryManager repoManager;
+  private IssueExtractor issueExtractor;
+  private IssueExistenceChecker checker;
+  private ItsProjectConfig projectConfig;
+  private ItsFacade its;
+  private InMemoryRepository repo;
+  private RevWalk revWalk;
+
+  public void testChecksIssuesOfNewCommitsOnce() throws Exception {
+    ObjectId base = createCommit(null, "Bug: 1");
+    updateBranch(base);
+    ObjectId first = createCommit(base, "Bug: 4711");
+    ObjectId second = createCommit(first, "Bug: 42, Bug: 4711");
+    ReceiveCommand command = new ReceiveCommand(ObjectId.zeroId(), second, "refs/for/master");
+
+    expectOpenRepository();
+    expect(issueExtractor.getIssueIds(projectConfig, "Bug: 4711")).andReturn(new String[] {"4711"});
+    expect(issueExtractor.getIssueIds(projectConfig, "Bug: 42, Bug: 4711"))
+        .andReturn(new String[] {"42", "4711"});
+    Map<String, CompletableFuture<Boolean>> checks =
+        ImmutableMap.of(
+            "42", CompletableFuture.completedFuture(false),
+            "4711", CompletableFuture.completedFuture(true));
+    expect(checker.check(its, PROJECT, ImmutableSet.of("42", "4711"))).andReturn(checks).once();
+    CommitReceivedEvent firstEvent = newEvent(command);
+    CommitReceivedEvent secondEvent = newEvent(command);
+
+    replayMocks();
+
+    PushIssueChecks pushIssueChecks = new PushIssueChecks(repoManager, issueExtractor, checker);
+    assertEquals(checks, pushIssueChecks.get(firstEvent, projectConfig, its));
+    assertEquals(checks, pushIssueChecks.get(secondEvent, projectConfig, its));
+  }
+
+  public void testUpdateOnlyChecksCommitsAfterOldId() throws Exception {
+    ObjectId base = createCommit(null, "Bug: 1");
+    ObjectId first = createCommit(base, "Bug: 4711");
+    ReceiveCommand command = new ReceiveCommand(base, first, BRANCH);
+
+    expectOpenRepository();
+    expect(issueExtractor.getIssueIds(projectConfig, "Bug: 4711")).andReturn(new String[] {"4711"});
+    Map<String, CompletableFuture<Boolean>> checks =
+        ImmutableMap.of("4711", CompletableFuture.completedFuture(true));
+    expect(checker.check(its, PROJECT, ImmutableSet.of("4711"))).andReturn(checks).once();
+    CommitReceivedEvent event = newEvent(command);
+
+    replayMocks();
+
+    PushIssueChecks pushIssueChecks = new PushIssueChecks(repoManager, issueExtractor, checker);
+    assertEquals(checks, pushIssueChecks.get(event, projectConfig, its));
+  }
+
+  public void testNewBranchOnlyChecksCommitsNotOnOtherRefs() throws Exception {
+    ObjectId root = createCommit(null, "Bug: 1");
+    ObjectId master = createCommit(root, "Bug: 2");
+    updateRef(BRANCH, master);
+    ObjectId tagged = createCommit(root, "Bug: 3");
+    updateRef("refs/tags/v1", tagged);
+    ObjectId merge = createCommit("Bug: 42", master, tagged);
+    ObjectId first = createCommit(merge, "Bug: 4711");
+    ReceiveCommand command =
+        new ReceiveCommand(ObjectId.zeroId(), first, "refs/heads/feature");
+
+    expectOpenRepository();
+    expect(issueExtractor.getIssueIds(projectConfig, "Bug: 4711")).andReturn(new String[] {"4711"});
+    expect(issueExtractor.getIssueIds(projectConfig, "Bug: 42")).andReturn(new String[] {"42"});
+    Map<String, CompletableFuture<Boolean>> checks =
+        ImmutableMap.of(
+            "4711", CompletableFuture.completedFuture(true),
+            "42", CompletableFuture.completedFuture(true));
+    expect(checker.check(its, PROJECT, ImmutableSet.of("4711", "42"))).andReturn(checks).once();
+    CommitReceivedEvent event = newEvent(command);
+
+    replayMocks();
+
+    PushIssueChecks pushIssueChecks = new PushIssueChecks(repoManager, issueExtractor, checker);
+    assertEquals(checks, pushIssueChecks.get(event, projectConfig, its));
+  }
+
+  public void testWithoutPush() {
+    CommitReceivedEvent event = newEvent(null);
+
+    replayMocks();
+
+    PushIssueChecks pushIssueChecks = new PushIssueChecks(repoManager, issueExtractor, checker);
+    assertTrue(pushIssueChecks.get(event, projectConfig, its).isEmpty());
+  }
+
+  private CommitReceivedEvent newEvent(ReceiveCommand command) {
+    CommitReceivedEvent event = createMock(CommitReceivedEvent.class);
+    event.command = command;
+    event.revWalk = revWalk;
+    event.refName = BRANCH;
+    expect(event.getProjectNameKey()).andReturn(PROJECT).anyTimes();
+    return event;
+  }
+
+  private void expectOpenRepository() throws Exception {
+    expect(repoManager.openRepository(PROJECT))
+        .andAnswer(
+            () -> {
+              repo.incrementOpen();
+              return repo;
+            })
+        .once();
+  }
+
+  private ObjectId createCommit(ObjectId parent, String message) throws Exception {
+    return parent != null ? createCommit(message, parent) : createCommit(message);
+  }
+
+  private ObjectId createCommit(String message, ObjectId... parents) throws Exception {
+    try (ObjectInserter inserter = repo.newObjectInserter()) {
+      CommitBuilder commit = new CommitBuilder();
+      commit.setTreeId(inserter.insert(new TreeFormatter()));
+      commit.setParentIds(parents);
+      PersonIdent ident = new PersonIdent("Test", "test@example.com");
+      commit.setAuthor(ident);
+      commit.setCommitter(ident);
+      commit.setMessage(message);
+      ObjectId id = inserter.insert(commit);
+      inserter.flush();
+      return id;
+    }
+  }
+
+  private void updateBranch(ObjectId id) throws Exception {
+    updateRef(BRANCH, id);
+  }
+
+  private void updateRef(String refName, ObjectId id) throws Exception {
+    RefUpdate update = repo.updateRef(refName);
+    update.setNewObjectId(id);
+    assertEquals(RefUpdate.Result.NEW, update.forceUpdate());
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    repoManager = createMock(GitRepositoryManager.class);
+    issueExtractor = createMock(IssueExtractor.class);
+    checker = createMock(IssueExistenceChecker.class);
+    projectConfig = createMock(ItsProjectConfig.class);
+    its = createMock(ItsFacade.class);
+    repo = new InMemoryRepository(new DfsRepositoryDescription("testProject"));
+    revWalk = new RevWalk(repo);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    revWalk.close();
+    super.tearDown();
+  }
+}
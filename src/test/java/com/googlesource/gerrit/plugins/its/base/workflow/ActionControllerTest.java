@@ -15,11 +15,16 @@ package com.googlesource.gerrit.plugins.its.base.workflow;
 
 import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.server.events.ChangeEvent;
 import com.google.gerrit.server.events.RefEvent;
 import com.google.inject.Guice;
@@ -40,6 +45,8 @@ public class ActionControllerTest extends LoggingMockingTestCase {
   private RuleBase ruleBase;
   private ActionExecutor actionExecutor;
   private ItsConfig itsConfig;
+  private RefEventQueue eventQueue;
+  private ActionLanes actionLanes;
 
   public void testNoPropertySets() {
     ActionController actionController = createActionController();
@@ -146,12 +153,66 @@ public class ActionControllerTest extends LoggingMockingTestCase {
     actionController.onEvent(event);
   }
 
+  public void testBatchingIssueActions() {
+    ActionController actionController = createActionController();
+
+    ChangeEvent event = createMock(ChangeEvent.class);
+
+    Map<String, String> properties1 = ImmutableMap.of("issue", "testIssue", "project", "batched");
+    Map<String, String> properties2 = ImmutableMap.of("issue", "testIssue2", "project", "batched");
+    Map<String, String> properties3 = ImmutableMap.of("issue", "testIssue3", "project", "batched");
+
+    Set<Map<String, String>> propertySets = ImmutableSet.of(properties1, properties2, properties3);
+
+    expect(propertyExtractor.extractFrom(event))
+        .andReturn(new RefEventProperties(Collections.emptyMap(), propertySets))
+        .anyTimes();
+    expect(actionExecutor.executesIssuesTogether("batched")).andReturn(true);
+
+    ActionRequest actionRequest1 = createMock(ActionRequest.class);
+    Collection<ActionRequest> actionRequests1 = ImmutableList.of(actionRequest1);
+    ActionRequest actionRequest3 = createMock(ActionRequest.class);
+    Collection<ActionRequest> actionRequests3 = ImmutableList.of(actionRequest3);
+
+    expect(ruleBase.actionRequestsFor(properties1)).andReturn(actionRequests1).once();
+    expect(ruleBase.actionRequestsFor(properties2)).andReturn(ImmutableList.of()).once();
+    expect(ruleBase.actionRequestsFor(properties3)).andReturn(actionRequests3).once();
+
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(
+            Maps.immutableEntry(properties1, actionRequests1),
+            Maps.immutableEntry(properties3, actionRequests3)));
+
+    replayMocks();
+
+    actionController.onEvent(event);
+  }
+
   private ActionController createActionController() {
     return injector.getInstance(ActionController.class);
   }
 
   private void setupCommonMocks() {
     expect(itsConfig.isEnabled(anyObject(RefEvent.class))).andReturn(true).anyTimes();
+    expect(actionExecutor.executesIssuesTogether(anyObject())).andStubReturn(false);
+
+    eventQueue.submit(anyObject(RefEvent.class), anyObject(Runnable.class));
+    expectLastCall()
+        .andAnswer(
+            () -> {
+              ((Runnable) getCurrentArguments()[1]).run();
+              return null;
+            })
+        .anyTimes();
+
+    actionLanes.execute(anyObject(String.class), anyObject(Runnable.class));
+    expectLastCall()
+        .andAnswer(
+            () -> {
+              ((Runnable) getCurrentArguments()[1]).run();
+              return null;
+            })
+        .anyTimes();
   }
 
   @Override
@@ -165,6 +226,8 @@ public class ActionControllerTest extends LoggingMockingTestCase {
   private class TestModule extends FactoryModule {
     @Override
     protected void configure() {
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
       propertyExtractor = createMock(PropertyExtractor.class);
       bind(PropertyExtractor.class).toInstance(propertyExtractor);
 
@@ -176,6 +239,12 @@ public class ActionControllerTest extends LoggingMockingTestCase {
 
       itsConfig = createMock(ItsConfig.class);
       bind(ItsConfig.class).toInstance(itsConfig);
+
+      eventQueue = createMock(RefEventQueue.class);
+      bind(RefEventQueue.class).toInstance(eventQueue);
+
+      actionLanes = createMock(ActionLanes.class);
+      bind(ActionLanes.class).toInstance(actionLanes);
     }
   }
 }
@@ -13,24 +13,46 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.extensions.registration.DynamicMap;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.its.AsyncItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade;
+import com.googlesource.gerrit.plugins.its.base.its.ItsConfig;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacadeFactory;
+import com.googlesource.gerrit.plugins.its.base.its.ItsProjectConfig;
 import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.eclipse.jgit.lib.Config;
 
 public class ActionExecutorTest extends LoggingMockingTestCase {
 
@@ -47,6 +69,11 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
   private AddPropertyToField.Factory addPropertyToFieldFactory;
   private CreateVersionFromProperty.Factory createVersionFromPropertyFactory;
   private CustomAction customAction;
+  private List<String> firedActions;
+  private List<String> failedActions;
+  private ActionRetries actionRetries;
+  private PluginConfigFactory pluginConfigFactory;
+  private ItsConfig itsConfig;
 
   private Map<String, String> properties =
       ImmutableMap.of("issue", "4711", "project", "testProject");
@@ -70,6 +97,8 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
 
     ActionExecutor actionExecutor = createActionExecutor();
     actionExecutor.executeOnIssue(actionRequests, properties);
+
+    assertTrue(failedActions.isEmpty());
   }
 
   public void testExecuteItemException() throws IOException {
@@ -82,6 +111,13 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
 
     its.performAction("4711", "unparsed action 1");
     expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(actionRequest),
+        eq(properties),
+        eq(1),
+        anyObject(IOException.class));
 
     replayMocks();
 
@@ -89,6 +125,7 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
     actionExecutor.executeOnIssue(actionRequests, properties);
 
     assertLogThrowableMessageContains("injected exception 1");
+    assertEquals(Collections.singletonList("unparsed"), failedActions);
   }
 
   public void testExecuteIterable() throws IOException {
@@ -135,9 +172,23 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
 
     its.performAction("4711", "unparsed action 1");
     expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(actionRequest1),
+        eq(properties),
+        eq(1),
+        anyObject(IOException.class));
     its.performAction("4711", "unparsed action 2");
     its.performAction("4711", "unparsed action 3");
     expectLastCall().andThrow(new IOException("injected exception 3"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(actionRequest3),
+        eq(properties),
+        eq(1),
+        anyObject(IOException.class));
 
     replayMocks();
 
@@ -289,6 +340,260 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
     actionExecutor.executeOnProject(actionRequests, projectProperties);
   }
 
+  public void testExecuteProjectCustomActionException() throws IOException {
+    expect(customAction.getType()).andReturn(ActionType.PROJECT);
+
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+    expect(actionRequest.getName()).andReturn(CUSTOM_ACTION_NAME);
+    expect(itsFacadeFactory.getFacade(Project.nameKey(properties.get("project")))).andReturn(its);
+
+    Set<ActionRequest> actionRequests = ImmutableSet.of(actionRequest);
+
+    customAction.execute(its, "itsTestProject", actionRequest, projectProperties);
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.PROJECT),
+        eq("itsTestProject"),
+        eq(actionRequest),
+        eq(projectProperties),
+        eq(1),
+        anyObject(IOException.class));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnProject(actionRequests, projectProperties);
+
+    assertLogThrowableMessageContains("injected exception 1");
+    assertEquals(Collections.singletonList(CUSTOM_ACTION_NAME), failedActions);
+  }
+
+  public void testRetryFailingAgain() throws IOException {
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+    expect(actionRequest.getName()).andReturn("unparsed");
+    expect(actionRequest.getUnparsed()).andReturn("unparsed action 1");
+    expect(itsFacadeFactory.getFacade(Project.nameKey(properties.get("project")))).andReturn(its);
+
+    its.performAction("4711", "unparsed action 1");
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(actionRequest),
+        eq(properties),
+        eq(3),
+        anyObject(IOException.class));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.retry(ActionType.ISSUE, "4711", actionRequest, properties, 3);
+
+    assertLogThrowableMessageContains("injected exception 1");
+  }
+
+  public void testRetryProjectAction() throws IOException {
+    expect(customAction.getType()).andReturn(ActionType.PROJECT);
+
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+    expect(actionRequest.getName()).andReturn(CUSTOM_ACTION_NAME);
+    expect(itsFacadeFactory.getFacade(Project.nameKey(properties.get("project")))).andReturn(its);
+
+    customAction.execute(its, "itsTestProject", actionRequest, projectProperties);
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.retry(ActionType.PROJECT, "itsTestProject", actionRequest, projectProperties, 2);
+  }
+
+  public void testExecuteOnIssuesBatchesLeadingComments() throws IOException {
+    BatchingItsFacade batchingIts = createMock(BatchingItsFacade.class);
+    expect(itsFacadeFactory.getFacade(Project.nameKey("testProject")))
+        .andReturn(batchingIts)
+        .anyTimes();
+    expect(addCommentFactory.create()).andReturn(new AddComment()).times(2);
+
+    Map<String, String> properties2 = ImmutableMap.of("issue", "4712", "project", "testProject");
+    Collection<ActionRequest> actionRequests1 =
+        ImmutableList.of(new ActionRequest("add-comment Fixed"), new ActionRequest("close"));
+    Collection<ActionRequest> actionRequests2 =
+        ImmutableList.of(new ActionRequest("add-comment Fixed"));
+
+    batchingIts.addComments(ImmutableListMultimap.of("4711", "Fixed", "4712", "Fixed"));
+    batchingIts.performAction("4711", "close");
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(
+            Maps.immutableEntry(properties, actionRequests1),
+            Maps.immutableEntry(properties2, actionRequests2)));
+  }
+
+  public void testExecuteOnIssuesSplitsBatchesAtOtherActions() throws IOException {
+    IMocksControl control = createMockControl();
+    control.checkOrder(true);
+    BatchingItsFacade batchingIts = createMock(BatchingItsFacade.class, control);
+    expect(itsFacadeFactory.getFacade(Project.nameKey("testProject")))
+        .andReturn(batchingIts)
+        .anyTimes();
+    expect(addCommentFactory.create()).andReturn(new AddComment()).times(3);
+
+    Map<String, String> properties2 = ImmutableMap.of("issue", "4712", "project", "testProject");
+    Collection<ActionRequest> actionRequests1 =
+        ImmutableList.of(
+            new ActionRequest("add-comment First"),
+            new ActionRequest("close"),
+            new ActionRequest("add-comment Second"));
+    Collection<ActionRequest> actionRequests2 =
+        ImmutableList.of(new ActionRequest("add-comment Fixed"));
+
+    batchingIts.addComments(ImmutableListMultimap.of("4711", "First", "4712", "Fixed"));
+    batchingIts.performAction("4711", "close");
+    batchingIts.addComments(ImmutableListMultimap.of("4711", "Second"));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(
+            Maps.immutableEntry(properties, actionRequests1),
+            Maps.immutableEntry(properties2, actionRequests2)));
+
+    assertEquals(
+        ImmutableList.of("add-comment", "add-comment", "close", "add-comment"), firedActions);
+  }
+
+  public void testExecuteOnIssuesRetriesActionFailingToRender() throws IOException {
+    BatchingItsFacade batchingIts = createMock(BatchingItsFacade.class);
+    expect(itsFacadeFactory.getFacade(Project.nameKey("testProject")))
+        .andReturn(batchingIts)
+        .anyTimes();
+    AddComment failingComment = createMock(AddComment.class);
+    expect(addCommentFactory.create()).andReturn(failingComment).andReturn(new AddComment());
+
+    Map<String, String> properties2 = ImmutableMap.of("issue", "4712", "project", "testProject");
+    ActionRequest failingRequest = new ActionRequest("add-comment Broken");
+    Collection<ActionRequest> actionRequests1 = ImmutableList.of(failingRequest);
+    Collection<ActionRequest> actionRequests2 =
+        ImmutableList.of(new ActionRequest("add-comment Fixed"));
+
+    failingComment.addTo(
+        anyObject(ActionBatch.class), eq("4711"), eq(failingRequest), eq(properties));
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(failingRequest),
+        eq(properties),
+        eq(1),
+        anyObject(IOException.class));
+    batchingIts.addComments(ImmutableListMultimap.of("4712", "Fixed"));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(
+            Maps.immutableEntry(properties, actionRequests1),
+            Maps.immutableEntry(properties2, actionRequests2)));
+
+    assertLogThrowableMessageContains("injected exception 1");
+    assertEquals(Collections.singletonList("add-comment"), failedActions);
+    assertEquals(ImmutableList.of("add-comment", "add-comment"), firedActions);
+  }
+
+  public void testExecuteOnIssuesRetriesFailedBatch() throws IOException {
+    BatchingItsFacade batchingIts = createMock(BatchingItsFacade.class);
+    expect(itsFacadeFactory.getFacade(Project.nameKey("testProject")))
+        .andReturn(batchingIts)
+        .anyTimes();
+    expect(addCommentFactory.create()).andReturn(new AddComment());
+
+    ActionRequest actionRequest = new ActionRequest("add-comment Fixed");
+    Collection<ActionRequest> actionRequests = ImmutableList.of(actionRequest);
+
+    batchingIts.addComments(ImmutableListMultimap.of("4711", "Fixed"));
+    expectLastCall().andThrow(new IOException("injected exception 1"));
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4711"),
+        eq(actionRequest),
+        eq(properties),
+        eq(1),
+        anyObject(IOException.class));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(Maps.immutableEntry(properties, actionRequests)));
+
+    assertLogThrowableMessageContains("injected exception 1");
+    assertEquals(Collections.singletonList("add-comment"), failedActions);
+  }
+
+  public void testExecuteOnIssuesWithoutBatchingFacade() throws IOException {
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+    expect(actionRequest.getName()).andReturn("unparsed");
+    expect(actionRequest.getUnparsed()).andReturn("unparsed action 1");
+    expect(itsFacadeFactory.getFacade(Project.nameKey(properties.get("project"))))
+        .andReturn(its)
+        .times(2);
+
+    Collection<ActionRequest> actionRequests = ImmutableList.of(actionRequest);
+
+    its.performAction("4711", "unparsed action 1");
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(Maps.immutableEntry(properties, actionRequests)));
+  }
+
+  public void testExecuteOnIssuesPerformsActionsAsynchronously() throws IOException {
+    AsyncSourceItsFacade asyncSourceIts = createMock(AsyncSourceItsFacade.class);
+    AsyncItsFacade asyncIts = createMock(AsyncItsFacade.class);
+    expect(itsFacadeFactory.getFacade(Project.nameKey("testProject")))
+        .andReturn(asyncSourceIts)
+        .anyTimes();
+    expect(asyncSourceIts.getAsyncFacade()).andReturn(asyncIts);
+
+    Map<String, String> properties2 = ImmutableMap.of("issue", "4712", "project", "testProject");
+    Collection<ActionRequest> actionRequests1 =
+        ImmutableList.of(new ActionRequest("start"), new ActionRequest("close"));
+    ActionRequest failingRequest = new ActionRequest("close");
+    Collection<ActionRequest> actionRequests2 = ImmutableList.of(failingRequest);
+
+    CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("injected exception 1"));
+    expect(asyncIts.performAction("4711", "start")).andReturn(done);
+    expect(asyncIts.performAction("4712", "close")).andReturn(failed);
+    expect(asyncIts.performAction("4711", "close")).andReturn(done);
+    actionRetries.failed(
+        eq(ActionType.ISSUE),
+        eq("4712"),
+        eq(failingRequest),
+        eq(properties2),
+        eq(1),
+        anyObject(IOException.class));
+
+    replayMocks();
+
+    ActionExecutor actionExecutor = createActionExecutor();
+    actionExecutor.executeOnIssues(
+        ImmutableList.of(
+            Maps.immutableEntry(properties, actionRequests1),
+            Maps.immutableEntry(properties2, actionRequests2)));
+
+    assertLogThrowableMessageContains("injected exception 1");
+    assertEquals(Collections.singletonList("close"), failedActions);
+  }
+
   private ActionExecutor createActionExecutor() {
     return injector.getInstance(ActionExecutor.class);
   }
@@ -296,12 +601,56 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
   @Override
   public void setUp() throws Exception {
     super.setUp();
+
+    pluginConfigFactory = EasyMock.createMock(PluginConfigFactory.class);
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andReturn(new PluginConfig("ItsTestName", new Config()))
+        .anyTimes();
+    expect(
+            pluginConfigFactory.getFromProjectConfigWithInheritance(
+                anyObject(Project.NameKey.class), eq("ItsTestName")))
+        .andReturn(new PluginConfig("ItsTestName", new Config()))
+        .anyTimes();
+    EasyMock.replay(pluginConfigFactory);
+
+    ItsProjectConfig projectConfig = EasyMock.createMock(ItsProjectConfig.class);
+    expect(projectConfig.getRateLimit()).andStubReturn(0.0);
+    itsConfig = EasyMock.createMock(ItsConfig.class);
+    expect(itsConfig.getProjectConfig(anyObject(Project.NameKey.class)))
+        .andStubReturn(projectConfig);
+    EasyMock.replay(projectConfig, itsConfig);
     injector = Guice.createInjector(new TestModule());
+    expect(itsFacadeFactory.getServerId(anyObject(Project.NameKey.class))).andStubReturn("");
   }
 
   private class TestModule extends FactoryModule {
     @Override
     protected void configure() {
+      firedActions = new ArrayList<>();
+      failedActions = new ArrayList<>();
+      bind(ItsMetrics.class)
+          .toInstance(
+              new ItsMetrics(new DisabledMetricMaker()) {
+                @Override
+                public Timer1.Context<String> startAction(String actionName) {
+                  firedActions.add(actionName);
+                  return super.startAction(actionName);
+                }
+
+                @Override
+                public void actionFailed(String actionName) {
+                  failedActions.add(actionName);
+                }
+              });
+
+      actionRetries = createMock(ActionRetries.class);
+      bind(ActionRetries.class).toInstance(actionRetries);
+
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+      bind(ItsConfig.class).toInstance(itsConfig);
+
       its = createMock(ItsFacade.class);
       bind(ItsFacade.class).toInstance(its);
 
@@ -334,4 +683,6 @@ public class ActionExecutorTest extends LoggingMockingTestCase {
           .toInstance(customAction);
     }
   }
+
+  interface AsyncSourceItsFacade extends ItsFacade, AsyncItsFacade.Source {}
 }
@@ -0,0 +1,170 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.jgit.lib.Config;
+
+public class ActionLanesTest extends LoggingMockingTestCase {
+  private Injector injector;
+  private Config serverConfig;
+  private PluginConfigFactory pluginConfigFactory;
+  private OneOffRequestContext requestContext;
+
+  public void testExecutionOnCallerThreadWithoutLanes() {
+    serverConfig.setInt("plugin", "ItsTestName", ActionLanes.LANES_KEY, 0);
+
+    replayMocks();
+
+    ActionLanes lanes = createActionLanes();
+    AtomicReference<Thread> executingThread = new AtomicReference<>();
+    lanes.execute("4711", () -> executingThread.set(Thread.currentThread()));
+
+    assertEquals(Thread.currentThread(), executingThread.get());
+  }
+
+  public void testSameKeyExecutesInSubmissionOrder() throws InterruptedException {
+    serverConfig.setInt("plugin", "ItsTestName", ActionLanes.LANES_KEY, 4);
+
+    replayMocks();
+
+    ActionLanes lanes = createActionLanes();
+    List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      int task = i;
+      lanes.execute(
+          "4711",
+          () -> {
+            executed.add(task);
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), executed.get(i));
+    }
+    lanes.stop();
+  }
+
+  public void testDifferentLanesExecuteInParallel() throws InterruptedException {
+    serverConfig.setInt("plugin", "ItsTestName", ActionLanes.LANES_KEY, 2);
+
+    replayMocks();
+
+    ActionLanes lanes = createActionLanes();
+    CountDownLatch bothRunning = new CountDownLatch(2);
+    CountDownLatch done = new CountDownLatch(2);
+    Runnable task =
+        () -> {
+          bothRunning.countDown();
+          try {
+            if (bothRunning.await(10, TimeUnit.SECONDS)) {
+              done.countDown();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    // With two lanes, keys with hash codes 0 and 1 end up on different lanes.
+    lanes.execute("\u0000", task);
+    lanes.execute("\u0001", task);
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    lanes.stop();
+  }
+
+  public void testVirtualThreadsExecuteInSubmissionOrder() throws InterruptedException {
+    serverConfig.setEnum(
+        "plugin", "ItsTestName", ActionLanes.THREAD_TYPE_KEY, ActionLanes.ThreadType.VIRTUAL);
+
+    replayMocks();
+
+    ActionLanes lanes = createActionLanes();
+    if (Runtime.version().feature() < 21) {
+      assertLogMessageContains("Virtual threads are not available");
+    }
+    List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      int task = i;
+      lanes.execute(
+          "4711",
+          () -> {
+            executed.add(task);
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), executed.get(i));
+    }
+    lanes.stop();
+  }
+
+  private ActionLanes createActionLanes() {
+    return injector.getInstance(ActionLanes.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+
+    ManualRequestContext ctx = createMock(ManualRequestContext.class);
+    ctx.close();
+    expectLastCall().anyTimes();
+    expect(requestContext.open()).andReturn(ctx).anyTimes();
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      requestContext = createMock(OneOffRequestContext.class);
+      bind(OneOffRequestContext.class).toInstance(requestContext);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.easymock.Capture;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.util.FileUtils;
+
+public class ActionRetriesTest extends LoggingMockingTestCase {
+  private Injector injector;
+  private Config serverConfig;
+  private Path pluginData;
+  private PluginConfigFactory pluginConfigFactory;
+  private ActionExecutor actionExecutor;
+
+  private ActionRequest actionRequest = new ActionRequest("add-comment Fixed");
+  private Map<String, String> properties =
+      ImmutableMap.of("issue", "4711", "project", "testProject");
+
+  public void testBackoffDoublesUpToTheMaximum() {
+    serverConfig.setString("plugin", "ItsTestName", ActionRetries.BACKOFF_KEY, "1s");
+    serverConfig.setString("plugin", "ItsTestName", ActionRetries.MAX_BACKOFF_KEY, "5s");
+
+    replayMocks();
+
+    ActionRetries retries = createActionRetries();
+    assertEquals(1000, retries.getBackoff(1));
+    assertEquals(2000, retries.getBackoff(2));
+    assertEquals(4000, retries.getBackoff(3));
+    assertEquals(5000, retries.getBackoff(4));
+    assertEquals(5000, retries.getBackoff(100));
+  }
+
+  public void testRetry() throws InterruptedException {
+    serverConfig.setInt("plugin", "ItsTestName", ActionRetries.RETRIES_KEY, 2);
+    serverConfig.setString("plugin", "ItsTestName", ActionRetries.BACKOFF_KEY, "0");
+
+    CountDownLatch retried = new CountDownLatch(1);
+    actionExecutor.retry(ActionType.ISSUE, "4711", actionRequest, properties, 2);
+    expectLastCall()
+        .andAnswer(
+            () -> {
+              retried.countDown();
+              return null;
+            });
+
+    replayMocks();
+
+    ActionRetries retries = createActionRetries();
+    retries.failed(
+        ActionType.ISSUE, "4711", actionRequest, properties, 1, new IOException("injected"));
+
+    assertTrue(retried.await(10, TimeUnit.SECONDS));
+    assertLogMessageContains("Retrying action add-comment Fixed on 4711 in 0 ms (1 of 2 retries)");
+    retries.stop();
+  }
+
+  public void testDeadLetterWithoutRetries() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ActionRetries.RETRIES_KEY, 0);
+
+    replayMocks();
+
+    ActionRetries retries = createActionRetries();
+    retries.failed(
+        ActionType.PROJECT,
+        "itsTestProject",
+        actionRequest,
+        properties,
+        1,
+        new IOException("injected exception 1"));
+
+    List<DeadLetter> deadLetters = injector.getInstance(DeadLetterStore.class).list();
+    assertEquals(1, deadLetters.size());
+    DeadLetter deadLetter = deadLetters.get(0);
+    assertEquals(ActionType.PROJECT, deadLetter.type);
+    assertEquals("itsTestProject", deadLetter.target);
+    assertEquals("add-comment Fixed", deadLetter.action);
+    assertEquals(properties, deadLetter.properties);
+    assertEquals(1, deadLetter.attempts);
+    assertEquals("injected exception 1", deadLetter.error);
+    assertNotNull(deadLetter.failedAt);
+    assertLogMessageContains("Giving up on action");
+    retries.stop();
+  }
+
+  public void testDeadLetterAfterLastRetry() throws IOException {
+    serverConfig.setInt("plugin", "ItsTestName", ActionRetries.RETRIES_KEY, 2);
+
+    replayMocks();
+
+    ActionRetries retries = createActionRetries();
+    retries.failed(ActionType.ISSUE, "4711", actionRequest, properties, 3, new IOException());
+
+    List<DeadLetter> deadLetters = injector.getInstance(DeadLetterStore.class).list();
+    assertEquals(1, deadLetters.size());
+    assertEquals(3, deadLetters.get(0).attempts);
+    assertEquals(0, retries.getPendingRetries());
+    assertLogMessageContains("Giving up on action add-comment Fixed on 4711 after 3 attempts");
+    retries.stop();
+  }
+
+  public void testStopDeadLettersPendingRetries() throws IOException {
+    serverConfig.setString("plugin", "ItsTestName", ActionRetries.BACKOFF_KEY, "1h");
+
+    replayMocks();
+
+    ActionRetries retries = createActionRetries();
+    retries.failed(ActionType.ISSUE, "4711", actionRequest, properties, 1, new IOException());
+    assertEquals(1, retries.getPendingRetries());
+    assertTrue(injector.getInstance(DeadLetterStore.class).list().isEmpty());
+    assertLogMessageContains("Retrying action");
+
+    retries.stop();
+
+    assertEquals(0, retries.getPendingRetries());
+    assertEquals(1, injector.getInstance(DeadLetterStore.class).list().size());
+    assertLogMessageContains("Giving up on action");
+  }
+
+  public void testReplay() {
+    Capture<ActionRequest> replayedRequest = createCapture();
+    actionExecutor.retry(
+        eq(ActionType.ISSUE), eq("4711"), capture(replayedRequest), eq(properties), eq(1));
+
+    replayMocks();
+
+    DeadLetter deadLetter = new DeadLetter();
+    deadLetter.type = ActionType.ISSUE;
+    deadLetter.target = "4711";
+    deadLetter.action = "add-comment Fixed";
+    deadLetter.properties = properties;
+
+    ActionRetries retries = createActionRetries();
+    retries.replay(deadLetter);
+
+    assertEquals("add-comment Fixed", replayedRequest.getValue().getUnparsed());
+    retries.stop();
+  }
+
+  private ActionRetries createActionRetries() {
+    return injector.getInstance(ActionRetries.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    pluginData = Files.createTempDirectory("its-base-test");
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    // Execute actions on the thread that hands them to the lanes.
+    serverConfig.setInt("plugin", "ItsTestName", ActionLanes.LANES_KEY, 0);
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtils.delete(pluginData.toFile(), FileUtils.RECURSIVE);
+    super.tearDown();
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(Path.class).annotatedWith(PluginData.class).toInstance(pluginData);
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      bind(OneOffRequestContext.class).toInstance(createMock(OneOffRequestContext.class));
+
+      actionExecutor = createMock(ActionExecutor.class);
+      bind(ActionExecutor.class).toInstance(actionExecutor);
+    }
+  }
+}
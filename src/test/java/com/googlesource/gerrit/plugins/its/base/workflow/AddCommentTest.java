@@ -15,6 +15,7 @@ package com.googlesource.gerrit.plugins.its.base.workflow;
 
 import static org.easymock.EasyMock.expect;
 
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.inject.Guice;
@@ -50,6 +51,20 @@ public class AddCommentTest extends LoggingMockingTestCase {
     addComment.execute(its, "4711", actionRequest, ImmutableMap.of());
   }
 
+  public void testAddToBatch() throws IOException {
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+    expect(actionRequest.getParameters()).andReturn(new String[] {"Some", "test", "comment"});
+
+    replayMocks();
+
+    ActionBatch batch = new ActionBatch();
+    AddComment addComment = createAddComment();
+    addComment.addTo(batch, "4711", actionRequest, ImmutableMap.of());
+
+    assertEquals(ImmutableListMultimap.of("4711", "Some test comment"), batch.getComments());
+    assertTrue(batch.getFieldValues().isEmpty());
+  }
+
   private AddComment createAddComment() {
     return injector.getInstance(AddComment.class);
   }
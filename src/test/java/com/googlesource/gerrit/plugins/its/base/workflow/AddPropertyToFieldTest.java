@@ -19,10 +19,12 @@ import static org.easymock.EasyMock.expect;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.its.BatchingItsFacade.FieldValue;
 import com.googlesource.gerrit.plugins.its.base.its.ItsFacade;
 import com.googlesource.gerrit.plugins.its.base.testutil.MockingTestCase;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.easymock.EasyMock;
@@ -71,6 +73,26 @@ public class AddPropertyToFieldTest extends MockingTestCase {
     addPropertyToField.execute(its, ISSUE_ID, actionRequest, properties);
   }
 
+  public void testAddToBatch() throws IOException {
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+
+    Map<String, String> properties = Collections.singletonMap(PROPERTY_ID, PROPERTY_VALUE);
+    expect(parametersExtractor.extract(actionRequest, properties))
+        .andReturn(Optional.of(new AddPropertyToFieldParameters(PROPERTY_VALUE, FIELD_ID)));
+
+    replayMocks();
+
+    ActionBatch batch = new ActionBatch();
+    AddPropertyToField addPropertyToField = createAddPropertyToField();
+    addPropertyToField.addTo(batch, ISSUE_ID, actionRequest, properties);
+
+    List<FieldValue> fieldValues = batch.getFieldValues().get(ISSUE_ID);
+    assertEquals(1, fieldValues.size());
+    assertEquals(FIELD_ID, fieldValues.get(0).getFieldId());
+    assertEquals(PROPERTY_VALUE, fieldValues.get(0).getValue());
+    assertTrue(batch.getComments().isEmpty());
+  }
+
   private AddPropertyToField createAddPropertyToField() {
     return injector.getInstance(AddPropertyToField.class);
   }
@@ -13,6 +13,7 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.inject.Guice;
@@ -39,6 +40,20 @@ public class AddStandardCommentTest extends LoggingMockingTestCase {
     action.execute(its, "42", actionRequest, properties);
   }
 
+  public void testChangeMergedAddToBatch() throws IOException {
+    ActionRequest actionRequest = createMock(ActionRequest.class);
+
+    Map<String, String> properties = ImmutableMap.of("event-type", "change-merged");
+
+    replayMocks();
+
+    ActionBatch batch = new ActionBatch();
+    AddStandardComment action = injector.getInstance(AddStandardComment.class);
+    action.addTo(batch, "42", actionRequest, properties);
+
+    assertEquals(ImmutableListMultimap.of("42", "Change merged"), batch.getComments());
+  }
+
   public void testChangeMergedFull() throws IOException {
     ActionRequest actionRequest = createMock(ActionRequest.class);
 
@@ -14,11 +14,15 @@
 package com.googlesource.gerrit.plugins.its.base.workflow;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 public class ConditionTest extends LoggingMockingTestCase {
   private Injector injector;
@@ -197,6 +201,118 @@ public class ConditionTest extends LoggingMockingTestCase {
     assertFalse("isMetBy gave true", condition.isMetBy(properties));
   }
 
+  public void testIsMetByEmptyProperty() {
+    Condition condition = createCondition("testKey", "value1,");
+
+    Map<String, String> properties = ImmutableMap.of("testKey", "");
+
+    replayMocks();
+
+    assertTrue("isMetBy gave false", condition.isMetBy(properties));
+  }
+
+  public void testIsMetByIgnoresTrailingEmptyValues() {
+    Condition condition = createCondition("testKey", "value1,");
+
+    Map<String, String> properties = ImmutableMap.of("testKey", "value2  ");
+
+    replayMocks();
+
+    assertFalse("isMetBy gave true", condition.isMetBy(properties));
+  }
+
+  public void testIsMetByTrimsValues() {
+    Condition condition = createCondition("testKey", "value1");
+
+    Map<String, String> properties = ImmutableMap.of("testKey", "value2 \tvalue1\n");
+
+    replayMocks();
+
+    assertTrue("isMetBy gave false", condition.isMetBy(properties));
+  }
+
+  public void testIsMetBySameAsSplitting() {
+    String[] tokens = {"a", "b", "ab", " ", " ", "\t", ""};
+    String[] conditionValues = {"a", "b", "ab", "", "!,a", "!,", "a,,b", "!,b,ab"};
+    Random random = new Random(4711);
+
+    replayMocks();
+
+    for (String values : conditionValues) {
+      Condition condition = createCondition("testKey", values);
+      for (int i = 0; i < 1000; i++) {
+        StringBuilder property = new StringBuilder();
+        int tokenCount = random.nextInt(6);
+        for (int j = 0; j < tokenCount; j++) {
+          property.append(tokens[random.nextInt(tokens.length)]);
+        }
+        Map<String, String> properties = ImmutableMap.of("testKey", property.toString());
+
+        assertEquals(
+            "isMetBy for '" + property + "' against " + values,
+            isMetBySplitting(condition, property.toString()),
+            condition.isMetBy(properties));
+      }
+    }
+  }
+
+  public void testIsMetByMultiValuedProperty() {
+    Condition condition = createCondition("association", "footer");
+
+    Map<String, String> properties =
+        new IssueProperties(
+            ImmutableMap.of(), "4711", ImmutableSet.of("somewhere", "footer", "footer-Bug"));
+
+    replayMocks();
+
+    assertTrue("isMetBy gave false", condition.isMetBy(properties));
+  }
+
+  public void testNegatedIsMetByMultiValuedProperty() {
+    Condition condition = createCondition("association", "!,footer");
+
+    Map<String, String> properties =
+        new IssueProperties(ImmutableMap.of(), "4711", ImmutableSet.of("somewhere", "subject"));
+
+    replayMocks();
+
+    assertTrue("isMetBy gave false", condition.isMetBy(properties));
+  }
+
+  public void testIsMetByMultiValuedPropertySameAsJoined() {
+    String[] associations = {"somewhere", "footer-Bug ", "footer-Reported by", "body"};
+    String[] conditionValues = {"footer", "by", "", "!,by", "footer-Bug", "!,", "Bug"};
+    Random random = new Random(4711);
+
+    replayMocks();
+
+    for (String values : conditionValues) {
+      Condition condition = createCondition("association", values);
+      for (int i = 0; i < 100; i++) {
+        Set<String> propertyValues = new LinkedHashSet<>();
+        int valueCount = random.nextInt(4);
+        for (int j = 0; j < valueCount; j++) {
+          propertyValues.add(associations[random.nextInt(associations.length)]);
+        }
+        IssueProperties properties = new IssueProperties(ImmutableMap.of(), "4711", propertyValues);
+
+        assertEquals(
+            "isMetBy for " + propertyValues + " against " + values,
+            isMetBySplitting(condition, String.join(" ", propertyValues)),
+            condition.isMetBy(properties));
+      }
+    }
+  }
+
+  private static boolean isMetBySplitting(Condition condition, String property) {
+    for (String p : property.split(" ")) {
+      if (condition.getValues().contains(p.trim())) {
+        return !condition.isNegated();
+      }
+    }
+    return condition.isNegated();
+  }
+
   private Condition createCondition(String key, String value) {
     Condition.Factory factory = injector.getInstance(Condition.Factory.class);
     return factory.create(key, value);
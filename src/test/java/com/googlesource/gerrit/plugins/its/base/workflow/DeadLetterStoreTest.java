@@ -0,0 +1,118 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import junit.framework.TestCase;
+import org.eclipse.jgit.util.FileUtils;
+
+public class DeadLetterStoreTest extends TestCase {
+  private Path pluginData;
+  private DeadLetterStore store;
+
+  public void testListWithoutDeadLetters() throws IOException {
+    assertTrue(store.list().isEmpty());
+  }
+
+  public void testAddAndGet() throws IOException {
+    DeadLetter deadLetter = createDeadLetter(1000);
+    store.add(deadLetter);
+
+    Optional<DeadLetter> read = store.get(deadLetter.id);
+    assertTrue(read.isPresent());
+    assertEquals(deadLetter.id, read.get().id);
+    assertEquals(ActionType.ISSUE, read.get().type);
+    assertEquals("4711", read.get().target);
+    assertEquals("add-comment Fixed", read.get().action);
+    assertEquals(ImmutableMap.of("issue", "4711", "project", "testProject"), read.get().properties);
+    assertEquals(4, read.get().attempts);
+    assertEquals("injected exception", read.get().error);
+    assertEquals(new Timestamp(1000), read.get().failedAt);
+  }
+
+  public void testListOldestFirst() throws IOException {
+    DeadLetter newer = createDeadLetter(2000);
+    DeadLetter older = createDeadLetter(1000);
+    store.add(newer);
+    store.add(older);
+
+    List<DeadLetter> deadLetters = store.list();
+    assertEquals(2, deadLetters.size());
+    assertEquals(older.id, deadLetters.get(0).id);
+    assertEquals(newer.id, deadLetters.get(1).id);
+  }
+
+  public void testRemove() throws IOException {
+    DeadLetter deadLetter = createDeadLetter(1000);
+    store.add(deadLetter);
+
+    assertTrue(store.remove(deadLetter.id));
+    assertFalse(store.remove(deadLetter.id));
+    assertFalse(store.get(deadLetter.id).isPresent());
+    assertTrue(store.list().isEmpty());
+  }
+
+  public void testInvalidIds() throws IOException {
+    Files.createDirectories(pluginData.resolve("dead-letters"));
+    Files.write(pluginData.resolve("outside.json"), "{}".getBytes());
+
+    assertFalse(store.get("../outside").isPresent());
+    assertFalse(store.remove("../outside"));
+    assertTrue(Files.exists(pluginData.resolve("outside.json")));
+  }
+
+  public void testUnparsableDeadLettersAreSkipped() throws IOException {
+    DeadLetter deadLetter = createDeadLetter(1000);
+    store.add(deadLetter);
+    Files.write(pluginData.resolve("dead-letters").resolve("0123.json"), "[".getBytes());
+
+    List<DeadLetter> deadLetters = store.list();
+    assertEquals(1, deadLetters.size());
+    assertEquals(deadLetter.id, deadLetters.get(0).id);
+  }
+
+  private DeadLetter createDeadLetter(long failedAt) {
+    DeadLetter deadLetter = new DeadLetter();
+    deadLetter.id = UUID.randomUUID().toString();
+    deadLetter.type = ActionType.ISSUE;
+    deadLetter.target = "4711";
+    deadLetter.action = "add-comment Fixed";
+    deadLetter.properties = ImmutableMap.of("issue", "4711", "project", "testProject");
+    deadLetter.attempts = 4;
+    deadLetter.error = "injected exception";
+    deadLetter.failedAt = new Timestamp(failedAt);
+    return deadLetter;
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    pluginData = Files.createTempDirectory("its-base-test");
+    store = new DeadLetterStore(pluginData);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtils.delete(pluginData.toFile(), FileUtils.RECURSIVE);
+    super.tearDown();
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class IssuePropertiesTest extends TestCase {
+  private static final Map<String, String> COMMON =
+      ImmutableMap.of("event-type", "patchset-created", "project", "testProject");
+
+  public void testGetCommonProperty() {
+    IssueProperties properties =
+        new IssueProperties(COMMON, "4711", ImmutableSet.of("somewhere", "subject"));
+
+    assertEquals("testProject", properties.get("project"));
+    assertTrue(properties.containsKey("project"));
+    assertNull(properties.get("unknown"));
+    assertFalse(properties.containsKey("unknown"));
+  }
+
+  public void testGetIssue() {
+    IssueProperties properties =
+        new IssueProperties(COMMON, "4711", ImmutableSet.of("somewhere", "subject"));
+
+    assertEquals("4711", properties.get("issue"));
+    assertNull(properties.getValues("issue"));
+  }
+
+  public void testGetAssociation() {
+    IssueProperties properties =
+        new IssueProperties(COMMON, "4711", ImmutableSet.of("somewhere", "subject"));
+
+    assertEquals("somewhere subject", properties.get("association"));
+    assertEquals(ImmutableSet.of("somewhere", "subject"), properties.getValues("association"));
+  }
+
+  public void testMapView() {
+    IssueProperties properties =
+        new IssueProperties(COMMON, "4711", ImmutableSet.of("somewhere", "subject"));
+
+    Map<String, String> expected = new HashMap<>(COMMON);
+    expected.put("issue", "4711");
+    expected.put("association", "somewhere subject");
+    assertEquals(expected, properties);
+    assertEquals(properties, expected);
+    assertEquals(expected.hashCode(), properties.hashCode());
+    assertEquals(4, properties.size());
+  }
+
+  public void testCommonPropertiesAreShared() {
+    Map<String, String> common = new HashMap<>(COMMON);
+    IssueProperties properties1 = new IssueProperties(common, "4711", ImmutableSet.of("body"));
+    IssueProperties properties2 = new IssueProperties(common, "42", ImmutableSet.of("footer"));
+
+    assertEquals("testProject", properties1.get("project"));
+    assertEquals("testProject", properties2.get("project"));
+    assertEquals("4711", properties1.get("issue"));
+    assertEquals("42", properties2.get("issue"));
+  }
+
+  public void testIsImmutable() {
+    IssueProperties properties = new IssueProperties(COMMON, "4711", ImmutableSet.of("body"));
+
+    try {
+      properties.put("issue", "42");
+      fail("Properties could get modified");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+}
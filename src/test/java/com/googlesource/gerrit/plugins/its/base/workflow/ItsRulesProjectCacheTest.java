@@ -19,11 +19,13 @@ import static com.googlesource.gerrit.plugins.its.base.workflow.RulesConfigReade
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectConfig;
 import com.google.gerrit.server.project.ProjectLevelConfig;
 import com.google.gerrit.server.project.ProjectState;
 import com.google.inject.Guice;
@@ -36,6 +38,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 
 public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
   private class TestModule extends FactoryModule {
@@ -59,6 +62,11 @@ public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
   private static final String ACTION_1 = "action1";
   private static final String CONDITION_KEY = "condition";
   private static final String RULE_1 = "rule1";
+  private static final String RULE_2 = "rule2";
+  private static final ObjectId REVISION_1 =
+      ObjectId.fromString("1234567891123456789212345678931234567894");
+  private static final ObjectId REVISION_2 =
+      ObjectId.fromString("4321567891123456789212345678931234567894");
   private static final String TEST_PROJECT = "testProject";
   private static final String VALUE_1 = "value1";
 
@@ -90,6 +98,8 @@ public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
     ProjectLevelConfig projectLevelConfigPlugin = createMock(ProjectLevelConfig.class);
     expect(projectLevelConfigPlugin.get()).andReturn(new Config());
     expect(projectState.getConfig(RuleBaseKind.ITS.fileName)).andReturn(projectLevelConfigPlugin);
+    expect(projectState.treeInOrder()).andReturn(ImmutableList.of(projectState));
+    expectRevision(projectState, REVISION_1);
     expect(projectCache.checkedGet(Project.nameKey(TEST_PROJECT))).andReturn(projectState);
     expect(rulesConfigReader.getRulesFromConfig(isA(Config.class)))
         .andReturn(ImmutableList.of(rule1))
@@ -98,11 +108,13 @@ public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
 
     ItsRulesProjectCacheImpl.Loader loader =
         injector.getInstance(ItsRulesProjectCacheImpl.Loader.class);
-    Collection<Rule> actual = loader.load(TEST_PROJECT);
+    ItsRulesProjectCacheImpl.ProjectRules projectRules = loader.load(TEST_PROJECT);
+    Collection<Rule> actual = projectRules.getRules();
     List<Rule> expected = ImmutableList.of(rule1);
 
     assertEquals("Rules do not match", expected, actual);
     assertTrue(actual.contains(rule1));
+    assertEquals(ImmutableList.of(REVISION_1), projectRules.getRevisions());
   }
 
   public void testParentProjectConfigIsLoaded() throws IOException {
@@ -134,6 +146,10 @@ public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
     expect(parentProjectState.getConfig(RuleBaseKind.ITS.fileName))
         .andReturn(parentProjectConfigPlugin);
     expect(projectState.parents()).andReturn(FluentIterable.of(parentProjectState));
+    expect(projectState.treeInOrder())
+        .andReturn(ImmutableList.of(parentProjectState, projectState));
+    expectRevision(parentProjectState, REVISION_1);
+    expectRevision(projectState, REVISION_2);
     expect(projectCache.checkedGet(Project.nameKey(TEST_PROJECT))).andReturn(projectState);
 
     expect(rulesConfigReader.getRulesFromConfig(isA(Config.class)))
@@ -146,10 +162,69 @@ public class ItsRulesProjectCacheTest extends LoggingMockingTestCase {
 
     ItsRulesProjectCacheImpl.Loader loader =
         injector.getInstance(ItsRulesProjectCacheImpl.Loader.class);
-    Collection<Rule> actual = loader.load(TEST_PROJECT);
+    ItsRulesProjectCacheImpl.ProjectRules projectRules = loader.load(TEST_PROJECT);
+    Collection<Rule> actual = projectRules.getRules();
     List<Rule> expected = ImmutableList.of(rule1);
 
     assertEquals("Rules do not match", expected, actual);
     assertTrue(actual.contains(rule1));
+    assertEquals(ImmutableList.of(REVISION_1, REVISION_2), projectRules.getRevisions());
+  }
+
+  public void testRulesAreReloadedWhenParentConfigChanges() throws IOException {
+    Rule rule1 = new Rule(RULE_1);
+    Rule rule2 = new Rule(RULE_2);
+
+    ProjectState projectState = createMock(ProjectState.class);
+    ProjectLevelConfig projectLevelConfig = createMock(ProjectLevelConfig.class);
+    expect(projectLevelConfig.get()).andReturn(new Config()).anyTimes();
+    expect(projectState.getConfig(RuleBaseKind.GLOBAL.fileName))
+        .andReturn(projectLevelConfig)
+        .anyTimes();
+    expect(projectState.getConfig(RuleBaseKind.ITS.fileName))
+        .andReturn(projectLevelConfig)
+        .anyTimes();
+    expectRevision(projectState, REVISION_1);
+
+    ProjectState parentProjectState = createMock(ProjectState.class);
+    ProjectConfig parentProjectConfig = createMock(ProjectConfig.class);
+    expect(parentProjectState.getConfig()).andReturn(parentProjectConfig).anyTimes();
+    // The first load and lookup see the initial revision of the parent. Then the parent's
+    // configuration gets updated.
+    expect(parentProjectConfig.getRevision())
+        .andReturn(REVISION_1)
+        .times(2)
+        .andReturn(REVISION_2)
+        .anyTimes();
+
+    expect(projectState.treeInOrder())
+        .andReturn(ImmutableList.of(parentProjectState, projectState))
+        .anyTimes();
+    expect(projectCache.get(Project.nameKey(TEST_PROJECT))).andReturn(projectState).anyTimes();
+    expect(projectCache.checkedGet(Project.nameKey(TEST_PROJECT)))
+        .andReturn(projectState)
+        .anyTimes();
+    expect(rulesConfigReader.getRulesFromConfig(isA(Config.class)))
+        .andReturn(ImmutableList.of(rule1))
+        .andReturn(ImmutableList.of())
+        .andReturn(ImmutableList.of(rule2))
+        .andReturn(ImmutableList.of());
+
+    replayMocks();
+
+    ItsRulesProjectCacheImpl.Loader loader =
+        injector.getInstance(ItsRulesProjectCacheImpl.Loader.class);
+    ItsRulesProjectCache rulesProjectCache =
+        new ItsRulesProjectCacheImpl(CacheBuilder.newBuilder().build(loader), projectCache);
+
+    assertEquals(ImmutableList.of(rule1), rulesProjectCache.get(TEST_PROJECT));
+    assertEquals(ImmutableList.of(rule2), rulesProjectCache.get(TEST_PROJECT));
+    assertEquals(ImmutableList.of(rule2), rulesProjectCache.get(TEST_PROJECT));
+  }
+
+  private void expectRevision(ProjectState projectState, ObjectId revision) {
+    ProjectConfig projectConfig = createMock(ProjectConfig.class);
+    expect(projectState.getConfig()).andReturn(projectConfig).anyTimes();
+    expect(projectConfig.getRevision()).andReturn(revision).anyTimes();
   }
 }
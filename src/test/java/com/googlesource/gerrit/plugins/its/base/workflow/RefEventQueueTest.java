@@ -0,0 +1,177 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.events.RefEvent;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.googlesource.gerrit.plugins.its.base.testutil.LoggingMockingTestCase;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.jgit.lib.Config;
+
+public class RefEventQueueTest extends LoggingMockingTestCase {
+  private Injector injector;
+  private Config serverConfig;
+  private PluginConfigFactory pluginConfigFactory;
+  private OneOffRequestContext requestContext;
+  private RefEvent event;
+
+  public void testProcessingOnCallerThreadWithoutPool() {
+    serverConfig.setInt("plugin", "ItsTestName", RefEventQueue.POOL_SIZE_KEY, 0);
+
+    replayMocks();
+
+    RefEventQueue queue = createRefEventQueue();
+    AtomicReference<Thread> processingThread = new AtomicReference<>();
+    queue.submit(event, () -> processingThread.set(Thread.currentThread()));
+
+    assertEquals(Thread.currentThread(), processingThread.get());
+  }
+
+  public void testProcessingOffCallerThread() throws InterruptedException {
+    replayMocks();
+
+    RefEventQueue queue = createRefEventQueue();
+    AtomicReference<Thread> processingThread = new AtomicReference<>();
+    CountDownLatch processed = new CountDownLatch(1);
+    queue.submit(
+        event,
+        () -> {
+          processingThread.set(Thread.currentThread());
+          processed.countDown();
+        });
+
+    assertTrue(processed.await(10, TimeUnit.SECONDS));
+    assertNotSame(Thread.currentThread(), processingThread.get());
+    queue.stop();
+  }
+
+  public void testOverflowDiscard() throws InterruptedException {
+    serverConfig.setInt("plugin", "ItsTestName", RefEventQueue.QUEUE_DEPTH_KEY, 1);
+    serverConfig.setEnum(
+        "plugin",
+        "ItsTestName",
+        RefEventQueue.OVERFLOW_POLICY_KEY,
+        RefEventQueue.OverflowPolicy.DISCARD);
+
+    replayMocks();
+
+    RefEventQueue queue = createRefEventQueue();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    queue.submit(
+        event,
+        () -> {
+          started.countDown();
+          awaitUninterruptibly(release);
+        });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    CountDownLatch queuedProcessed = new CountDownLatch(1);
+    queue.submit(event, queuedProcessed::countDown);
+    queue.submit(event, () -> fail("Overflowing event got processed"));
+
+    release.countDown();
+    assertTrue(queuedProcessed.await(10, TimeUnit.SECONDS));
+    queue.stop();
+
+    assertLogMessageContains("Event queue is full");
+  }
+
+  public void testOverflowCallerRuns() throws InterruptedException {
+    serverConfig.setInt("plugin", "ItsTestName", RefEventQueue.QUEUE_DEPTH_KEY, 1);
+
+    replayMocks();
+
+    RefEventQueue queue = createRefEventQueue();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    queue.submit(
+        event,
+        () -> {
+          started.countDown();
+          awaitUninterruptibly(release);
+        });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    queue.submit(event, () -> {});
+    AtomicReference<Thread> processingThread = new AtomicReference<>();
+    queue.submit(event, () -> processingThread.set(Thread.currentThread()));
+
+    assertEquals(Thread.currentThread(), processingThread.get());
+    release.countDown();
+    queue.stop();
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private RefEventQueue createRefEventQueue() {
+    return injector.getInstance(RefEventQueue.class);
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    injector = Guice.createInjector(new TestModule());
+
+    serverConfig = new Config();
+    expect(pluginConfigFactory.getFromGerritConfig("ItsTestName"))
+        .andAnswer(() -> new PluginConfig("ItsTestName", serverConfig))
+        .anyTimes();
+
+    ManualRequestContext ctx = createMock(ManualRequestContext.class);
+    ctx.close();
+    expectLastCall().anyTimes();
+    expect(requestContext.open()).andReturn(ctx).anyTimes();
+
+    expect(event.getProjectNameKey()).andReturn(Project.nameKey("testProject")).anyTimes();
+    expect(event.getRefName()).andReturn("refs/heads/master").anyTimes();
+  }
+
+  private class TestModule extends FactoryModule {
+    @Override
+    protected void configure() {
+      bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
+      pluginConfigFactory = createMock(PluginConfigFactory.class);
+      bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+
+      requestContext = createMock(OneOffRequestContext.class);
+      bind(OneOffRequestContext.class).toInstance(requestContext);
+
+      event = createMock(RefEvent.class);
+    }
+  }
+}
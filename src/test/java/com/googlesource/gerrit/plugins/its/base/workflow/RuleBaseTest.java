@@ -19,9 +19,12 @@ import static org.easymock.EasyMock.isA;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.googlesource.gerrit.plugins.its.base.GlobalRulesFileName;
@@ -66,7 +69,7 @@ public class RuleBaseTest extends LoggingMockingTestCase {
     String rules = "[rule \"rule1\"]\n\taction = action1\n";
     injectRuleBase(rules);
 
-    Rule rule1 = createMock(Rule.class);
+    Rule rule1 = createRuleMock();
     ActionRequest actionRequest1 = createMock(ActionRequest.class);
 
     Map<String, String> properties = ImmutableMap.of(PROJECT_KEY, TEST_PROJECT);
@@ -101,11 +104,11 @@ public class RuleBaseTest extends LoggingMockingTestCase {
             + "[rule \"rule2\"]\n"
             + "\taction = action3\n");
 
-    Rule rule1 = createMock(Rule.class);
+    Rule rule1 = createRuleMock();
     ActionRequest actionRequest1 = createMock(ActionRequest.class);
     ActionRequest actionRequest2 = createMock(ActionRequest.class);
 
-    Rule rule2 = createMock(Rule.class);
+    Rule rule2 = createRuleMock();
     ActionRequest actionRequest3 = createMock(ActionRequest.class);
 
     Map<String, String> properties = ImmutableMap.of(PROJECT_KEY, TEST_PROJECT);
@@ -140,13 +143,13 @@ public class RuleBaseTest extends LoggingMockingTestCase {
 
     Map<String, String> properties = ImmutableMap.of(PROJECT_KEY, TEST_PROJECT);
 
-    Rule rule2 = createMock(Rule.class);
+    Rule rule2 = createRuleMock();
     ActionRequest actionRequest2 = createMock(ActionRequest.class);
 
     List<ActionRequest> rule2Match = ImmutableList.of(actionRequest2);
     expect(rule2.actionRequestsFor(properties)).andReturn(rule2Match);
 
-    Rule rule3 = createMock(Rule.class);
+    Rule rule3 = createRuleMock();
     ActionRequest actionRequest3 = createMock(ActionRequest.class);
 
     List<ActionRequest> rule3Match = ImmutableList.of(actionRequest3);
@@ -171,7 +174,7 @@ public class RuleBaseTest extends LoggingMockingTestCase {
   }
 
   public void testProjectConfigIsLoaded() {
-    Rule rule1 = createMock(Rule.class);
+    Rule rule1 = createRuleMock();
     ActionRequest actionRequest1 = createMock(ActionRequest.class);
 
     Map<String, String> properties = ImmutableMap.of(PROJECT_KEY, TEST_PROJECT);
@@ -191,6 +194,12 @@ public class RuleBaseTest extends LoggingMockingTestCase {
     assertEquals("Matched actionRequests do not match", expected, actual);
   }
 
+  private Rule createRuleMock() {
+    Rule rule = createMock(Rule.class);
+    expect(rule.getConditions()).andReturn(ImmutableSet.of()).anyTimes();
+    return rule;
+  }
+
   private RuleBase createRuleBase() {
     return injector.getInstance(RuleBase.class);
   }
@@ -229,6 +238,8 @@ public class RuleBaseTest extends LoggingMockingTestCase {
   private class TestModule extends FactoryModule {
     @Override
     protected void configure() {
+      bind(MetricMaker.class).toInstance(new DisabledMetricMaker());
+
 
       bind(String.class).annotatedWith(PluginName.class).toInstance("ItsTestName");
 
@@ -0,0 +1,157 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class RuleIndexTest extends TestCase {
+  private static final String[] KEYS = {
+    "event-type", "status", "association", "approval-Code-Review"
+  };
+  private static final String[] VALUES = {"a", "b", "c", "d", "!"};
+
+  public void testEmpty() {
+    RuleIndex index = new RuleIndex(ImmutableList.of());
+
+    assertTrue(index.isEmpty());
+    assertTrue(index.actionRequestsFor(ImmutableMap.of("event-type", "a")).isEmpty());
+  }
+
+  public void testUnconditionalRule() {
+    Rule rule = createRule("rule", "action");
+
+    RuleIndex index = new RuleIndex(ImmutableList.of(rule));
+
+    assertEquals(
+        rule.actionRequestsFor(ImmutableMap.of()), index.actionRequestsFor(ImmutableMap.of()));
+  }
+
+  public void testOrderOfRulesIsKept() {
+    Rule rule1 = createRule("rule1", "action1");
+    rule1.addCondition(new Condition("event-type", "a"));
+    Rule rule2 = createRule("rule2", "action2");
+    rule2.addCondition(new Condition("status", "b"));
+    Rule rule3 = createRule("rule3", "action3");
+    rule3.addCondition(new Condition("event-type", "a,c"));
+    Rule rule4 = createRule("rule4", "action4");
+    rule4.addCondition(new Condition("status", "!,c"));
+
+    Map<String, String> properties = ImmutableMap.of("event-type", "a", "status", "b");
+
+    RuleIndex index = new RuleIndex(ImmutableList.of(rule1, rule2, rule3, rule4));
+    Collection<ActionRequest> actual = index.actionRequestsFor(properties);
+
+    List<ActionRequest> expected = new ArrayList<>();
+    expected.addAll(rule1.actionRequestsFor(properties));
+    expected.addAll(rule2.actionRequestsFor(properties));
+    expected.addAll(rule3.actionRequestsFor(properties));
+    expected.addAll(rule4.actionRequestsFor(properties));
+    assertEquals(4, expected.size());
+    assertEquals(expected, actual);
+  }
+
+  public void testMultiValuedProperty() {
+    Rule rule = createRule("rule", "action");
+    rule.addCondition(new Condition("association", "footer"));
+
+    RuleIndex index = new RuleIndex(ImmutableList.of(rule));
+
+    assertEquals(1, index.actionRequestsFor(ImmutableMap.of("association", "body footer")).size());
+    assertEquals(0, index.actionRequestsFor(ImmutableMap.of("association", "body")).size());
+
+    IssueProperties inFooter =
+        new IssueProperties(ImmutableMap.of(), "4711", ImmutableSet.of("body", "footer"));
+    IssueProperties inBody =
+        new IssueProperties(ImmutableMap.of(), "4711", ImmutableSet.of("body"));
+    assertEquals(1, index.actionRequestsFor(inFooter).size());
+    assertEquals(0, index.actionRequestsFor(inBody).size());
+  }
+
+  public void testSameActionRequestsAsLinearEvaluation() {
+    Random random = new Random(4711);
+    List<Rule> rules = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Rule rule = createRule("rule" + i, "action" + i);
+      int conditionCount = random.nextInt(4);
+      for (int j = 0; j < conditionCount; j++) {
+        rule.addCondition(new Condition(randomKey(random), randomValues(random)));
+      }
+      rules.add(rule);
+    }
+    RuleIndex index = new RuleIndex(rules);
+
+    for (int i = 0; i < 2000; i++) {
+      Map<String, String> properties = new HashMap<>();
+      for (String key : KEYS) {
+        if (random.nextBoolean()) {
+          properties.put(key, randomProperty(random));
+        }
+      }
+
+      List<ActionRequest> expected = new ArrayList<>();
+      for (Rule rule : rules) {
+        expected.addAll(rule.actionRequestsFor(properties));
+      }
+      assertEquals(
+          "Action requests do not match for " + properties,
+          expected,
+          Lists.newArrayList(index.actionRequestsFor(properties)));
+    }
+  }
+
+  private static Rule createRule(String name, String action) {
+    Rule rule = new Rule(name);
+    rule.addActionRequest(new ActionRequest(action));
+    return rule;
+  }
+
+  private static String randomKey(Random random) {
+    return KEYS[random.nextInt(KEYS.length)];
+  }
+
+  private static String randomValues(Random random) {
+    StringBuilder values = new StringBuilder();
+    int valueCount = 1 + random.nextInt(3);
+    for (int i = 0; i < valueCount; i++) {
+      if (i > 0) {
+        values.append(',');
+      }
+      values.append(VALUES[random.nextInt(VALUES.length)]);
+    }
+    return values.toString();
+  }
+
+  private static String randomProperty(Random random) {
+    StringBuilder property = new StringBuilder();
+    int valueCount = random.nextInt(4);
+    for (int i = 0; i < valueCount; i++) {
+      if (i > 0 || random.nextInt(4) == 0) {
+        // Occasional padding covers empty and untrimmed values.
+        property.append(random.nextInt(4) == 0 ? "  " : " ");
+      }
+      property.append(VALUES[random.nextInt(VALUES.length - 1)]);
+    }
+    return property.toString();
+  }
+}
@@ -0,0 +1,158 @@
+// Copyright (C) 2020 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.its.base.workflow;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.ProvisionException;
+import com.google.template.soy.data.SanitizedContent;
+import com.google.template.soy.tofu.SoyTofu;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.eclipse.jgit.util.FileUtils;
+
+public class SoyTemplateCacheTest extends TestCase {
+  private Path itsPath;
+  private Path templateDir;
+  private SoyTemplateCache cache;
+
+  public void testTemplateIsCompiledOnce() throws IOException {
+    writeTemplate("Comment", "Fixed by {$name}");
+
+    SoyTofu tofu = cache.get("Comment");
+
+    assertSame(tofu, cache.get("Comment"));
+    assertEquals("Fixed by John", render(tofu, "Comment"));
+  }
+
+  public void testEditedTemplateIsRecompiled() throws IOException {
+    Path templatePath = writeTemplate("Comment", "Fixed by {$name}");
+    Files.setLastModifiedTime(templatePath, hoursAgo(2));
+    SoyTofu tofu = cache.get("Comment");
+
+    writeTemplate("Comment", "Fixes by {$name}");
+    Files.setLastModifiedTime(templatePath, hoursAgo(1));
+    SoyTofu edited = cache.get("Comment");
+
+    assertNotSame(tofu, edited);
+    assertEquals("Fixes by John", render(edited, "Comment"));
+  }
+
+  public void testRecentlyEditedTemplateIsRecompiled() throws IOException {
+    Path templatePath = writeTemplate("Comment", "Fixed by {$name}");
+    FileTime lastModified = Files.getLastModifiedTime(templatePath);
+    SoyTofu tofu = cache.get("Comment");
+
+    // Same size and modification time, as if edited within the file system's time resolution.
+    writeTemplate("Comment", "Fixes by {$name}");
+    Files.setLastModifiedTime(templatePath, lastModified);
+    SoyTofu edited = cache.get("Comment");
+
+    assertNotSame(tofu, edited);
+    assertEquals("Fixes by John", render(edited, "Comment"));
+  }
+
+  public void testTemplateIsOnlyReadIfModified() throws IOException {
+    Path templatePath = writeTemplate("Comment", "Fixed by {$name}");
+    FileTime lastModified = hoursAgo(1);
+    Files.setLastModifiedTime(templatePath, lastModified);
+    SoyTofu tofu = cache.get("Comment");
+
+    // The file is not read again, so the cache cannot tell this edit apart.
+    writeTemplate("Comment", "Fixes by {$name}");
+    Files.setLastModifiedTime(templatePath, lastModified);
+
+    assertSame(tofu, cache.get("Comment"));
+  }
+
+  public void testTouchedTemplateIsNotRecompiled() throws IOException {
+    Path templatePath = writeTemplate("Comment", "Fixed by {$name}");
+    Files.setLastModifiedTime(templatePath, hoursAgo(2));
+    SoyTofu tofu = cache.get("Comment");
+
+    Files.setLastModifiedTime(templatePath, hoursAgo(1));
+
+    assertSame(tofu, cache.get("Comment"));
+  }
+
+  public void testMissingTemplate() {
+    try {
+      cache.get("Missing");
+      fail("Missing template did not throw");
+    } catch (ProvisionException e) {
+      assertTrue(e.getMessage().contains("Failed to read template file"));
+      assertTrue(e.getMessage().contains("Missing.soy"));
+    }
+  }
+
+  public void testDeletedTemplate() throws IOException {
+    Path templatePath = writeTemplate("Comment", "Fixed by {$name}");
+    cache.get("Comment");
+    Files.delete(templatePath);
+
+    try {
+      cache.get("Comment");
+      fail("Deleted template did not throw");
+    } catch (ProvisionException e) {
+      assertTrue(e.getMessage().contains("Comment.soy"));
+    }
+  }
+
+  private Path writeTemplate(String name, String body) throws IOException {
+    String template =
+        "{namespace etc.its.templates}\n"
+            + "\n"
+            + "{template ."
+            + name
+            + " kind=\"text\"}\n"
+            + "  {@param name: string}\n"
+            + "  "
+            + body
+            + "\n"
+            + "{/template}\n";
+    Path templatePath = templateDir.resolve(name + ".soy");
+    Files.write(templatePath, template.getBytes(StandardCharsets.UTF_8));
+    return templatePath;
+  }
+
+  private static FileTime hoursAgo(int hours) {
+    return FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(hours));
+  }
+
+  private static String render(SoyTofu tofu, String name) {
+    return tofu.newRenderer("etc.its.templates." + name)
+        .setContentKind(SanitizedContent.ContentKind.TEXT)
+        .setData(ImmutableMap.of("name", "John"))
+        .render()
+        .trim();
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    itsPath = Files.createTempDirectory("its-base-test");
+    templateDir = Files.createDirectory(itsPath.resolve("templates"));
+    cache = new SoyTemplateCache(itsPath);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtils.delete(itsPath.toFile(), FileUtils.RECURSIVE);
+    super.tearDown();
+  }
+}
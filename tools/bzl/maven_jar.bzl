@@ -0,0 +1,6 @@
+load(
+    "@com_googlesource_gerrit_bazlets//tools:maven_jar.bzl",
+    _maven_jar = "maven_jar",
+)
+
+maven_jar = _maven_jar